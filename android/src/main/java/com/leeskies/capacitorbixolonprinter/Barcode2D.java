@@ -0,0 +1,167 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.bixolon.labelprinter.BixolonLabelPrinter;
+import com.getcapacitor.JSObject;
+
+/**
+ * Settings of a QR code, DataMatrix or PDF417 symbol, validated once and converted to SDK
+ * constants. The symbols are drawn with the printer's own 2D barcode commands, so only the
+ * data and a few parameters are sent, never a bitmap.
+ */
+public final class Barcode2D {
+    enum Symbology {
+        QR("QR code"),
+        DATAMATRIX("DataMatrix"),
+        PDF417("PDF417");
+
+        final String label;
+
+        Symbology(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Symbology symbology;
+    private final int size;
+    private final int errorCorrection;
+    private final int maxRows;
+    private final int maxColumns;
+    private final int moduleWidth;
+    private final int rowHeight;
+    private final int hri;
+
+    private Barcode2D(Symbology symbology, int size, int errorCorrection, int maxRows, int maxColumns, int moduleWidth,
+                      int rowHeight, int hri) {
+        this.symbology = symbology;
+        this.size = size;
+        this.errorCorrection = errorCorrection;
+        this.maxRows = maxRows;
+        this.maxColumns = maxColumns;
+        this.moduleWidth = moduleWidth;
+        this.rowHeight = rowHeight;
+        this.hri = hri;
+    }
+
+    /**
+     * Whether the barcode type names a 2D symbology, which {@link #compile} accepts.
+     */
+    static boolean isSupported(String barcodeType) {
+        return symbology(barcodeType) != null;
+    }
+
+    /**
+     * Reads the symbol settings from barcode options or a label element.
+     */
+    static Barcode2D compile(String barcodeType, JSObject options) throws PrinterException {
+        Symbology symbology = symbology(barcodeType);
+        if (symbology == null) {
+            throw new PrinterException("Not a 2D barcode type: " + barcodeType);
+        }
+        switch (symbology) {
+            case QR:
+                return new Barcode2D(
+                    symbology,
+                    checkRange("QR code size", options.getInteger("size", 3), 1, 4),
+                    convertQrErrorCorrection(options.getString("errorCorrection", "M")),
+                    0, 0, 0, 0, 0
+                );
+            case DATAMATRIX:
+                return new Barcode2D(
+                    symbology,
+                    checkRange("DataMatrix size", options.getInteger("size", 3), 1, 4),
+                    0, 0, 0, 0, 0, 0
+                );
+            default:
+                return new Barcode2D(
+                    symbology,
+                    0,
+                    checkRange("PDF417 security level", options.getInteger("securityLevel", 2), 0, 8),
+                    checkRange("PDF417 maximum rows", options.getInteger("maxRows", 90), 3, 90),
+                    checkRange("PDF417 maximum columns", options.getInteger("maxColumns", 30), 1, 30),
+                    checkRange("PDF417 module width", options.getInteger("width", 2), 2, 9),
+                    checkRange("PDF417 row height", options.getInteger("height", 10), 0, 99),
+                    options.getBoolean("hri", false)
+                        ? BixolonLabelPrinter.PDF417_HRI_BELOW_BARCODE : BixolonLabelPrinter.PDF417_HRI_NOT_PRINTED
+                );
+        }
+    }
+
+    String describe() {
+        return symbology.label;
+    }
+
+    /**
+     * Draws the symbol with its top-left corner at the given position. Must be called inside
+     * a transaction. Returns the SDK's result code.
+     */
+    int draw(PrinterDevice printer, String data, int horizontalPosition, int verticalPosition) {
+        switch (symbology) {
+            case QR:
+                return printer.drawQrCode(
+                    data,
+                    horizontalPosition,
+                    verticalPosition,
+                    BixolonLabelPrinter.QR_CODE_MODEL2,
+                    errorCorrection,
+                    size,
+                    BixolonLabelPrinter.ROTATION_NONE
+                );
+            case DATAMATRIX:
+                return printer.drawDataMatrix(data, horizontalPosition, verticalPosition, size,
+                    BixolonLabelPrinter.ROTATION_NONE);
+            default:
+                return printer.drawPdf417(
+                    data,
+                    horizontalPosition,
+                    verticalPosition,
+                    maxRows,
+                    maxColumns,
+                    errorCorrection,
+                    0, // dataCompressionMethod: text
+                    hri,
+                    BixolonLabelPrinter.BARCODE_ORIGIN_POINT_UPPER_LEFT,
+                    moduleWidth,
+                    rowHeight,
+                    BixolonLabelPrinter.ROTATION_NONE
+                );
+        }
+    }
+
+    private static Symbology symbology(String barcodeType) {
+        switch (barcodeType.toUpperCase()) {
+            case "QR":
+            case "QRCODE":
+            case "QR_CODE":
+                return Symbology.QR;
+            case "DATAMATRIX":
+            case "DATA_MATRIX":
+                return Symbology.DATAMATRIX;
+            case "PDF417":
+                return Symbology.PDF417;
+            default:
+                return null;
+        }
+    }
+
+    private static int convertQrErrorCorrection(String level) throws PrinterException {
+        switch (level.toUpperCase()) {
+            case "L":
+                return BixolonLabelPrinter.ECC_LEVEL_7;
+            case "M":
+                return BixolonLabelPrinter.ECC_LEVEL_15;
+            case "Q":
+                return BixolonLabelPrinter.ECC_LEVEL_25;
+            case "H":
+                return BixolonLabelPrinter.ECC_LEVEL_30;
+            default:
+                throw new PrinterException("Unknown QR code error correction level: " + level);
+        }
+    }
+
+    private static int checkRange(String what, int value, int min, int max) throws PrinterException {
+        if (value < min || value > max) {
+            throw new PrinterException(what + " must be between " + min + " and " + max);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,204 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import com.bixolon.labelprinter.BixolonLabelPrinter;
+
+/**
+ * {@link PrinterDevice} backed by the Bixolon SDK. Every SDK printer encodes its commands with
+ * the process-wide {@code SLCSEmul} instance, which isn't thread safe: a call adds its command
+ * and pops the encoded bytes right back, so another printer's call in between would send them
+ * on the wrong connection. Every call that encodes therefore holds a lock shared by all
+ * printers, connect included, since it queries the printer's model.
+ */
+public class BixolonDevice implements PrinterDevice {
+    // Loaded by the BixolonLabelPrinter constructor
+    private static final String NATIVE_LIBRARY = "bxl_common";
+    // Classes every printer needs, including the native command encoder
+    private static final String[] PRELOADED_CLASSES = {
+        "com.bixolon.labelprinter.BixolonLabelPrinter",
+        "com.bixolon.labelprinter.PrinterControl",
+        "com.bixolon.commonlib.emul.SLCSEmul",
+        "com.bixolon.commonlib.queue.BXLQueue"
+    };
+
+    private final BixolonLabelPrinter printer;
+    private final Object sdkLock;
+
+    /**
+     * Loads and initializes the SDK classes and its native library ahead of the first
+     * printer. Loading is idempotent, so the SDK's own load in its constructor becomes a
+     * no-op.
+     *
+     * @throws LinkageError when the SDK or its native library for this device's ABI is missing
+     */
+    public static void preload() {
+        System.loadLibrary(NATIVE_LIBRARY);
+        for (String name : PRELOADED_CLASSES) {
+            try {
+                Class.forName(name, true, BixolonDevice.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new NoClassDefFoundError(name);
+            }
+        }
+    }
+
+    /**
+     * @param sdkLock held for every call, the same for every printer in the process
+     */
+    public BixolonDevice(BixolonLabelPrinter printer, Object sdkLock) {
+        this.printer = printer;
+        this.sdkLock = sdkLock;
+    }
+
+    @Override
+    public String connect(String address) {
+        synchronized (sdkLock) {
+            return printer.connect(address);
+        }
+    }
+
+    @Override
+    public String connect(String address, int port, int timeout) {
+        synchronized (sdkLock) {
+            return printer.connect(address, port, timeout);
+        }
+    }
+
+    // Connection state, disconnect and discovery don't encode commands, and stay free of the lock so
+    // a call blocked on a dead connection can be failed by dropping it
+    @Override
+    public boolean isConnected() {
+        return printer.isConnected();
+    }
+
+    @Override
+    public void disconnect() {
+        printer.disconnect();
+    }
+
+    @Override
+    public String findNetworkPrinters(int timeout) {
+        return printer.findNetworkPrinters(timeout);
+    }
+
+    @Override
+    public int drawText(String data, int horizontalPosition, int verticalPosition, int fontSelection,
+                        int horizontalMultiplier, int verticalMultiplier, int rightSpace, int rotation, boolean reverse,
+                        boolean bold, int alignment) {
+        synchronized (sdkLock) {
+            return printer.drawText(data, horizontalPosition, verticalPosition, fontSelection, horizontalMultiplier,
+                verticalMultiplier, rightSpace, rotation, reverse, bold, alignment);
+        }
+    }
+
+    @Override
+    public int draw1dBarcode(String data, int horizontalPosition, int verticalPosition, int barcodeSelection,
+                             int narrowBarWidth, int wideBarWidth, int height, int rotation, int hri, int quietZoneWidth) {
+        synchronized (sdkLock) {
+            return printer.draw1dBarcode(data, horizontalPosition, verticalPosition, barcodeSelection, narrowBarWidth,
+                wideBarWidth, height, rotation, hri, quietZoneWidth);
+        }
+    }
+
+    @Override
+    public int drawQrCode(String data, int horizontalPosition, int verticalPosition, int model, int eccLevel, int size,
+                          int rotation) {
+        synchronized (sdkLock) {
+            return printer.drawQrCode(data, horizontalPosition, verticalPosition, model, eccLevel, size, rotation);
+        }
+    }
+
+    @Override
+    public int drawDataMatrix(String data, int horizontalPosition, int verticalPosition, int size, int rotation) {
+        synchronized (sdkLock) {
+            return printer.drawDataMatrix(data, horizontalPosition, verticalPosition, size, rotation);
+        }
+    }
+
+    @Override
+    public int drawPdf417(String data, int horizontalPosition, int verticalPosition, int maximumRowCount,
+                          int maximumColumnCount, int errorCorrectionLevel, int dataCompressionMethod, int hri,
+                          int barcodeOriginPoint, int moduleWidth, int barHeight, int rotation) {
+        synchronized (sdkLock) {
+            return printer.drawPdf417(data, horizontalPosition, verticalPosition, maximumRowCount, maximumColumnCount,
+                errorCorrectionLevel, dataCompressionMethod, hri, barcodeOriginPoint, moduleWidth, barHeight, rotation);
+        }
+    }
+
+    @Override
+    public int drawBlock(int horizontalStartPosition, int verticalStartPosition, int horizontalEndPosition,
+                         int verticalEndPosition, int option, int thickness) {
+        synchronized (sdkLock) {
+            return printer.drawBlock(horizontalStartPosition, verticalStartPosition, horizontalEndPosition,
+                verticalEndPosition, option, thickness);
+        }
+    }
+
+    @Override
+    public int drawBitmap(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                          boolean dithering) {
+        synchronized (sdkLock) {
+            return printer.drawBitmap(bitmap, horizontalPosition, verticalPosition, width, level, dithering);
+        }
+    }
+
+    @Override
+    public int drawCompressionImage(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                                    boolean dithering) {
+        synchronized (sdkLock) {
+            return printer.drawCompressionImage(bitmap, horizontalPosition, verticalPosition, width, level, dithering);
+        }
+    }
+
+    @Override
+    public int drawPDFFile(Uri uri, int horizontalPosition, int verticalPosition, int page, int width, int level,
+                           boolean dithering, boolean compress) {
+        synchronized (sdkLock) {
+            return printer.drawPDFFile(uri, horizontalPosition, verticalPosition, page, width, level, dithering, compress);
+        }
+    }
+
+    @Override
+    public int clearBuffer() {
+        synchronized (sdkLock) {
+            return printer.clearBuffer();
+        }
+    }
+
+    @Override
+    public byte[] getStatus(boolean checkImageBuffer) {
+        synchronized (sdkLock) {
+            return printer.getStatus(checkImageBuffer);
+        }
+    }
+
+    @Override
+    public int print(int sets, int copies) {
+        synchronized (sdkLock) {
+            return printer.print(sets, copies);
+        }
+    }
+
+    @Override
+    public void beginTransactionPrint() {
+        synchronized (sdkLock) {
+            printer.beginTransactionPrint();
+        }
+    }
+
+    @Override
+    public int endTransactionPrint() {
+        synchronized (sdkLock) {
+            return printer.endTransactionPrint();
+        }
+    }
+
+    @Override
+    public void executeDirectIoWithoutCRLF(byte[] data) {
+        synchronized (sdkLock) {
+            printer.executeDirectIoWithoutCRLF(data);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Owns the SDK session of one printer. Remembers the address it was connected to, probes the
+ * link while it is idle and reconnects with jittered exponential backoff when it drops, so a
+ * lost connection costs a reconnect instead of a failed job. A connect attempt that outlives
+ * its timeout by {@link Watchdog#ABORT_GRACE_MS} is aborted by the {@link Watchdog}.
+ */
+public class ConnectionManager {
+    public static final String EVENT_CONNECTION_STATE = "connectionStateChanged";
+    public static final long DEFAULT_KEEP_ALIVE_MS = 15 * 1000;
+    public static final long DEFAULT_RECONNECT_TIMEOUT_MS = 10 * 1000;
+
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 8 * 1000;
+
+    /** Told the outcome of {@link #connectAsync}, on the connection's thread. */
+    public interface Callback {
+        void connected(String printerName);
+
+        void failed(PrinterException error);
+    }
+
+    private final PrinterDevice printer;
+    private final String printerId;
+    private final EventListener listener;
+    private final Object transactionLock;
+    private final Metrics metrics;
+    private final Watchdog watchdog;
+    private final ScheduledExecutorService scheduler;
+    private final Object connectLock = new Object();
+
+    private volatile String address;
+    private volatile String type;
+    private volatile int port;
+    private volatile int timeout;
+    private volatile long keepAliveInterval;
+    private volatile long reconnectTimeout = DEFAULT_RECONNECT_TIMEOUT_MS;
+    private volatile long lastActivity;
+    private volatile String printerName;
+    private volatile Runnable onConnected;
+    private ScheduledFuture<?> keepAlive;
+
+    public ConnectionManager(PrinterDevice printer, String printerId, EventListener listener, Object transactionLock,
+                             Metrics metrics, Watchdog watchdog) {
+        this.printer = printer;
+        this.printerId = printerId;
+        this.listener = listener;
+        this.transactionLock = transactionLock;
+        this.metrics = metrics;
+        this.watchdog = watchdog;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BixolonConnection-" + printerId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Connects and remembers the target so the session can be restored after it drops.
+     *
+     * @return the printer name reported by the SDK
+     */
+    public String connect(String address, String type, int port, int timeout, long keepAliveInterval,
+                          long reconnectTimeout) throws PrinterException {
+        if (address == null || address.isEmpty()) {
+            throw new PrinterException("Address cannot be null or empty");
+        }
+        synchronized (connectLock) {
+            this.address = address;
+            this.type = type;
+            this.port = port;
+            this.timeout = timeout;
+            this.keepAliveInterval = keepAliveInterval;
+            this.reconnectTimeout = reconnectTimeout;
+            if (printer.isConnected()) {
+                printer.disconnect();
+            }
+            String result = open();
+            if (result == null) {
+                throw new PrinterException("Connection failed: " + (printerName != null ? printerName : "Unknown error"));
+            }
+            scheduleKeepAlive();
+            return result;
+        }
+    }
+
+    /**
+     * Connects on the connection's thread, so the caller is never blocked by the SDK. Without
+     * a callback the connect warms up a known printer and is retried by the keep-alive when
+     * it fails.
+     */
+    public void connectAsync(String address, String type, int port, int timeout, long keepAliveInterval,
+                             long reconnectTimeout, Callback callback) throws PrinterException {
+        try {
+            scheduler.execute(() -> {
+                try {
+                    String result = connect(address, type, port, timeout, keepAliveInterval, reconnectTimeout);
+                    if (callback != null) {
+                        callback.connected(result);
+                    }
+                } catch (PrinterException e) {
+                    if (callback != null) {
+                        callback.failed(e);
+                        return;
+                    }
+                    Log.w(TAG, "Pre-warming " + printerId + " failed, will retry: " + e.getMessage());
+                    scheduleKeepAlive();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new PrinterException("Printer " + printerId + " is shut down", e);
+        }
+    }
+
+    /**
+     * Restores a dropped session, retrying with backoff until the reconnect timeout elapses.
+     * Returns immediately when the printer is connected and false when no address is known.
+     */
+    public boolean reconnect() {
+        synchronized (connectLock) {
+            if (printer.isConnected()) {
+                return true;
+            }
+            if (address == null) {
+                return false;
+            }
+            long deadline = System.currentTimeMillis() + reconnectTimeout;
+            long backoff = INITIAL_BACKOFF_MS;
+            for (int attempt = 1; ; attempt++) {
+                notifyState("reconnecting", attempt);
+                if (open() != null) {
+                    Log.i(TAG, "Reconnected " + printerId + " after " + attempt + " attempt(s)");
+                    return true;
+                }
+                // Equal jitter keeps a minimum delay while spreading retries of several printers
+                long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                if (System.currentTimeMillis() + delay >= deadline) {
+                    notifyState("disconnected", attempt);
+                    return false;
+                }
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+            }
+        }
+    }
+
+    /**
+     * Records traffic on the link, which makes a keep-alive probe unnecessary.
+     */
+    public void touch() {
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Runs the callback after every successful connect, on the connecting thread. It must not
+     * block, since it runs with the connection locked.
+     */
+    public void setOnConnected(Runnable callback) {
+        onConnected = callback;
+    }
+
+    public boolean hasTarget() {
+        return address != null;
+    }
+
+    /**
+     * Disconnects and forgets the target, so the session is not restored.
+     */
+    public void close() {
+        synchronized (connectLock) {
+            address = null;
+            cancelKeepAlive();
+            if (printer.isConnected()) {
+                printer.disconnect();
+            }
+        }
+        notifyState("disconnected", 0);
+    }
+
+    /**
+     * Drops the session but keeps the target, so the next job or keep-alive probe restores
+     * it. Fails an SDK call that is blocked on the connection.
+     */
+    public void drop() {
+        if (printer.isConnected()) {
+            printer.disconnect();
+        }
+        notifyState("disconnected", 0);
+    }
+
+    public void shutdown() {
+        close();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Opens the remembered target. Returns the printer name, or null when the attempt failed.
+     */
+    private String open() {
+        String result;
+        long connectStart = System.nanoTime();
+        // The SDK's own timeout only covers the socket connect, not the handshake after it
+        Watchdog.Operation operation = watchdog.newOperation("connect to " + address, 0,
+            Math.max(0, timeout) + Watchdog.ABORT_GRACE_MS, null);
+        try {
+            operation.begin(aborted -> {
+                if (printer.isConnected()) {
+                    printer.disconnect();
+                }
+            });
+            operation.beginCall("connect");
+            try {
+                if ("network".equals(type)) {
+                    if (Log.isLoggable(TAG, Log.DEBUG)) {
+                        Log.d(TAG, "Connecting to network printer at " + address + ":" + port + " with timeout of " + timeout + "ms");
+                    }
+                    result = printer.connect(address, port, timeout);
+                } else {
+                    result = printer.connect(address);
+                }
+            } finally {
+                operation.endCall();
+            }
+            operation.check();
+            metrics.record(Metrics.Phase.CONNECT, connectStart);
+            if (Log.isLoggable(TAG, Log.DEBUG)) {
+                Log.d(TAG, "Connection result: " + result);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Connecting to " + address + " failed: " + e.getMessage());
+            printerName = e.getMessage();
+            return null;
+        } finally {
+            operation.finish();
+        }
+        // Success: non-null result that doesn't contain error codes
+        printerName = result;
+        if (result == null || result.trim().isEmpty() || result.contains("FAIL") || result.contains("ERROR")) {
+            return null;
+        }
+        touch();
+        notifyState("connected", 0);
+        Runnable callback = onConnected;
+        if (callback != null) {
+            callback.run();
+        }
+        return result;
+    }
+
+    private synchronized void scheduleKeepAlive() {
+        cancelKeepAlive();
+        long interval = keepAliveInterval;
+        if (interval > 0 && !scheduler.isShutdown()) {
+            keepAlive = scheduler.scheduleWithFixedDelay(this::probe, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void cancelKeepAlive() {
+        if (keepAlive != null) {
+            keepAlive.cancel(false);
+            keepAlive = null;
+        }
+    }
+
+    private void probe() {
+        if (address == null || System.currentTimeMillis() - lastActivity < keepAliveInterval) {
+            return;
+        }
+        boolean alive;
+        synchronized (transactionLock) {
+            // A status read is the cheapest round trip the SDK offers
+            alive = printer.isConnected() && printer.getStatus(false) != null;
+        }
+        if (alive) {
+            touch();
+        } else {
+            Log.w(TAG, "Keep-alive probe of " + printerId + " failed, reconnecting");
+            if (printer.isConnected()) {
+                printer.disconnect();
+            }
+            reconnect();
+        }
+    }
+
+    private void notifyState(String state, int attempt) {
+        JSObject data = new JSObject();
+        data.put("printerId", printerId);
+        data.put("state", state);
+        if (attempt > 0) {
+            data.put("attempt", attempt);
+        }
+        listener.onEvent(EVENT_CONNECTION_STATE, data);
+    }
+}
@@ -0,0 +1,205 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Cache-directory backed store for documents that are too large to pass through the bridge in
+ * one piece. Uploads are stream-decoded chunk by chunk straight to disk, so only one chunk is
+ * ever held in memory.
+ */
+public class DocumentStore {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Base64 slice decoded at a time; a multiple of 4 so slices never split a quantum
+    private static final int DECODE_SLICE = 64 * 1024;
+
+    private static class Upload {
+        final File file;
+        final OutputStream out;
+        // Trailing base64 characters that did not form a complete 4 character quantum yet
+        String carry = "";
+        long size;
+
+        Upload(File file) throws IOException {
+            this.file = file;
+            this.out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        }
+    }
+
+    private final Context context;
+    private final File directory;
+    private final Map<String, Upload> uploads = new HashMap<>();
+    private final Map<String, File> documents = new HashMap<>();
+
+    public DocumentStore(Context context) {
+        this.context = context;
+        this.directory = new File(context.getCacheDir(), "bixolon-documents");
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create document directory " + directory);
+        }
+    }
+
+    public synchronized String begin() throws PrinterException {
+        String documentId = UUID.randomUUID().toString();
+        try {
+            uploads.put(documentId, new Upload(new File(directory, documentId + ".bin")));
+        } catch (IOException e) {
+            throw new PrinterException("Failed to create document file: " + e.getMessage(), e);
+        }
+        return documentId;
+    }
+
+    /**
+     * Decodes a base64 chunk and appends it to the document. Chunks may be split anywhere,
+     * incomplete trailing characters are carried over to the next chunk.
+     */
+    public synchronized long append(String documentId, String base64Chunk) throws PrinterException {
+        Upload upload = uploads.get(documentId);
+        if (upload == null) {
+            throw new PrinterException("Unknown document upload: " + documentId);
+        }
+        if (base64Chunk == null || base64Chunk.isEmpty()) {
+            return upload.size;
+        }
+        String data = upload.carry + stripWhitespace(base64Chunk);
+        int usable = data.length() - data.length() % 4;
+        try {
+            upload.size += decodeTo(data, 0, usable, upload.out);
+        } catch (IOException | IllegalArgumentException e) {
+            discard(documentId);
+            throw new PrinterException("Failed to write document chunk: " + e.getMessage(), e);
+        }
+        upload.carry = data.substring(usable);
+        return upload.size;
+    }
+
+    public synchronized long commit(String documentId) throws PrinterException {
+        Upload upload = uploads.remove(documentId);
+        if (upload == null) {
+            throw new PrinterException("Unknown document upload: " + documentId);
+        }
+        try {
+            upload.out.close();
+        } catch (IOException e) {
+            upload.file.delete();
+            throw new PrinterException("Failed to write document: " + e.getMessage(), e);
+        }
+        if (!upload.carry.isEmpty()) {
+            upload.file.delete();
+            throw new PrinterException("Document " + documentId + " ends with incomplete base64 data");
+        }
+        documents.put(documentId, upload.file);
+        return upload.size;
+    }
+
+    /**
+     * Returns the file of a committed document.
+     */
+    public synchronized File get(String documentId) throws PrinterException {
+        File file = documents.get(documentId);
+        if (file == null || !file.exists()) {
+            throw new PrinterException("Unknown document: " + documentId + ". Call commitDocument() first.");
+        }
+        return file;
+    }
+
+    /**
+     * Deletes a committed document or aborts an upload in progress.
+     */
+    public synchronized boolean discard(String documentId) {
+        Upload upload = uploads.remove(documentId);
+        if (upload != null) {
+            try {
+                upload.out.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to close document upload: " + e.getMessage());
+            }
+            return upload.file.delete();
+        }
+        File file = documents.remove(documentId);
+        return file != null && file.delete();
+    }
+
+    public synchronized void clear() {
+        for (String documentId : new ArrayList<>(uploads.keySet())) {
+            discard(documentId);
+        }
+        for (File file : documents.values()) {
+            file.delete();
+        }
+        documents.clear();
+    }
+
+    /**
+     * Decodes a complete base64 string to a new temporary file a slice at a time, so the
+     * decoded bytes never exist as one array next to the string.
+     */
+    public File writeBase64(String base64, String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix, context.getCacheDir());
+        String data = stripWhitespace(base64);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            decodeTo(data, 0, data.length(), out);
+        } catch (IOException | IllegalArgumentException e) {
+            file.delete();
+            throw e instanceof IOException ? (IOException) e : new IOException(e.getMessage(), e);
+        }
+        return file;
+    }
+
+    /**
+     * Copies a content:// or file:// URI into a temporary file through a fixed size buffer.
+     */
+    public File copyUri(Uri uri, String prefix, String suffix) throws IOException {
+        File file = File.createTempFile(prefix, suffix, context.getCacheDir());
+        try (InputStream in = context.getContentResolver().openInputStream(uri);
+             OutputStream out = new FileOutputStream(file)) {
+            if (in == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private static long decodeTo(String data, int start, int end, OutputStream out) throws IOException {
+        long written = 0;
+        for (int offset = start; offset < end; offset += DECODE_SLICE) {
+            int sliceEnd = Math.min(end, offset + DECODE_SLICE);
+            byte[] bytes = Base64.decode(data.substring(offset, sliceEnd), Base64.DEFAULT);
+            out.write(bytes);
+            written += bytes.length;
+        }
+        return written;
+    }
+
+    private static String stripWhitespace(String data) {
+        for (int i = 0; i < data.length(); i++) {
+            if (Character.isWhitespace(data.charAt(i))) {
+                return data.replaceAll("\\s", "");
+            }
+        }
+        return data;
+    }
+}
@@ -0,0 +1,10 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.getcapacitor.JSObject;
+
+/**
+ * Receives events that the plugin forwards to JavaScript through notifyListeners.
+ */
+public interface EventListener {
+    void onEvent(String eventName, JSObject data);
+}
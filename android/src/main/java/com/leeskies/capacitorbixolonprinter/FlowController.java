@@ -0,0 +1,252 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Paces one printer's transactions to the rate it actually prints at. Every committed
+ * transaction adds its labels to an estimate of the printer's backlog, which drains at the
+ * measured print rate. A transaction that would push the backlog past the target depth waits
+ * until the estimate has room. The printer's busy state is read whenever the estimate claims
+ * the printer is idle or full, and corrects the print rate: a printer still busy when it
+ * should be done is slower than estimated, an idle printer that should still be busy is
+ * faster. A printer kept fed is never idle, so a busy printer at a full estimate nudges the
+ * rate up, and a refused transaction halves it. Rates are exponentially decayed counts, so
+ * they follow changes within seconds.
+ */
+public class FlowController {
+    public static final int DEFAULT_MAX_BACKLOG = 8;
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    // Time constant of the achieved rates
+    private static final double RATE_WINDOW_SECONDS = 5.0;
+    private static final long MIN_WAIT_MS = 20;
+    private static final long MAX_WAIT_MS = 1000;
+    // Status poll interval while the print rate is not known yet
+    private static final long POLL_MS = 250;
+    // A printer that stays busy this long is not waited for any further
+    private static final long MAX_THROTTLE_NANOS = 30_000_000_000L;
+    // Rate increase per status read that finds the printer busy as estimated
+    private static final double PROBE_FACTOR = 1.05;
+    // Rate decrease when the printer refuses a transaction
+    private static final double REFUSED_FACTOR = 0.5;
+    private static final long INITIAL_BACKOFF_MS = 250;
+    private static final long MAX_BACKOFF_MS = 4000;
+
+    /** Pacing settings shared by every printer. */
+    public static final class Settings {
+        public static final Settings DEFAULT = new Settings(DEFAULT_MAX_BACKLOG, DEFAULT_MAX_RETRIES);
+
+        /** Labels the printer may be ahead by, 0 turns pacing off */
+        public final int maxBacklog;
+        /** Retries of a transaction the printer refused while busy */
+        public final int maxRetries;
+
+        public Settings(int maxBacklog, int maxRetries) {
+            this.maxBacklog = maxBacklog;
+            this.maxRetries = maxRetries;
+        }
+    }
+
+    /** Reads the printer's current status. */
+    public interface StatusSource {
+        PrinterState read();
+    }
+
+    private final String printerId;
+    private final StatusSource status;
+    private final int maxBacklog;
+    private final int maxRetries;
+
+    // Guarded by this
+    private double labelRate;
+    private double byteRate;
+    private long rateUpdatedAt = System.nanoTime();
+    // Labels per second the printer prints, 0 until it was first measured
+    private double printRate;
+    // Labels estimated to be in the printer's buffer
+    private double backlog;
+    private long backlogUpdatedAt = System.nanoTime();
+    // Labels sent since the printer was last seen idle, and when the first of them went out
+    private long sentSinceIdle;
+    private long busySince;
+    private long throttles;
+    private long throttledNanos;
+    private long retries;
+
+    public FlowController(String printerId, StatusSource status, int maxBacklog, int maxRetries) {
+        this.printerId = printerId;
+        this.status = status;
+        this.maxBacklog = maxBacklog;
+        this.maxRetries = Math.max(0, maxRetries);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Blocks until the printer should have room for the given number of labels. A batch of
+     * more labels than the target depth waits until the estimate is empty. Returns at once
+     * when pacing is off, when the status can't be read, or after waiting too long for a
+     * printer that stays busy.
+     */
+    public void awaitCapacity(int labels) {
+        if (maxBacklog <= 0) {
+            return;
+        }
+        int needed = Math.min(labels, maxBacklog);
+        long start = System.nanoTime();
+        boolean throttled = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    drain(System.nanoTime());
+                    if (backlog + needed <= maxBacklog && (backlog > 0 || sentSinceIdle == 0)) {
+                        return;
+                    }
+                }
+                // The estimate says the printer is idle or full, see whether it is. The read can
+                // block in the SDK, so it is made without holding the lock snapshots need
+                PrinterState state = status.read();
+                if (!state.known) {
+                    return;
+                }
+                long waitMs;
+                synchronized (this) {
+                    long now = System.nanoTime();
+                    drain(now);
+                    if (!state.isBusy()) {
+                        idle(now);
+                        return;
+                    }
+                    if (backlog <= 0) {
+                        // Still printing labels that should be done by now, so it is slower than
+                        // estimated, and has something left to print while this batch goes out
+                        slower();
+                        return;
+                    }
+                    if (!throttled && printRate > 0) {
+                        // Busy as estimated; an idle printer is never seen while it is kept fed, so
+                        // probe for a higher rate until the printer pushes back
+                        printRate *= PROBE_FACTOR;
+                    }
+                    if (now - start > MAX_THROTTLE_NANOS) {
+                        Log.w(TAG, "Printer " + printerId + " stayed busy, sending without waiting");
+                        return;
+                    }
+                    throttled = true;
+                    waitMs = printRate > 0 ? (long) Math.ceil((backlog + needed - maxBacklog) * 1000 / printRate) : POLL_MS;
+                }
+                Thread.sleep(Math.max(MIN_WAIT_MS, Math.min(MAX_WAIT_MS, waitMs)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (throttled) {
+                synchronized (this) {
+                    throttles++;
+                    throttledNanos += System.nanoTime() - start;
+                }
+            }
+        }
+    }
+
+    /**
+     * Records a transaction the printer accepted.
+     */
+    public synchronized void committed(int labels, long bytes) {
+        long now = System.nanoTime();
+        decayRates(now);
+        labelRate += labels / RATE_WINDOW_SECONDS;
+        byteRate += bytes / RATE_WINDOW_SECONDS;
+        if (labels > 0) {
+            drain(now);
+            if (sentSinceIdle == 0) {
+                busySince = now;
+            }
+            sentSinceIdle += labels;
+            backlog += labels;
+        }
+    }
+
+    /**
+     * Records a transaction the printer refused while busy, and returns how long to back off
+     * before the given retry.
+     */
+    public synchronized long refused(int attempt) {
+        retries++;
+        // The printer's buffer overflowed, so the rate was well off; back off further than slower()
+        if (printRate > 0) {
+            printRate *= REFUSED_FACTOR;
+        }
+        backlog = Math.max(backlog, maxBacklog);
+        return Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempt, 16));
+    }
+
+    public synchronized void reset() {
+        throttles = 0;
+        throttledNanos = 0;
+        retries = 0;
+    }
+
+    public synchronized JSObject toJSObject() {
+        long now = System.nanoTime();
+        decayRates(now);
+        drain(now);
+        JSObject snapshot = new JSObject();
+        snapshot.put("labelsPerSecond", labelRate);
+        snapshot.put("bytesPerSecond", byteRate);
+        snapshot.put("targetLabelsPerSecond", printRate);
+        snapshot.put("backlog", backlog);
+        snapshot.put("maxBacklog", maxBacklog);
+        snapshot.put("throttles", throttles);
+        snapshot.put("throttledMs", throttledNanos / 1_000_000);
+        snapshot.put("retries", retries);
+        return snapshot;
+    }
+
+    private void decayRates(long now) {
+        double factor = Math.exp(-(now - rateUpdatedAt) / 1e9 / RATE_WINDOW_SECONDS);
+        labelRate *= factor;
+        byteRate *= factor;
+        rateUpdatedAt = now;
+    }
+
+    private void drain(long now) {
+        if (printRate > 0) {
+            backlog = Math.max(0, backlog - printRate * (now - backlogUpdatedAt) / 1e9);
+        }
+        backlogUpdatedAt = now;
+    }
+
+    /**
+     * The printer finished everything it was sent, so it prints at least as fast as the labels
+     * went out since it was last idle. While the estimate still had a backlog it is faster
+     * than estimated, by at least the ratio of the labels sent to the labels estimated done.
+     */
+    private void idle(long now) {
+        if (sentSinceIdle > 0) {
+            double seconds = Math.max(1e-3, (now - busySince) / 1e9);
+            double measured = sentSinceIdle / seconds;
+            double corrected = printRate;
+            if (backlog > 0 && printRate > 0) {
+                corrected *= Math.min(2, sentSinceIdle / Math.max(1, sentSinceIdle - backlog));
+            }
+            printRate = Math.max(measured, corrected);
+        }
+        backlog = 0;
+        sentSinceIdle = 0;
+    }
+
+    private void slower() {
+        if (printRate > 0) {
+            printRate *= 0.9;
+        }
+        // Something is left; the next status read tells how much longer it takes
+        backlog = Math.max(backlog, 1);
+    }
+}
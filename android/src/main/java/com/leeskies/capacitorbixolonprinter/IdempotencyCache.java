@@ -0,0 +1,169 @@
+package com.leeskies.capacitorbixolonprinter;
+
+/**
+ * Remembers the idempotency keys of recent jobs, so a retried submission can be matched to
+ * the job it repeats. Keys are stored as 64-bit hashes in primitive arrays: a ring in
+ * submission order, which makes expiring old keys a walk from its head, and an open
+ * addressing index into the ring. Keys are forgotten after the window or when the ring is
+ * full, whichever comes first, and when their job fails, so a failed job can be retried.
+ */
+public class IdempotencyCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final long DEFAULT_WINDOW_MS = 10 * 60 * 1000;
+
+    /** Returned by {@link #claim} when the key was not known and is now held by the new job */
+    public static final int CLAIMED = 0;
+    public static final int PENDING = 1;
+    public static final int SUCCEEDED = 2;
+
+    // State of a ring slot whose key was forgotten before the head reached it
+    private static final byte FREE = 0;
+
+    private final long windowMs;
+    private final long[] hashes;
+    private final long[] times;
+    private final long[] jobs;
+    private final byte[] states;
+    // Ring slot + 1 per bucket, 0 for an empty bucket
+    private final int[] index;
+    private final int mask;
+    private int head;
+    private int size;
+
+    public IdempotencyCache(int capacity, long windowMs) {
+        capacity = Math.max(1, capacity);
+        this.windowMs = windowMs;
+        this.hashes = new long[capacity];
+        this.times = new long[capacity];
+        this.jobs = new long[capacity];
+        this.states = new byte[capacity];
+        // At most half full, which keeps probe sequences short
+        int buckets = Integer.highestOneBit(capacity * 2 - 1) << 1;
+        this.index = new int[buckets];
+        this.mask = buckets - 1;
+    }
+
+    public static long hash(String key) {
+        // 64-bit FNV-1a, collisions between live keys are vanishingly unlikely
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Claims a key for a new job. When the key is already held, nothing changes and the
+     * holder's job number and state are returned packed as {@code job << 2 | state}.
+     *
+     * @return {@link #CLAIMED}, or the packed job number and {@link #PENDING} or {@link #SUCCEEDED}
+     */
+    public synchronized long claim(long hash, long job, long now) {
+        expire(now);
+        int bucket = find(hash);
+        if (index[bucket] != 0) {
+            int slot = index[bucket] - 1;
+            return jobs[slot] << 2 | states[slot];
+        }
+        if (size == hashes.length) {
+            forget(head);
+            advance();
+            // Deleting may have shifted entries into the bucket found above
+            bucket = find(hash);
+        }
+        int slot = (head + size) % hashes.length;
+        hashes[slot] = hash;
+        times[slot] = now;
+        jobs[slot] = job;
+        states[slot] = PENDING;
+        size++;
+        index[bucket] = slot + 1;
+        return CLAIMED;
+    }
+
+    public synchronized void succeeded(long hash, long job) {
+        int slot = slotOf(hash, job);
+        if (slot >= 0) {
+            states[slot] = SUCCEEDED;
+        }
+    }
+
+    /**
+     * Forgets the key of a job that failed, so submitting it again prints it.
+     */
+    public synchronized void failed(long hash, long job) {
+        int slot = slotOf(hash, job);
+        if (slot >= 0) {
+            forget(slot);
+        }
+    }
+
+    public synchronized int size() {
+        int live = 0;
+        for (int i = 0; i < size; i++) {
+            if (states[(head + i) % hashes.length] != FREE) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    private int slotOf(long hash, long job) {
+        int bucket = find(hash);
+        int slot = index[bucket] - 1;
+        return slot >= 0 && jobs[slot] == job && states[slot] != FREE ? slot : -1;
+    }
+
+    private void expire(long now) {
+        while (size > 0 && (states[head] == FREE || now - times[head] > windowMs)) {
+            forget(head);
+            advance();
+        }
+    }
+
+    private void advance() {
+        head = (head + 1) % hashes.length;
+        size--;
+    }
+
+    /**
+     * Returns the bucket holding the hash, or the empty bucket where it would go.
+     */
+    private int find(long hash) {
+        int bucket = spread(hash);
+        while (index[bucket] != 0 && hashes[index[bucket] - 1] != hash) {
+            bucket = (bucket + 1) & mask;
+        }
+        return bucket;
+    }
+
+    private int spread(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void forget(int slot) {
+        if (states[slot] == FREE) {
+            return;
+        }
+        states[slot] = FREE;
+        int bucket = find(hashes[slot]);
+        if (index[bucket] != slot + 1) {
+            return;
+        }
+        // Backward shift deletion keeps every probe sequence unbroken without tombstones
+        int empty = bucket;
+        int next = (empty + 1) & mask;
+        while (index[next] != 0) {
+            int home = spread(hashes[index[next] - 1]);
+            // Move the entry back unless its home lies cyclically within (empty, next]
+            boolean movable = empty <= next ? home <= empty || home > next : home <= empty && home > next;
+            if (movable) {
+                index[empty] = index[next];
+                empty = next;
+            }
+            next = (next + 1) & mask;
+        }
+        index[empty] = 0;
+    }
+}
@@ -0,0 +1,228 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts ARGB pixels to pure black and white for a 1-bit print head. The image is split
+ * into horizontal bands that are processed in parallel on a pool sized to the number of
+ * cores, working on primitive arrays only.
+ *
+ * Floyd-Steinberg diffuses error downwards, so each band first runs over a few rows of the
+ * band above it without writing them. That seeds the error buffer and hides the seams that
+ * independently dithered bands would otherwise show.
+ */
+public class ImageDither {
+    public static final int BLACK = 0xFF000000;
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int DEFAULT_THRESHOLD = 128;
+
+    public enum Method {
+        THRESHOLD("threshold"),
+        ORDERED("ordered"),
+        FLOYD_STEINBERG("floydSteinberg");
+
+        final String key;
+
+        Method(String key) {
+            this.key = key;
+        }
+
+        static Method parse(String value) throws PrinterException {
+            for (Method method : values()) {
+                if (method.key.equalsIgnoreCase(value)) {
+                    return method;
+                }
+            }
+            throw new PrinterException("Unknown dithering method: " + value);
+        }
+    }
+
+    // Bands smaller than this cost more in hand-off than they save
+    private static final int MIN_BAND_ROWS = 32;
+    private static final int SEED_ROWS = 8;
+
+    // 8x8 Bayer matrix, values 0-63
+    private static final int[] BAYER = {
+        0, 32, 8, 40, 2, 34, 10, 42,
+        48, 16, 56, 24, 50, 18, 58, 26,
+        12, 44, 4, 36, 14, 46, 6, 38,
+        60, 28, 52, 20, 62, 30, 54, 22,
+        3, 35, 11, 43, 1, 33, 9, 41,
+        51, 19, 59, 27, 49, 17, 57, 25,
+        15, 47, 7, 39, 13, 45, 5, 37,
+        63, 31, 55, 23, 61, 29, 53, 21
+    };
+
+    private final int threads;
+    private final ThreadPoolExecutor executor;
+
+    public ImageDither() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ImageDither(int threads) {
+        this.threads = Math.max(1, threads);
+        this.executor = new ThreadPoolExecutor(this.threads, this.threads, 30, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "BixolonDither");
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Number of bands an image of the given height is split into.
+     */
+    public int bandsFor(int height) {
+        return Math.max(1, Math.min(threads, height / MIN_BAND_ROWS));
+    }
+
+    /**
+     * Replaces every pixel with {@link #BLACK} or {@link #WHITE}. Transparent pixels are
+     * composited onto white, since transparency would otherwise print as black.
+     *
+     * @param threshold luminance 0-255 below which a pixel prints black; biases ordered and
+     *                  Floyd-Steinberg dithering the same way
+     */
+    public void dither(int[] pixels, int width, int height, Method method, int threshold) throws InterruptedException {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array is smaller than " + width + "x" + height);
+        }
+        byte[] gray = new byte[width * height];
+        int bands = bandsFor(height);
+        run(bands, height, (start, end) -> toGray(pixels, gray, width, start, end));
+        run(bands, height, (start, end) -> {
+            switch (method) {
+                case THRESHOLD:
+                    threshold(gray, pixels, width, start, end, threshold);
+                    break;
+                case ORDERED:
+                    ordered(gray, pixels, width, start, end, threshold);
+                    break;
+                default:
+                    floydSteinberg(gray, pixels, width, start, end, threshold);
+                    break;
+            }
+        });
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private interface Band {
+        void process(int startRow, int endRow);
+    }
+
+    /**
+     * Runs one task per band and waits for all of them. The last band runs on the calling
+     * thread.
+     */
+    private void run(int bands, int height, Band band) throws InterruptedException {
+        if (bands == 1) {
+            band.process(0, height);
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>(bands - 1);
+        int rows = (height + bands - 1) / bands;
+        for (int i = 0; i < bands - 1; i++) {
+            int start = i * rows;
+            int end = Math.min(height, start + rows);
+            futures.add(executor.submit((Callable<Void>) () -> {
+                band.process(start, end);
+                return null;
+            }));
+        }
+        try {
+            band.process((bands - 1) * rows, height);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void toGray(int[] pixels, byte[] gray, int width, int startRow, int endRow) {
+        for (int i = startRow * width, end = endRow * width; i < end; i++) {
+            int pixel = pixels[i];
+            int alpha = pixel >>> 24;
+            // Rec. 601 luma in fixed point, weights sum to 256
+            int luma = (77 * ((pixel >> 16) & 0xFF) + 150 * ((pixel >> 8) & 0xFF) + 29 * (pixel & 0xFF)) >> 8;
+            gray[i] = (byte) ((luma * alpha + 255 * (255 - alpha)) / 255);
+        }
+    }
+
+    private static void threshold(byte[] gray, int[] pixels, int width, int startRow, int endRow, int threshold) {
+        for (int i = startRow * width, end = endRow * width; i < end; i++) {
+            pixels[i] = (gray[i] & 0xFF) < threshold ? BLACK : WHITE;
+        }
+    }
+
+    private static void ordered(byte[] gray, int[] pixels, int width, int startRow, int endRow, int threshold) {
+        int bias = threshold - DEFAULT_THRESHOLD;
+        for (int y = startRow; y < endRow; y++) {
+            int row = (y & 7) << 3;
+            int i = y * width;
+            for (int x = 0; x < width; x++, i++) {
+                // Spread the matrix over 0-255 so mid gray prints as a 50% pattern
+                int level = BAYER[row | (x & 7)] * 4 + 2 + bias;
+                pixels[i] = (gray[i] & 0xFF) < level ? BLACK : WHITE;
+            }
+        }
+    }
+
+    /**
+     * Serpentine Floyd-Steinberg with error kept in two rows of 1/16 units.
+     */
+    private static void floydSteinberg(byte[] gray, int[] pixels, int width, int startRow, int endRow, int threshold) {
+        // One spare column on each side so the kernel never needs bounds checks
+        int[] current = new int[width + 2];
+        int[] next = new int[width + 2];
+        for (int y = Math.max(0, startRow - SEED_ROWS); y < endRow; y++) {
+            boolean write = y >= startRow;
+            boolean leftToRight = (y & 1) == 0;
+            int step = leftToRight ? 1 : -1;
+            int x = leftToRight ? 0 : width - 1;
+            int rowStart = y * width;
+            for (int n = 0; n < width; n++, x += step) {
+                int e = x + 1;
+                int value = (gray[rowStart + x] & 0xFF) + (current[e] >> 4);
+                int error;
+                if (value < threshold) {
+                    error = value;
+                    if (write) {
+                        pixels[rowStart + x] = BLACK;
+                    }
+                } else {
+                    error = value - 255;
+                    if (write) {
+                        pixels[rowStart + x] = WHITE;
+                    }
+                }
+                current[e + step] += error * 7;
+                next[e - step] += error * 3;
+                next[e] += error * 5;
+                next[e + step] += error;
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+        }
+    }
+}
@@ -0,0 +1,427 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Append-only record of queued jobs in a memory-mapped file, so jobs that had not finished
+ * when the app was killed or the printer dropped can be sent again. Appending a record is a
+ * copy into the mapping; the kernel keeps the pages when the process dies, and forcing them
+ * to storage, which only matters for power loss, is batched on a timer.
+ *
+ * Every record carries its length and a CRC-32, so a torn write at the tail is detected and
+ * dropped when the file is read back. The file is rewritten with only unfinished jobs when it
+ * fills up and on open, and simply rewound whenever no job is unfinished.
+ */
+public class JobJournal {
+    public static final int DEFAULT_SIZE = 1024 * 1024;
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 1000;
+
+    // Jobs with larger options, such as big inline documents, are not journaled
+    static final int MAX_OPTIONS_BYTES = 256 * 1024;
+
+    private static final String FILE_NAME = "jobs.journal";
+    private static final int MAGIC = 0x424A4E4C; // "BJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    // Length and CRC-32 in front of every record
+    private static final int RECORD_OVERHEAD = 8;
+    // Zero length written after the last record marks the end
+    private static final int TERMINATOR = 4;
+
+    private static final byte SUBMITTED = 1;
+    private static final byte PROGRESS = 2;
+    private static final byte FINISHED = 3;
+
+    /** An unfinished job. */
+    public static final class Entry {
+        public final long sequence;
+        public final String printerId;
+        public final String type;
+        private final byte[] options;
+        // Units of the job, such as serial labels, that are known to have printed
+        int committed;
+        // Whether the job is in a print queue right now
+        boolean active;
+
+        Entry(long sequence, String printerId, String type, byte[] options) {
+            this.sequence = sequence;
+            this.printerId = printerId;
+            this.type = type;
+            this.options = options;
+        }
+
+        public int getCommitted() {
+            return committed;
+        }
+
+        public JSObject getOptions() throws PrinterException {
+            try {
+                return new JSObject(new String(options, StandardCharsets.UTF_8));
+            } catch (JSONException e) {
+                throw new PrinterException("Journaled job " + sequence + " has invalid options: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private final File file;
+    private final long syncIntervalMs;
+    private final LinkedHashMap<Long, Entry> unfinished = new LinkedHashMap<>();
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    private MappedByteBuffer map;
+    private int position;
+    private long lastSequence;
+    private byte[] scratch = new byte[256];
+    private boolean dirty;
+    private boolean closed;
+
+    private JobJournal(File file, long syncIntervalMs) {
+        this.file = file;
+        this.syncIntervalMs = Math.max(0, syncIntervalMs);
+        if (this.syncIntervalMs > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "BixolonJournal");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, this.syncIntervalMs, this.syncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    /**
+     * Opens the journal in the given directory, recovering the jobs that were unfinished when
+     * it was last written.
+     *
+     * @param size           initial size of the mapping in bytes; it grows when unfinished jobs need more
+     * @param syncIntervalMs how often written records are forced to storage, or 0 to force every record
+     */
+    public static JobJournal open(File directory, int size, long syncIntervalMs) throws PrinterException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new PrinterException("Failed to create journal directory " + directory);
+        }
+        JobJournal journal = new JobJournal(new File(directory, FILE_NAME), syncIntervalMs);
+        try {
+            journal.recover();
+            journal.rewrite(Math.max(HEADER_SIZE + TERMINATOR, size));
+        } catch (IOException e) {
+            journal.close();
+            throw new PrinterException("Failed to open job journal: " + e.getMessage(), e);
+        }
+        if (!journal.unfinished.isEmpty()) {
+            Log.i(TAG, "Recovered " + journal.unfinished.size() + " unfinished job(s) from the journal");
+        }
+        return journal;
+    }
+
+    /**
+     * Highest job sequence number in the journal, so new jobs can be numbered above it.
+     */
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized int getUnfinishedCount() {
+        return unfinished.size();
+    }
+
+    /**
+     * Records a job that was queued. Returns false when the job is not journaled.
+     */
+    public synchronized boolean submitted(long sequence, String printerId, String type, JSObject options) {
+        if (closed) {
+            return false;
+        }
+        byte[] json = options.toString().getBytes(StandardCharsets.UTF_8);
+        if (json.length > MAX_OPTIONS_BYTES) {
+            Log.w(TAG, "Not journaling " + type + " job " + sequence + ", its options take " + json.length + " bytes");
+            return false;
+        }
+        Entry entry = new Entry(sequence, printerId, type, json);
+        entry.active = true;
+        unfinished.put(sequence, entry);
+        lastSequence = Math.max(lastSequence, sequence);
+        if (!append(entry, SUBMITTED)) {
+            unfinished.remove(sequence);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records how many units of a job have been printed, so a replay resumes after them.
+     */
+    public synchronized void progress(long sequence, int committed) {
+        Entry entry = unfinished.get(sequence);
+        if (entry == null || closed) {
+            return;
+        }
+        entry.committed = committed;
+        append(entry, PROGRESS);
+    }
+
+    /**
+     * Records that a job printed or failed in a way that sending it again would not fix.
+     */
+    public synchronized void finished(long sequence) {
+        Entry entry = unfinished.remove(sequence);
+        if (entry == null || closed) {
+            return;
+        }
+        if (unfinished.isEmpty()) {
+            // Nothing left to replay, start over instead of recording the finish
+            map.putInt(HEADER_SIZE, 0);
+            position = HEADER_SIZE;
+            written();
+        } else {
+            append(entry, FINISHED);
+        }
+    }
+
+    /**
+     * Marks a job that is no longer queued but did not finish, such as one that failed
+     * because the connection was lost. It is handed out again by {@link #takeUnfinished}.
+     */
+    public synchronized void parked(long sequence) {
+        Entry entry = unfinished.get(sequence);
+        if (entry != null) {
+            entry.active = false;
+        }
+    }
+
+    /**
+     * Returns the unfinished jobs of a printer that are not queued, in submission order, and
+     * marks them as queued.
+     */
+    public synchronized List<Entry> takeUnfinished(String printerId) {
+        List<Entry> entries = new ArrayList<>();
+        for (Entry entry : unfinished.values()) {
+            if (!entry.active && entry.printerId.equals(printerId)) {
+                entry.active = true;
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (map != null && dirty) {
+            map.force();
+        }
+        map = null;
+    }
+
+    private synchronized void flush() {
+        if (dirty && !closed) {
+            map.force();
+            dirty = false;
+        }
+    }
+
+    private void written() {
+        if (syncIntervalMs == 0) {
+            map.force();
+        } else {
+            dirty = true;
+        }
+    }
+
+    private boolean append(Entry entry, byte kind) {
+        int length = encode(entry, kind);
+        if (position + RECORD_OVERHEAD + length + TERMINATOR > map.capacity()) {
+            // Only unfinished jobs survive the rewrite, which records their current state, so
+            // the record being appended is covered by it
+            try {
+                rewrite(map.capacity());
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to compact job journal, journaling stops: " + e.getMessage());
+                close();
+                return false;
+            }
+            return true;
+        }
+        write(length);
+        written();
+        return true;
+    }
+
+    /**
+     * Copies an encoded payload from the scratch buffer to the end of the mapping.
+     */
+    private void write(int length) {
+        crc.reset();
+        crc.update(scratch, 0, length);
+        map.position(position + RECORD_OVERHEAD);
+        map.put(scratch, 0, length);
+        map.putInt(position + RECORD_OVERHEAD + length, 0);
+        map.putInt(position + 4, (int) crc.getValue());
+        // The length goes in last, so a record is never visible before it is complete
+        map.putInt(position, length);
+        position += RECORD_OVERHEAD + length;
+    }
+
+    /**
+     * Encodes a record's payload into the scratch buffer and returns its length.
+     */
+    private int encode(Entry entry, byte kind) {
+        byte[] printerId = kind == SUBMITTED ? entry.printerId.getBytes(StandardCharsets.UTF_8) : null;
+        byte[] type = kind == SUBMITTED ? entry.type.getBytes(StandardCharsets.UTF_8) : null;
+        int length = 1 + 8;
+        if (kind == SUBMITTED) {
+            length += 4 + printerId.length + 4 + type.length + 4 + entry.options.length;
+        } else if (kind == PROGRESS) {
+            length += 4;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(scratch);
+        buffer.put(kind).putLong(entry.sequence);
+        if (kind == SUBMITTED) {
+            buffer.putInt(printerId.length).put(printerId);
+            buffer.putInt(type.length).put(type);
+            buffer.putInt(entry.options.length).put(entry.options);
+        } else if (kind == PROGRESS) {
+            buffer.putInt(entry.committed);
+        }
+        return length;
+    }
+
+    /**
+     * Reads the records of an existing journal up to the first one that is incomplete.
+     */
+    private void recover() throws IOException {
+        if (!file.exists() || file.length() < HEADER_SIZE) {
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer existing = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (existing.getInt(0) != MAGIC || existing.getInt(4) != VERSION) {
+                Log.w(TAG, "Ignoring job journal with unknown format");
+                return;
+            }
+            int limit = existing.capacity();
+            int at = HEADER_SIZE;
+            byte[] payload = new byte[256];
+            while (at + RECORD_OVERHEAD <= limit) {
+                int length = existing.getInt(at);
+                if (length <= 0 || length > limit - at - RECORD_OVERHEAD) {
+                    break;
+                }
+                if (payload.length < length) {
+                    payload = new byte[length];
+                }
+                existing.position(at + RECORD_OVERHEAD);
+                existing.get(payload, 0, length);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != existing.getInt(at + 4)) {
+                    Log.w(TAG, "Job journal ends with a damaged record at offset " + at);
+                    break;
+                }
+                apply(ByteBuffer.wrap(payload, 0, length));
+                at += RECORD_OVERHEAD + length;
+            }
+        }
+    }
+
+    private void apply(ByteBuffer record) {
+        byte kind = record.get();
+        long sequence = record.getLong();
+        lastSequence = Math.max(lastSequence, sequence);
+        switch (kind) {
+            case SUBMITTED:
+                String printerId = readString(record);
+                String type = readString(record);
+                byte[] options = new byte[record.getInt()];
+                record.get(options);
+                unfinished.put(sequence, new Entry(sequence, printerId, type, options));
+                break;
+            case PROGRESS:
+                Entry entry = unfinished.get(sequence);
+                if (entry != null) {
+                    entry.committed = record.getInt();
+                }
+                break;
+            case FINISHED:
+                unfinished.remove(sequence);
+                break;
+            default:
+                Log.w(TAG, "Skipping job journal record of unknown kind " + kind);
+                break;
+        }
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the unfinished jobs to a new file and swaps it in, so a crash during the
+     * rewrite leaves the previous journal intact. The new file is at least twice the size
+     * of its content, so it never has to be rewritten again straight away.
+     */
+    private void rewrite(int minimumSize) throws IOException {
+        int content = HEADER_SIZE;
+        for (Entry entry : unfinished.values()) {
+            content += RECORD_OVERHEAD + encode(entry, SUBMITTED);
+            if (entry.committed > 0) {
+                content += RECORD_OVERHEAD + encode(entry, PROGRESS);
+            }
+        }
+        int size = Math.max(minimumSize, 2 * (content + TERMINATOR));
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (RandomAccessFile raf = new RandomAccessFile(temp, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.setLength(size);
+            map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.putInt(0, MAGIC);
+            map.putInt(4, VERSION);
+            map.putInt(HEADER_SIZE, 0);
+            position = HEADER_SIZE;
+            for (Entry entry : unfinished.values()) {
+                write(encode(entry, SUBMITTED));
+                if (entry.committed > 0) {
+                    write(encode(entry, PROGRESS));
+                }
+            }
+            map.force();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+        dirty = false;
+    }
+}
@@ -0,0 +1,380 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+
+import com.bixolon.labelprinter.BixolonLabelPrinter;
+import com.getcapacitor.JSObject;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A label layout that has been validated and compiled once. Option strings are converted to SDK
+ * constants, images are decoded and {{name}} placeholders are split out at compile time, so
+ * drawing a label only substitutes the variable fields.
+ */
+public class LabelTemplate {
+    private final List<Element> elements;
+
+    private LabelTemplate(List<Element> elements) {
+        this.elements = elements;
+    }
+
+    /**
+     * Compiles a list of label elements.
+     *
+     * @param allowVariables whether {{name}} placeholders are parsed, otherwise text is taken literally
+     */
+    public static LabelTemplate compile(JSONArray layout, boolean allowVariables) throws PrinterException {
+        if (layout == null || layout.length() == 0) {
+            throw new PrinterException("Label elements cannot be null or empty");
+        }
+        List<Element> elements = new ArrayList<>(layout.length());
+        for (int i = 0; i < layout.length(); i++) {
+            try {
+                JSObject element = JSObject.fromJSONObject(layout.getJSONObject(i));
+                elements.add(compileElement(element, i, allowVariables));
+            } catch (JSONException e) {
+                throw new PrinterException("Invalid label element at index " + i + ": " + e.getMessage(), e);
+            }
+        }
+        return new LabelTemplate(elements);
+    }
+
+    /**
+     * Draws every element. Must be called inside a transaction.
+     */
+    public void draw(PrinterDevice printer, JSONObject variables) throws PrinterException {
+        for (Element element : elements) {
+            int result = element.draw(printer, variables);
+            if (result != 0) {
+                printer.clearBuffer(); // Clear on failure
+                throw new PrinterException("Failed to draw " + element.describe() + ": error code " + result, result);
+            }
+        }
+    }
+
+    public int getElementCount() {
+        return elements.size();
+    }
+
+    private static Element compileElement(JSObject element, int index, boolean allowVariables) throws PrinterException {
+        String type = element.getString("type", "");
+        String name = type + " element at index " + index;
+        int horizontalPosition = element.getInteger("horizontalPosition", 0);
+        int verticalPosition = element.getInteger("verticalPosition", 0);
+
+        switch (type) {
+            case "text": {
+                String text = element.getString("text");
+                if (text == null || text.isEmpty()) {
+                    throw new PrinterException("Text element cannot have null or empty text");
+                }
+                return new TextElement(
+                    name,
+                    Field.parse(text, allowVariables),
+                    horizontalPosition,
+                    verticalPosition,
+                    Printer.convertFontSize(element.getString("fontSize", "normal")),
+                    element.getInteger("horizontalMultiplier", 1),
+                    element.getInteger("verticalMultiplier", 1),
+                    element.getBoolean("bold", false),
+                    Printer.convertAlignment(element.getString("alignment", "left"))
+                );
+            }
+            case "barcode": {
+                String data = element.getString("data");
+                if (data == null || data.isEmpty()) {
+                    throw new PrinterException("Barcode element cannot have null or empty data");
+                }
+                String barcodeType = element.getString("barcodeType", "CODE128");
+                if (Barcode2D.isSupported(barcodeType)) {
+                    return new Barcode2DElement(
+                        name,
+                        Field.parse(data, allowVariables),
+                        horizontalPosition,
+                        verticalPosition,
+                        Barcode2D.compile(barcodeType, element)
+                    );
+                }
+                int width = element.getInteger("width", 2);
+                return new BarcodeElement(
+                    name,
+                    Field.parse(data, allowVariables),
+                    horizontalPosition,
+                    verticalPosition,
+                    Printer.convertBarcodeType(barcodeType),
+                    width,
+                    element.getInteger("height", 100),
+                    element.getBoolean("hri", false) ? BixolonLabelPrinter.HRI_BELOW_BARCODE : BixolonLabelPrinter.HRI_NOT_PRINTED
+                );
+            }
+            case "image": {
+                String base64Image = element.getString("base64Image");
+                if (base64Image == null || base64Image.isEmpty()) {
+                    throw new PrinterException("Image element cannot have null or empty base64Image");
+                }
+                byte[] imageBytes = Base64.decode(base64Image, Base64.DEFAULT);
+                Bitmap bitmap = BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+                if (bitmap == null) {
+                    throw new PrinterException("Image element could not be decoded");
+                }
+                return new ImageElement(
+                    name,
+                    bitmap,
+                    horizontalPosition,
+                    verticalPosition,
+                    element.getInteger("width", bitmap.getWidth()),
+                    element.getInteger("level", 50),
+                    element.getBoolean("dithering", true)
+                );
+            }
+            case "box":
+            case "line":
+                return new BlockElement(
+                    name,
+                    horizontalPosition,
+                    verticalPosition,
+                    element.getInteger("horizontalEndPosition", horizontalPosition),
+                    element.getInteger("verticalEndPosition", verticalPosition),
+                    "box".equals(type) ? BixolonLabelPrinter.BLOCK_OPTION_BOX : BixolonLabelPrinter.BLOCK_OPTION_LINE_OVERWRITING,
+                    element.getInteger("thickness", 2)
+                );
+            default:
+                throw new PrinterException("Unsupported label element type: " + type);
+        }
+    }
+
+    /**
+     * A string with {{name}} placeholders, pre-split into literal and variable parts.
+     */
+    static final class Field {
+        private final String constant;
+        private final String[] literals;
+        private final String[] names;
+
+        private Field(String constant, String[] literals, String[] names) {
+            this.constant = constant;
+            this.literals = literals;
+            this.names = names;
+        }
+
+        static Field parse(String raw, boolean allowVariables) throws PrinterException {
+            if (!allowVariables || !raw.contains("{{")) {
+                return new Field(raw, null, null);
+            }
+            List<String> literals = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            int position = 0;
+            int open;
+            while ((open = raw.indexOf("{{", position)) != -1) {
+                int close = raw.indexOf("}}", open + 2);
+                if (close == -1) {
+                    throw new PrinterException("Unterminated placeholder in \"" + raw + "\"");
+                }
+                String name = raw.substring(open + 2, close).trim();
+                if (name.isEmpty()) {
+                    throw new PrinterException("Empty placeholder in \"" + raw + "\"");
+                }
+                literals.add(raw.substring(position, open));
+                names.add(name);
+                position = close + 2;
+            }
+            literals.add(raw.substring(position));
+            return new Field(null, literals.toArray(new String[0]), names.toArray(new String[0]));
+        }
+
+        String resolve(JSONObject variables) throws PrinterException {
+            if (constant != null) {
+                return constant;
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < names.length; i++) {
+                builder.append(literals[i]);
+                Object value = variables != null ? variables.opt(names[i]) : null;
+                if (value == null || value == JSONObject.NULL) {
+                    throw new PrinterException("Missing template variable: " + names[i]);
+                }
+                builder.append(value);
+            }
+            builder.append(literals[names.length]);
+            return builder.toString();
+        }
+    }
+
+    private abstract static class Element {
+        private final String name;
+
+        Element(String name) {
+            this.name = name;
+        }
+
+        String describe() {
+            return name;
+        }
+
+        abstract int draw(PrinterDevice printer, JSONObject variables) throws PrinterException;
+    }
+
+    private static final class TextElement extends Element {
+        private final Field text;
+        private final int horizontalPosition;
+        private final int verticalPosition;
+        private final int fontSize;
+        private final int horizontalMultiplier;
+        private final int verticalMultiplier;
+        private final boolean bold;
+        private final int alignment;
+
+        TextElement(String name, Field text, int horizontalPosition, int verticalPosition, int fontSize,
+                    int horizontalMultiplier, int verticalMultiplier, boolean bold, int alignment) {
+            super(name);
+            this.text = text;
+            this.horizontalPosition = horizontalPosition;
+            this.verticalPosition = verticalPosition;
+            this.fontSize = fontSize;
+            this.horizontalMultiplier = horizontalMultiplier;
+            this.verticalMultiplier = verticalMultiplier;
+            this.bold = bold;
+            this.alignment = alignment;
+        }
+
+        @Override
+        int draw(PrinterDevice printer, JSONObject variables) throws PrinterException {
+            return printer.drawText(
+                text.resolve(variables),
+                horizontalPosition,
+                verticalPosition,
+                fontSize,
+                horizontalMultiplier,
+                verticalMultiplier,
+                0, // rightSpace
+                BixolonLabelPrinter.ROTATION_NONE,
+                false, // reverse
+                bold,
+                alignment
+            );
+        }
+    }
+
+    private static final class BarcodeElement extends Element {
+        private final Field data;
+        private final int horizontalPosition;
+        private final int verticalPosition;
+        private final int barcodeSelection;
+        private final int width;
+        private final int height;
+        private final int hri;
+
+        BarcodeElement(String name, Field data, int horizontalPosition, int verticalPosition, int barcodeSelection,
+                       int width, int height, int hri) {
+            super(name);
+            this.data = data;
+            this.horizontalPosition = horizontalPosition;
+            this.verticalPosition = verticalPosition;
+            this.barcodeSelection = barcodeSelection;
+            this.width = width;
+            this.height = height;
+            this.hri = hri;
+        }
+
+        @Override
+        int draw(PrinterDevice printer, JSONObject variables) throws PrinterException {
+            return printer.draw1dBarcode(
+                data.resolve(variables),
+                horizontalPosition,
+                verticalPosition,
+                barcodeSelection,
+                width, // narrowBarWidth
+                width * 2, // wideBarWidth
+                height,
+                BixolonLabelPrinter.ROTATION_NONE,
+                hri,
+                0 // quietZoneWidth
+            );
+        }
+    }
+
+    private static final class Barcode2DElement extends Element {
+        private final Field data;
+        private final int horizontalPosition;
+        private final int verticalPosition;
+        private final Barcode2D barcode;
+
+        Barcode2DElement(String name, Field data, int horizontalPosition, int verticalPosition, Barcode2D barcode) {
+            super(name);
+            this.data = data;
+            this.horizontalPosition = horizontalPosition;
+            this.verticalPosition = verticalPosition;
+            this.barcode = barcode;
+        }
+
+        @Override
+        int draw(PrinterDevice printer, JSONObject variables) throws PrinterException {
+            return barcode.draw(printer, data.resolve(variables), horizontalPosition, verticalPosition);
+        }
+    }
+
+    private static final class ImageElement extends Element {
+        private final Bitmap bitmap;
+        private final int horizontalPosition;
+        private final int verticalPosition;
+        private final int width;
+        private final int level;
+        private final boolean dithering;
+
+        ImageElement(String name, Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                     boolean dithering) {
+            super(name);
+            this.bitmap = bitmap;
+            this.horizontalPosition = horizontalPosition;
+            this.verticalPosition = verticalPosition;
+            this.width = width;
+            this.level = level;
+            this.dithering = dithering;
+        }
+
+        @Override
+        int draw(PrinterDevice printer, JSONObject variables) {
+            return printer.drawBitmap(bitmap, horizontalPosition, verticalPosition, width, level, dithering);
+        }
+    }
+
+    private static final class BlockElement extends Element {
+        private final int horizontalStartPosition;
+        private final int verticalStartPosition;
+        private final int horizontalEndPosition;
+        private final int verticalEndPosition;
+        private final int option;
+        private final int thickness;
+
+        BlockElement(String name, int horizontalStartPosition, int verticalStartPosition, int horizontalEndPosition,
+                     int verticalEndPosition, int option, int thickness) {
+            super(name);
+            this.horizontalStartPosition = horizontalStartPosition;
+            this.verticalStartPosition = verticalStartPosition;
+            this.horizontalEndPosition = horizontalEndPosition;
+            this.verticalEndPosition = verticalEndPosition;
+            this.option = option;
+            this.thickness = thickness;
+        }
+
+        @Override
+        int draw(PrinterDevice printer, JSONObject variables) {
+            return printer.drawBlock(
+                horizontalStartPosition,
+                verticalStartPosition,
+                horizontalEndPosition,
+                verticalEndPosition,
+                option,
+                thickness
+            );
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.getcapacitor.JSObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size latency histogram with log-linear buckets over microseconds: four buckets per
+ * power of two, from 1 microsecond up to about four minutes, so every recorded value lands
+ * within 25% of its bucket bound. Recording is a handful of atomic increments and never allocates or locks.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int OCTAVES = 27;
+    private static final int BUCKETS = OCTAVES * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(indexOf(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // Retry until the maximum is ours or someone recorded a larger one
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the upper bound of the bucket holding the given percentile, in microseconds.
+     */
+    public long percentile(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        totalMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * Summary in milliseconds. Counters are read one by one, so a snapshot taken while values
+     * are being recorded may be off by the values in flight.
+     */
+    public JSObject toJSObject() {
+        long total = count.get();
+        JSObject summary = new JSObject();
+        summary.put("count", total);
+        summary.put("mean", total > 0 ? toMillis(totalMicros.get() / total) : 0);
+        summary.put("p50", toMillis(percentile(50)));
+        summary.put("p95", toMillis(percentile(95)));
+        summary.put("p99", toMillis(percentile(99)));
+        summary.put("max", toMillis(maxMicros.get()));
+        return summary;
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (octave - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        int index = (octave - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+        return Math.min(BUCKETS - 1, index);
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int octave = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (octave - SUB_BUCKET_BITS)) - 1;
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,199 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.getcapacitor.JSObject;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency and throughput instrumentation shared by every printer. Each job phase has its own
+ * histogram, failures are counted by SDK return code, and a snapshot can be pushed
+ * periodically as a metrics event.
+ */
+public class Metrics {
+    public static final String EVENT_METRICS = "metrics";
+
+    public enum Phase {
+        /** Time a job waited in its printer's queue */
+        QUEUE_WAIT,
+        /** Queue wait of urgent jobs */
+        QUEUE_WAIT_URGENT,
+        /** Queue wait of normal priority jobs */
+        QUEUE_WAIT_NORMAL,
+        /** Queue wait of bulk jobs */
+        QUEUE_WAIT_BULK,
+        /** Submission to completion of a job */
+        JOB,
+        /** Turning job options into drawable data, such as compiling a label or decoding images */
+        DECODE,
+        /** Writing a document to a temporary file */
+        FILE_WRITE,
+        /** Converting an image to black and white */
+        DITHER,
+        /** SDK draw calls of one transaction */
+        DRAW,
+        /** endTransactionPrint */
+        END_TRANSACTION,
+        /** print */
+        PRINT,
+        /** Writing raw command bytes to the connection */
+        TRANSMIT,
+        CONNECT,
+        DISCOVERY,
+        /** Cancel or timeout of a running operation until its thread was free again */
+        ABORT;
+
+        final String key = toCamelCase(name());
+    }
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final AtomicLong jobsCompleted = new AtomicLong();
+    private final AtomicLong jobsFailed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong cancellations = new AtomicLong();
+    private final Map<Integer, AtomicLong> errorsByCode = new ConcurrentHashMap<>();
+    private final Map<String, FlowController> flows = new ConcurrentHashMap<>();
+    private volatile long startedAt = System.currentTimeMillis();
+    private ScheduledExecutorService reporter;
+
+    public Metrics() {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a phase that started at the given {@link System#nanoTime()} reading.
+     */
+    public void record(Phase phase, long startNanos) {
+        phases[phase.ordinal()].recordNanos(System.nanoTime() - startNanos);
+    }
+
+    public void recordJob(boolean success, int code) {
+        if (success) {
+            jobsCompleted.incrementAndGet();
+            return;
+        }
+        jobsFailed.incrementAndGet();
+        AtomicLong errors = errorsByCode.get(code);
+        if (errors == null) {
+            errors = errorsByCode.computeIfAbsent(code, c -> new AtomicLong());
+        }
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Counts an operation the watchdog aborted because it ran past its deadline or timeout.
+     */
+    public void recordTimeout() {
+        timeouts.incrementAndGet();
+    }
+
+    public void recordCancellation() {
+        cancellations.incrementAndGet();
+    }
+
+    /**
+     * Includes the printer's achieved and target rates in every snapshot.
+     */
+    public void registerFlow(String printerId, FlowController flow) {
+        flows.put(printerId, flow);
+    }
+
+    public void unregisterFlow(String printerId, FlowController flow) {
+        flows.remove(printerId, flow);
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : phases) {
+            histogram.reset();
+        }
+        jobsCompleted.set(0);
+        jobsFailed.set(0);
+        timeouts.set(0);
+        cancellations.set(0);
+        errorsByCode.clear();
+        for (FlowController flow : flows.values()) {
+            flow.reset();
+        }
+        startedAt = System.currentTimeMillis();
+    }
+
+    public JSObject toJSObject() {
+        long elapsed = Math.max(1, System.currentTimeMillis() - startedAt);
+        long completed = jobsCompleted.get();
+
+        JSObject phaseSummaries = new JSObject();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = phases[phase.ordinal()];
+            if (histogram.getCount() > 0) {
+                phaseSummaries.put(phase.key, histogram.toJSObject());
+            }
+        }
+        JSObject errors = new JSObject();
+        for (Map.Entry<Integer, AtomicLong> entry : errorsByCode.entrySet()) {
+            errors.put(String.valueOf(entry.getKey()), entry.getValue().get());
+        }
+
+        JSObject flowSummaries = new JSObject();
+        for (Map.Entry<String, FlowController> entry : flows.entrySet()) {
+            flowSummaries.put(entry.getKey(), entry.getValue().toJSObject());
+        }
+
+        JSObject snapshot = new JSObject();
+        snapshot.put("since", startedAt);
+        snapshot.put("elapsedMs", elapsed);
+        snapshot.put("jobsCompleted", completed);
+        snapshot.put("jobsFailed", jobsFailed.get());
+        snapshot.put("jobsPerSecond", completed * 1000.0 / elapsed);
+        snapshot.put("timeouts", timeouts.get());
+        snapshot.put("cancellations", cancellations.get());
+        snapshot.put("phases", phaseSummaries);
+        snapshot.put("errors", errors);
+        snapshot.put("flow", flowSummaries);
+        return snapshot;
+    }
+
+    /**
+     * Emits a snapshot through the listener at a fixed interval, replacing any earlier schedule.
+     * An interval of zero or less stops reporting.
+     */
+    public synchronized void startReporting(EventListener listener, long interval) {
+        stopReporting();
+        if (interval <= 0) {
+            return;
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BixolonMetrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleWithFixedDelay(() -> listener.onEvent(EVENT_METRICS, toJSObject()), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stopReporting() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private static String toCamelCase(String name) {
+        StringBuilder builder = new StringBuilder(name.length());
+        boolean upper = false;
+        for (char c : name.toLowerCase(Locale.US).toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                builder.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return builder.toString();
+    }
+}
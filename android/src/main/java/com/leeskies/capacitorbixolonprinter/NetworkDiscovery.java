@@ -0,0 +1,357 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Finds network printers by probing the raw print port of every host on the local subnet with
+ * non-blocking connects, alongside the SDK's broadcast discovery. Printers are reported as
+ * soon as they answer, concurrent requests share the scan in progress, and results are kept
+ * in a time-to-live cache so repeat lookups don't rescan.
+ */
+public class NetworkDiscovery {
+    public static final String EVENT_DEVICE_FOUND = "deviceFound";
+    public static final int DEFAULT_PORT = 9100;
+    public static final long DEFAULT_CACHE_TTL_MS = 60 * 1000;
+    public static final String SOURCE_SCAN = "scan";
+    public static final String SOURCE_BROADCAST = "broadcast";
+
+    // Largest subnet scanned, wider interfaces are narrowed to the /22 around the local address
+    private static final int MIN_PREFIX_LENGTH = 22;
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final long CONNECT_TIMEOUT_MS = 1000;
+    // Extra time given to the SDK broadcast after its own timeout, as before
+    private static final long BROADCAST_GRACE_MS = 1000;
+
+    public interface Callback {
+        void onComplete(List<Device> devices);
+    }
+
+    public static final class Device {
+        public final String address;
+        public final int port;
+        public final String source;
+        public final long lastSeen;
+
+        Device(String address, int port, String source, long lastSeen) {
+            this.address = address;
+            this.port = port;
+            this.source = source;
+            this.lastSeen = lastSeen;
+        }
+
+        public JSObject toJSObject() {
+            JSObject device = new JSObject();
+            device.put("address", address);
+            device.put("port", port);
+            device.put("source", source);
+            device.put("lastSeen", lastSeen);
+            return device;
+        }
+    }
+
+    private final EventListener listener;
+    private final long cacheTtlMs;
+    private final Metrics metrics;
+    private final Map<String, Device> cache = new LinkedHashMap<>();
+    private Scan activeScan;
+
+    public NetworkDiscovery(EventListener listener, long cacheTtlMs, Metrics metrics) {
+        this.listener = listener;
+        this.cacheTtlMs = cacheTtlMs;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the devices seen within the cache's time to live.
+     */
+    public synchronized List<Device> getCached() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Device> it = cache.values().iterator(); it.hasNext(); ) {
+            if (now - it.next().lastSeen > cacheTtlMs) {
+                it.remove();
+            }
+        }
+        return new ArrayList<>(cache.values());
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Starts a scan, or joins the one already in progress in which case its settings win.
+     *
+     * @param subnet    CIDR range to probe, or null for the subnets of the local interfaces
+     * @param broadcast whether the caller also runs the SDK broadcast discovery and will report
+     *                  its result through {@link #reportBroadcast(Set)}
+     * @return true when a new scan was started
+     */
+    public synchronized boolean discover(String subnet, int port, int timeout, boolean broadcast, Callback callback)
+            throws PrinterException {
+        if (activeScan != null) {
+            activeScan.callbacks.add(callback);
+            return false;
+        }
+        List<InetAddress> hosts = subnet != null ? expand(subnet) : localHosts();
+        if (hosts.isEmpty()) {
+            if (!broadcast) {
+                throw new PrinterException("No IPv4 network available for discovery");
+            }
+            // Nothing to scan, but the SDK broadcast may still find printers
+            Log.w(TAG, "No IPv4 network available, only running broadcast discovery");
+        }
+        Scan scan = new Scan(port, broadcast);
+        scan.callbacks.add(callback);
+        activeScan = scan;
+
+        long broadcastDeadline = System.currentTimeMillis() + timeout + BROADCAST_GRACE_MS;
+        Thread thread = new Thread(() -> {
+            try {
+                probe(scan, hosts, port, timeout);
+            } catch (Exception e) {
+                Log.e(TAG, "Network scan failed: " + e.getMessage());
+            }
+            finishSource(scan);
+            if (broadcast) {
+                // The SDK's result normally arrives right after its timeout, don't wait for it forever.
+                // Finishing is a no-op when the result already came in.
+                try {
+                    long remaining = broadcastDeadline - System.currentTimeMillis();
+                    if (remaining > 0) {
+                        Thread.sleep(remaining);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                finishBroadcast(scan);
+            }
+        }, "BixolonNetworkDiscovery");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Merges the devices found by the SDK broadcast into the scan in progress.
+     */
+    public void reportBroadcast(Set<String> addresses) {
+        Scan scan;
+        synchronized (this) {
+            scan = activeScan;
+        }
+        if (addresses != null) {
+            for (String address : addresses) {
+                found(scan, address, scan != null ? scan.port : DEFAULT_PORT, SOURCE_BROADCAST);
+            }
+        }
+        if (scan != null) {
+            finishBroadcast(scan);
+        }
+    }
+
+    private void probe(Scan scan, List<InetAddress> hosts, int port, int timeout) throws IOException {
+        long deadline = System.currentTimeMillis() + timeout;
+        long connectTimeout = Math.min(CONNECT_TIMEOUT_MS, timeout);
+        Map<SelectionKey, Long> started = new LinkedHashMap<>();
+        int next = 0;
+        try (Selector selector = Selector.open()) {
+            while ((next < hosts.size() || !started.isEmpty()) && System.currentTimeMillis() < deadline) {
+                // Keep a bounded number of connects in flight
+                while (next < hosts.size() && started.size() < MAX_IN_FLIGHT) {
+                    InetAddress host = hosts.get(next++);
+                    SocketChannel channel = SocketChannel.open();
+                    try {
+                        channel.configureBlocking(false);
+                        if (channel.connect(new InetSocketAddress(host, port))) {
+                            found(scan, host.getHostAddress(), port, SOURCE_SCAN);
+                            channel.close();
+                        } else {
+                            started.put(channel.register(selector, SelectionKey.OP_CONNECT, host), System.currentTimeMillis());
+                        }
+                    } catch (IOException e) {
+                        channel.close();
+                    }
+                }
+
+                selector.select(Math.max(1, Math.min(100, deadline - System.currentTimeMillis())));
+                for (Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext(); ) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    started.remove(key);
+                    InetAddress host = (InetAddress) key.attachment();
+                    try {
+                        if (((SocketChannel) key.channel()).finishConnect()) {
+                            found(scan, host.getHostAddress(), port, SOURCE_SCAN);
+                        }
+                    } catch (IOException e) {
+                        // Refused or unreachable, not a printer
+                    }
+                    key.cancel();
+                    key.channel().close();
+                }
+
+                long now = System.currentTimeMillis();
+                for (Iterator<Map.Entry<SelectionKey, Long>> it = started.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<SelectionKey, Long> entry = it.next();
+                    if (now - entry.getValue() < connectTimeout) {
+                        break; // Entries are in start order
+                    }
+                    entry.getKey().cancel();
+                    entry.getKey().channel().close();
+                    it.remove();
+                }
+            }
+            for (SelectionKey key : started.keySet()) {
+                key.channel().close();
+            }
+        }
+    }
+
+    private void found(Scan scan, String address, int port, String source) {
+        Device device = new Device(address, port, source, System.currentTimeMillis());
+        boolean added;
+        synchronized (this) {
+            cache.put(address, device);
+            added = scan != null && scan.devices.put(address, device) == null;
+        }
+        if (added) {
+            Log.i(TAG, "Found network printer " + address + " (" + source + ")");
+            listener.onEvent(EVENT_DEVICE_FOUND, device.toJSObject());
+        }
+    }
+
+    private void finishBroadcast(Scan scan) {
+        synchronized (this) {
+            if (scan.broadcastDone) {
+                return;
+            }
+            scan.broadcastDone = true;
+        }
+        finishSource(scan);
+    }
+
+    private void finishSource(Scan scan) {
+        List<Callback> callbacks;
+        List<Device> devices;
+        synchronized (this) {
+            if (--scan.pendingSources > 0) {
+                return;
+            }
+            if (activeScan == scan) {
+                activeScan = null;
+            }
+            callbacks = new ArrayList<>(scan.callbacks);
+            devices = new ArrayList<>(scan.devices.values());
+        }
+        metrics.record(Metrics.Phase.DISCOVERY, scan.startedAt);
+        for (Callback callback : callbacks) {
+            callback.onComplete(Collections.unmodifiableList(devices));
+        }
+    }
+
+    /**
+     * Lists the hosts of every up, non-loopback IPv4 interface, excluding the local addresses.
+     * Empty when there is no IPv4 network.
+     */
+    private static List<InetAddress> localHosts() throws PrinterException {
+        Set<InetAddress> hosts = new LinkedHashSet<>();
+        Set<InetAddress> local = new LinkedHashSet<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) {
+                    continue;
+                }
+                for (InterfaceAddress interfaceAddress : networkInterface.getInterfaceAddresses()) {
+                    InetAddress address = interfaceAddress.getAddress();
+                    if (address instanceof Inet4Address) {
+                        local.add(address);
+                        int prefix = Math.max(MIN_PREFIX_LENGTH, interfaceAddress.getNetworkPrefixLength());
+                        hosts.addAll(range(toInt(address), prefix));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new PrinterException("Failed to list network interfaces: " + e.getMessage(), e);
+        }
+        hosts.removeAll(local);
+        return new ArrayList<>(hosts);
+    }
+
+    private static List<InetAddress> expand(String subnet) throws PrinterException {
+        int slash = subnet.indexOf('/');
+        try {
+            InetAddress address = InetAddress.getByName(slash == -1 ? subnet : subnet.substring(0, slash));
+            int prefix = slash == -1 ? 32 : Integer.parseInt(subnet.substring(slash + 1));
+            if (!(address instanceof Inet4Address) || prefix < MIN_PREFIX_LENGTH || prefix > 32) {
+                throw new PrinterException("Subnet must be an IPv4 range no wider than /" + MIN_PREFIX_LENGTH + ": " + subnet);
+            }
+            return range(toInt(address), prefix);
+        } catch (UnknownHostException | NumberFormatException e) {
+            throw new PrinterException("Invalid subnet: " + subnet, e);
+        }
+    }
+
+    private static List<InetAddress> range(int address, int prefix) throws PrinterException {
+        int mask = prefix == 0 ? 0 : -1 << (32 - prefix);
+        int network = address & mask;
+        int size = 1 << (32 - prefix);
+        // Skip the network and broadcast addresses unless the range has no room for them
+        int first = size > 2 ? 1 : 0;
+        int last = size > 2 ? size - 2 : size - 1;
+        List<InetAddress> hosts = new ArrayList<>(last - first + 1);
+        try {
+            for (int i = first; i <= last; i++) {
+                int host = network + i;
+                hosts.add(InetAddress.getByAddress(new byte[] {
+                    (byte) (host >>> 24), (byte) (host >>> 16), (byte) (host >>> 8), (byte) host
+                }));
+            }
+        } catch (UnknownHostException e) {
+            throw new PrinterException("Invalid address range: " + e.getMessage(), e);
+        }
+        return hosts;
+    }
+
+    private static int toInt(InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xFF) << 24 | (bytes[1] & 0xFF) << 16 | (bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF);
+    }
+
+    private static final class Scan {
+        final int port;
+        final long startedAt = System.nanoTime();
+        final List<Callback> callbacks = new ArrayList<>();
+        final Map<String, Device> devices = new LinkedHashMap<>();
+        int pendingSources;
+        boolean broadcastDone;
+
+        Scan(int port, boolean broadcast) {
+            this.port = port;
+            this.pendingSources = broadcast ? 2 : 1;
+            this.broadcastDone = !broadcast;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.pdf.PdfRenderer;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Renders a range of PDF pages on a background thread while earlier pages are transmitted.
+ * Each page is dithered to a 1-bit raster right after rendering, and at most
+ * {@link #RENDER_AHEAD} rasters are held at once, which keeps memory bounded no matter how
+ * long the document is.
+ *
+ * PdfRenderer only allows one open page at a time, so pages are rendered by a single thread
+ * that runs ahead of the transmitting thread rather than by a pool.
+ */
+public class PdfPipeline implements Closeable {
+    public static final int RENDER_AHEAD = 2;
+    private static final int DEFAULT_DPI = 203;
+
+    public static class RenderedPage {
+        public final int page;
+        public final RenderCache.Raster raster;
+
+        RenderedPage(int page, RenderCache.Raster raster) {
+            this.page = page;
+            this.raster = raster;
+        }
+    }
+
+    private static final RenderedPage END = new RenderedPage(0, null);
+
+    private final ParcelFileDescriptor descriptor;
+    private final PdfRenderer renderer;
+    private final int width;
+    private final int startPage;
+    private final int endPage;
+    private final ImageDither dither;
+    private final ImageDither.Method method;
+    private final RenderCache cache;
+    private final String documentKey;
+    private final BlockingQueue<RenderedPage> rendered = new ArrayBlockingQueue<>(RENDER_AHEAD);
+    private Thread renderThread;
+    private volatile Exception renderError;
+    private volatile boolean closed;
+
+    /**
+     * @param width target width in dots, or 0 to render at the page's size at 203 dpi
+     * @param startPage first page to render, 1-based
+     * @param endPage last page to render, 1-based, or 0 for the last page of the document
+     * @param method how rendered pages are converted to black and white
+     * @param cache cache consulted before rendering and filled with rendered pages, or null
+     * @param documentKey content hash of the document, required when a cache is given
+     */
+    public PdfPipeline(File file, int width, int startPage, int endPage, ImageDither dither, ImageDither.Method method,
+                       RenderCache cache, String documentKey) throws IOException {
+        this.descriptor = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY);
+        try {
+            this.renderer = new PdfRenderer(descriptor);
+        } catch (IOException e) {
+            descriptor.close();
+            throw e;
+        }
+        int pageCount = renderer.getPageCount();
+        this.dither = dither;
+        this.method = method;
+        this.cache = cache;
+        this.documentKey = documentKey;
+        if (cache != null) {
+            cache.putPageCount(documentKey, pageCount);
+        }
+        this.width = width;
+        this.startPage = Math.max(1, startPage);
+        this.endPage = endPage > 0 ? Math.min(endPage, pageCount) : pageCount;
+    }
+
+    public int getPageCount() {
+        return Math.max(0, endPage - startPage + 1);
+    }
+
+    public void start() {
+        renderThread = new Thread(this::renderPages, "BixolonPdfRenderer");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Blocks until the next page is rendered. Returns null once every page has been returned.
+     */
+    public RenderedPage next() throws IOException, InterruptedException {
+        RenderedPage page = rendered.take();
+        if (page == END) {
+            if (renderError != null) {
+                throw new IOException("Failed to render PDF page: " + renderError.getMessage(), renderError);
+            }
+            return null;
+        }
+        return page;
+    }
+
+    private void renderPages() {
+        try {
+            for (int page = startPage; page <= endPage && !closed; page++) {
+                String key = cache != null ? RenderCache.pageKey(documentKey, page, width, method) : null;
+                RenderCache.Raster raster = key != null ? cache.get(key) : null;
+                if (raster == null) {
+                    raster = render(page);
+                    if (key != null) {
+                        cache.put(key, raster);
+                    }
+                }
+                rendered.put(new RenderedPage(page, raster));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "PDF rendering failed: " + e.getMessage());
+            renderError = e;
+        } finally {
+            if (!closed) {
+                try {
+                    rendered.put(END);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private RenderCache.Raster render(int page) throws InterruptedException {
+        int[] pixels;
+        int targetWidth;
+        int targetHeight;
+        try (PdfRenderer.Page pdfPage = renderer.openPage(page - 1)) {
+            targetWidth = width > 0 ? width : pdfPage.getWidth() * DEFAULT_DPI / 72;
+            targetHeight = Math.max(1, pdfPage.getHeight() * targetWidth / pdfPage.getWidth());
+            Bitmap bitmap = Bitmap.createBitmap(targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+            try {
+                // PdfRenderer leaves the background transparent, which prints as black
+                bitmap.eraseColor(Color.WHITE);
+                pdfPage.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
+                pixels = new int[targetWidth * targetHeight];
+                bitmap.getPixels(pixels, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+            } finally {
+                bitmap.recycle();
+            }
+        }
+        dither.dither(pixels, targetWidth, targetHeight, method, ImageDither.DEFAULT_THRESHOLD);
+        return RenderCache.Raster.pack(pixels, targetWidth, targetHeight);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (renderThread != null) {
+            renderThread.interrupt();
+            try {
+                renderThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        rendered.clear();
+        renderer.close();
+        try {
+            descriptor.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close PDF file: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,782 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Bounded in-process job queue drained by a two-stage pipeline per printer. A preparing
+ * thread decodes and validates the next job while the transmitting thread sends the current
+ * one. The stages meet in a direct hand-off, so at most one prepared job waits for the
+ * printer and memory for decoded images and temporary files stays double-buffered.
+ * Jobs wait in three priority lanes. Within a lane, jobs with a deadline go first, earliest
+ * deadline first, and the rest in submission order. Urgent jobs, and jobs whose deadline is
+ * close, are also picked up by the transmitting thread itself between two jobs and between
+ * two batches of a serial run, so they don't wait behind a long bulk run. A lane that was
+ * passed over {@link #STARVATION_LIMIT} times in a row goes next, which keeps bulk work
+ * moving under a steady stream of urgent jobs.
+ * Submitting returns a job ID immediately; progress and completion are reported through the
+ * {@link EventListener}.
+ * With a {@link JobJournal}, queued jobs are recorded until they finish. Jobs that failed
+ * because the connection was lost, or that were still queued when the app died, are queued
+ * again by {@link #replayJournal} once the printer is connected.
+ * A job submitted with an idempotency key that an earlier job still holds in the
+ * {@link IdempotencyCache} is not printed again. Its call gets the outcome of the earlier job,
+ * at once if that job succeeded and otherwise when it completes.
+ * Every job runs as a {@link Watchdog.Operation}. A job can be cancelled until it completes,
+ * and one that is aborted while printing, by a cancel, its deadline or an SDK call that
+ * doesn't return, is answered at once instead of when the printer lets go of it.
+ */
+public class PrintQueue {
+    public static final int DEFAULT_CAPACITY = 32;
+
+    public static final String EVENT_JOB_PROGRESS = "jobProgress";
+    public static final String EVENT_JOB_COMPLETED = "jobCompleted";
+
+    // Jobs this close to their deadline are treated as urgent
+    static final long DEADLINE_PROMOTION_MS = 5000;
+    static final int STARVATION_LIMIT = 4;
+
+    public enum Priority {
+        URGENT("urgent", Metrics.Phase.QUEUE_WAIT_URGENT),
+        NORMAL("normal", Metrics.Phase.QUEUE_WAIT_NORMAL),
+        BULK("bulk", Metrics.Phase.QUEUE_WAIT_BULK);
+
+        final String key;
+        final Metrics.Phase waitPhase;
+
+        Priority(String key, Metrics.Phase waitPhase) {
+            this.key = key;
+            this.waitPhase = waitPhase;
+        }
+
+        static Priority parse(String value) throws PrinterException {
+            for (Priority priority : values()) {
+                if (priority.key.equalsIgnoreCase(value)) {
+                    return priority;
+                }
+            }
+            throw new PrinterException("Unknown priority: " + value);
+        }
+    }
+
+    private static final AtomicLong nextJobId = new AtomicLong(1);
+
+    private final String printerId;
+    private final Printer printer;
+    private final EventListener listener;
+    private final Metrics metrics;
+    private final JobJournal journal;
+    private final IdempotencyCache idempotency;
+    private final Watchdog watchdog;
+    private final int capacity;
+    // One lane per priority, by ordinal; the list is the lock for the lanes and the counters below
+    private final List<PriorityQueue<PrintJob>> lanes;
+    // Times each lane was passed over while it had jobs waiting
+    private final int[] bypassed = new int[Priority.values().length];
+    private int queued;
+    // Jobs with an idempotency key that have not completed, by number, guarded by the lanes
+    private final Map<Long, PrintJob> keyed = new HashMap<>();
+    // Jobs that were queued and have not completed, by ID in submission order, guarded by the lanes
+    private final Map<String, PrintJob> active = new LinkedHashMap<>();
+    private final BlockingQueue<PrintJob> prepared = new SynchronousQueue<>();
+    private final Thread preparer;
+    private final Thread transmitter;
+    private volatile PrintJob preparingJob;
+    private volatile PrintJob currentJob;
+    // An urgent job the transmitting thread runs in between, while currentJob waits
+    private volatile PrintJob interleavedJob;
+    private volatile boolean running = true;
+
+    public PrintQueue(String printerId, Printer printer, int capacity, EventListener listener, Metrics metrics,
+                      JobJournal journal, IdempotencyCache idempotency, Watchdog watchdog) {
+        this.printerId = printerId;
+        this.printer = printer;
+        this.listener = listener;
+        this.metrics = metrics;
+        this.journal = journal;
+        this.idempotency = idempotency;
+        this.watchdog = watchdog;
+        if (journal != null) {
+            // Keep new job IDs clear of the ones of journaled jobs
+            long last = journal.getLastSequence();
+            long next;
+            while ((next = nextJobId.get()) <= last && !nextJobId.compareAndSet(next, last + 1)) {
+                // Lost a race with another queue, check again
+            }
+        }
+        this.capacity = capacity > 0 ? capacity : DEFAULT_CAPACITY;
+        this.lanes = new ArrayList<>(Priority.values().length);
+        for (int i = 0; i < Priority.values().length; i++) {
+            lanes.add(new PriorityQueue<>(11, PrintJob::compareTo));
+        }
+        this.preparer = new Thread(this::prepare, "BixolonPrepare-" + printerId);
+        this.preparer.setDaemon(true);
+        this.transmitter = new Thread(this::transmit, "BixolonPrintQueue-" + printerId);
+        this.transmitter.setDaemon(true);
+        this.preparer.start();
+        this.transmitter.start();
+    }
+
+    /**
+     * Enqueues a job without blocking. Throws when the queue is full so callers
+     * get backpressure instead of an unbounded backlog. Returns the ID of the earlier job
+     * instead when the job repeats one by its idempotency key.
+     */
+    public String submit(String type, JSObject options) throws PrinterException {
+        return enqueue(createJob(nextJobId.getAndIncrement(), type, options, null));
+    }
+
+    /**
+     * Enqueues a job on behalf of a plugin call, which is resolved or rejected once the
+     * job has been printed. Keeps the plugin thread free while this printer is busy.
+     */
+    public void execute(String type, PluginCall call) {
+        try {
+            enqueue(createJob(nextJobId.getAndIncrement(), type, call.getData(), call));
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
+    }
+
+    private String enqueue(PrintJob job) throws PrinterException {
+        if (!running) {
+            throw new PrinterException("Print queue is shut down");
+        }
+        String original = deduplicate(job);
+        if (original != null) {
+            return original;
+        }
+        // Recorded before the job is visible to the pipeline, so its finish can't come first
+        job.journaled = journal != null && journal.submitted(job.number, printerId, job.type, job.options);
+        if (!offer(job)) {
+            if (job.journaled) {
+                journal.finished(job.number);
+            }
+            settle(job, false);
+            throw new PrinterException("Print queue is full (" + capacity + " jobs pending)");
+        }
+        notifyProgress(job, "queued");
+        return job.id;
+    }
+
+    /**
+     * Claims the job's idempotency key. When an earlier job holds it, answers the job's call
+     * with the outcome of that job, or leaves the call to be answered when that job completes,
+     * and returns the ID of that job. Returns null when the job is new and should print.
+     */
+    private String deduplicate(PrintJob job) throws PrinterException {
+        if (job.idempotencyKey == null || idempotency == null) {
+            return null;
+        }
+        long held;
+        synchronized (lanes) {
+            held = idempotency.claim(job.keyHash, job.number, System.currentTimeMillis());
+            if (held == IdempotencyCache.CLAIMED) {
+                keyed.put(job.number, job);
+                return null;
+            }
+            if ((held & 3) == IdempotencyCache.PENDING) {
+                PrintJob original = keyed.get(held >>> 2);
+                if (original == null) {
+                    throw new PrinterException("Job with idempotency key " + job.idempotencyKey
+                        + " is still pending on another printer");
+                }
+                if (job.call != null) {
+                    original.duplicates.add(job.call);
+                }
+            }
+        }
+        String id = "job-" + (held >>> 2);
+        Log.i(TAG, "Not printing " + job.type + " job again, idempotency key " + job.idempotencyKey
+            + " belongs to " + id);
+        if ((held & 3) == IdempotencyCache.SUCCEEDED && job.call != null) {
+            respond(job.call, id, true, null, true);
+        }
+        return id;
+    }
+
+    /**
+     * Queues the journaled jobs of this printer that have not finished and are not queued.
+     * Does nothing while the printer is disconnected, since the jobs would only fail again.
+     */
+    public void replayJournal() {
+        if (journal == null || !running || !printer.isConnected()) {
+            return;
+        }
+        for (JobJournal.Entry entry : journal.takeUnfinished(printerId)) {
+            JSObject options;
+            try {
+                options = Printer.resumeOptions(entry.type, entry.getOptions(), entry.getCommitted());
+            } catch (PrinterException e) {
+                Log.e(TAG, e.getMessage());
+                journal.finished(entry.sequence);
+                continue;
+            }
+            if (options == null) {
+                // Everything printed, only the finish record was missing
+                journal.finished(entry.sequence);
+                continue;
+            }
+            PrintJob job;
+            try {
+                job = createJob(entry.sequence, entry.type, options, null);
+                // The job may have been submitted again while it was parked
+                if (deduplicate(job) != null) {
+                    journal.finished(entry.sequence);
+                    continue;
+                }
+            } catch (PrinterException e) {
+                Log.e(TAG, "Dropping journaled job " + entry.sequence + ": " + e.getMessage());
+                journal.finished(entry.sequence);
+                continue;
+            }
+            job.journaled = true;
+            if (!running || !offer(job)) {
+                journal.parked(entry.sequence);
+                settle(job, false);
+                continue;
+            }
+            Log.i(TAG, "Replaying journaled " + entry.type + " job " + job.id + " on " + printerId);
+            notifyProgress(job, "replayed");
+        }
+    }
+
+    private PrintJob createJob(long number, String type, JSObject options, PluginCall call) throws PrinterException {
+        PrintJob job = PrintJob.create(number, type, options, call);
+        job.operation = watchdog.newOperation(type + " job " + job.id, job.deadline, job.timeout,
+            operation -> aborted(job));
+        return job;
+    }
+
+    /**
+     * Cancels a job that has not completed. A waiting job is dropped; a job being printed is
+     * aborted by its {@link Watchdog.Operation}, which clears the printer's buffer. Labels
+     * already sent to the printer may still come out.
+     *
+     * @return false when no such job is pending
+     */
+    public boolean cancel(String jobId) {
+        PrintJob job;
+        synchronized (lanes) {
+            job = active.get(jobId);
+        }
+        return job != null && job.operation.cancel();
+    }
+
+    /**
+     * Cancels every job that has not completed, the most recently submitted first, so waiting
+     * jobs are gone before the one being printed lets go of the printer.
+     *
+     * @return the number of jobs cancelled
+     */
+    public int cancelAll() {
+        List<PrintJob> jobs;
+        synchronized (lanes) {
+            jobs = new ArrayList<>(active.values());
+        }
+        int cancelled = 0;
+        for (int i = jobs.size() - 1; i >= 0; i--) {
+            if (jobs.get(i).operation.cancel()) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Answers a job that was cancelled or ran out of time, without waiting for the printer to
+     * let go of it. A job that was still waiting leaves its lane.
+     */
+    private void aborted(PrintJob job) {
+        synchronized (lanes) {
+            if (lanes.get(job.priority.ordinal()).remove(job)) {
+                queued--;
+            }
+        }
+        PrinterException failure = job.operation.failure();
+        complete(job, false, failure.getCode(), failure.getMessage());
+    }
+
+    public int getPendingCount() {
+        int waiting;
+        synchronized (lanes) {
+            waiting = queued;
+        }
+        return waiting + (preparingJob != null ? 1 : 0) + (currentJob != null ? 1 : 0)
+            + (interleavedJob != null ? 1 : 0);
+    }
+
+    /**
+     * Number of jobs waiting in the lane of the given priority, not counting the ones being
+     * prepared or printed.
+     */
+    public int getQueuedCount(Priority priority) {
+        synchronized (lanes) {
+            return lanes.get(priority.ordinal()).size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void shutdown() {
+        running = false;
+        preparer.interrupt();
+        transmitter.interrupt();
+        while (true) {
+            PrintJob job;
+            synchronized (lanes) {
+                job = poll(false);
+            }
+            if (job == null) {
+                break;
+            }
+            if (claim(job)) {
+                // A journaled job stays unfinished and is replayed by the next queue
+                park(job);
+                notifyCompleted(job, false, "Print queue was shut down");
+            }
+        }
+    }
+
+    /**
+     * First stage: takes queued jobs and prepares them. A job that fails to prepare is still
+     * handed on, so its failure is reported in order.
+     */
+    private void prepare() {
+        while (running) {
+            PrintJob job;
+            try {
+                job = take();
+            } catch (InterruptedException e) {
+                break;
+            }
+            prepare(job);
+            try {
+                prepared.put(job);
+            } catch (InterruptedException e) {
+                job.release();
+                if (claim(job)) {
+                    park(job);
+                    notifyCompleted(job, false, "Print queue was shut down");
+                }
+                break;
+            } finally {
+                synchronized (lanes) {
+                    if (preparingJob == job) {
+                        preparingJob = null;
+                    }
+                }
+            }
+        }
+    }
+
+    private void prepare(PrintJob job) {
+        metrics.record(Metrics.Phase.QUEUE_WAIT, job.submittedNanos);
+        metrics.record(job.priority.waitPhase, job.submittedNanos);
+        try {
+            checkDeadline(job);
+            job.prepared = printer.prepareJob(job.type, job.options, committed -> {
+                if (job.journaled) {
+                    journal.progress(job.number, committed);
+                }
+                // Called between two transactions of the job, where the printer is free
+                if (job.priority != Priority.URGENT) {
+                    runUrgent();
+                }
+            });
+        } catch (PrinterException e) {
+            job.error = e;
+        } catch (RuntimeException e) {
+            job.error = new PrinterException("Job failed: " + e.getMessage(), e);
+        }
+    }
+
+    private static void checkDeadline(PrintJob job) throws PrinterException {
+        if (job.deadline > 0 && System.currentTimeMillis() > job.deadline) {
+            throw new PrinterException("Deadline of job " + job.id + " passed before it could print",
+                PrinterException.DEADLINE_EXCEEDED);
+        }
+    }
+
+    /**
+     * Second stage: sends prepared jobs to the printer one at a time.
+     */
+    private void transmit() {
+        while (running) {
+            runUrgent();
+            PrintJob job;
+            try {
+                job = takePrepared();
+            } catch (InterruptedException e) {
+                break;
+            }
+            currentJob = job;
+            try {
+                run(job);
+            } finally {
+                currentJob = null;
+            }
+        }
+    }
+
+    /**
+     * Prepares and sends the urgent jobs that are waiting, on the transmitting thread. An
+     * urgent job the preparing thread already holds is taken from the hand-off instead, which
+     * keeps urgent jobs in order.
+     */
+    private void runUrgent() {
+        if (interleavedJob != null) {
+            return;
+        }
+        while (running) {
+            PrintJob job;
+            boolean handedOff;
+            synchronized (lanes) {
+                PrintJob preparing = preparingJob;
+                handedOff = preparing != null && isUrgent(preparing, System.currentTimeMillis());
+                job = handedOff ? null : poll(true);
+            }
+            if (handedOff) {
+                // This thread is the only taker, so the next job handed off is that one
+                try {
+                    job = takePrepared();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            } else if (job == null) {
+                return;
+            }
+            interleavedJob = job;
+            try {
+                if (!handedOff) {
+                    prepare(job);
+                }
+                run(job);
+            } finally {
+                interleavedJob = null;
+            }
+        }
+    }
+
+    /**
+     * Sends a prepared job and reports how it went.
+     */
+    private void run(PrintJob job) {
+        try {
+            if (job.error != null) {
+                throw job.error;
+            }
+            checkDeadline(job);
+            job.operation.check();
+            notifyProgress(job, "printing");
+            printer.transmitJob(job.type, job.prepared, job.operation);
+            complete(job, true, 0, null);
+        } catch (PrinterException e) {
+            Log.e(TAG, "Job " + job.id + " failed: " + e.getMessage());
+            complete(job, false, e.getCode(), e.getMessage());
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Job " + job.id + " failed unexpectedly: " + e.getMessage());
+            complete(job, false, 0, "Job failed: " + e.getMessage());
+        } finally {
+            job.release();
+            metrics.record(Metrics.Phase.JOB, job.submittedNanos);
+        }
+    }
+
+    private PrintJob takePrepared() throws InterruptedException {
+        PrintJob job = prepared.take();
+        synchronized (lanes) {
+            // Cleared here as well, so the job is never seen as both preparing and sent
+            if (preparingJob == job) {
+                preparingJob = null;
+            }
+        }
+        return job;
+    }
+
+    private boolean offer(PrintJob job) {
+        synchronized (lanes) {
+            if (queued >= capacity) {
+                return false;
+            }
+            lanes.get(job.priority.ordinal()).add(job);
+            active.put(job.id, job);
+            queued++;
+            lanes.notifyAll();
+            return true;
+        }
+    }
+
+    /**
+     * Blocks until a job is waiting and takes it for the preparing stage.
+     */
+    private PrintJob take() throws InterruptedException {
+        synchronized (lanes) {
+            PrintJob job;
+            while ((job = poll(false)) == null) {
+                lanes.wait();
+            }
+            preparingJob = job;
+            return job;
+        }
+    }
+
+    /**
+     * Takes the job that should print next, or only an urgent one, or returns null when
+     * there is none. Must hold the lanes lock.
+     */
+    private PrintJob poll(boolean urgentOnly) {
+        if (queued == 0) {
+            return null;
+        }
+        Priority[] priorities = Priority.values();
+        for (int i = priorities.length - 1; i > 0; i--) {
+            if (bypassed[i] >= STARVATION_LIMIT && !lanes.get(i).isEmpty()) {
+                // A starved lane is not skipped again, not even to run an urgent job in between
+                if (urgentOnly) {
+                    return null;
+                }
+                PrintJob job = poll(i);
+                job.bypassed = STARVATION_LIMIT;
+                return job;
+            }
+        }
+        // The job the preparing stage holds has left its lane, so it counts on its own
+        PrintJob held = urgentOnly ? preparingJob : null;
+        if (held != null && held.bypassed >= STARVATION_LIMIT) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        int lane = -1;
+        for (int i = 0; i < priorities.length; i++) {
+            PrintJob head = lanes.get(i).peek();
+            if (head != null && isUrgent(head, now)
+                    && (lane < 0 || head.deadlineOrMax() < lanes.get(lane).peek().deadlineOrMax())) {
+                lane = i;
+            }
+        }
+        if (lane < 0 && !urgentOnly) {
+            for (int i = 0; i < priorities.length && lane < 0; i++) {
+                if (!lanes.get(i).isEmpty()) {
+                    lane = i;
+                }
+            }
+        }
+        if (lane < 0) {
+            return null;
+        }
+        if (held != null) {
+            held.bypassed++;
+        }
+        return poll(lane);
+    }
+
+    private PrintJob poll(int lane) {
+        PrintJob job = lanes.get(lane).poll();
+        queued--;
+        bypassed[lane] = 0;
+        for (int i = lane + 1; i < lanes.size(); i++) {
+            if (!lanes.get(i).isEmpty()) {
+                bypassed[i]++;
+            }
+        }
+        return job;
+    }
+
+    private static boolean isUrgent(PrintJob job, long now) {
+        return job.priority == Priority.URGENT || (job.deadline > 0 && job.deadline - now <= DEADLINE_PROMOTION_MS);
+    }
+
+    /**
+     * Reports how a job ended, once. A job that lost its connection stays in the journal to be
+     * replayed, any other outcome is final.
+     */
+    private void complete(PrintJob job, boolean success, int code, String error) {
+        if (!claim(job)) {
+            return;
+        }
+        if (!success && code == PrinterException.CONNECTION_LOST) {
+            park(job);
+        } else {
+            finish(job);
+        }
+        metrics.recordJob(success, code);
+        notifyCompleted(job, success, error);
+    }
+
+    /**
+     * Takes the job out of the active jobs. Only the caller that gets true reports the job's
+     * outcome, since an aborted job is answered while its thread may still be printing it.
+     */
+    private boolean claim(PrintJob job) {
+        synchronized (lanes) {
+            return active.remove(job.id) != null;
+        }
+    }
+
+    private void finish(PrintJob job) {
+        if (job.journaled) {
+            journal.finished(job.number);
+        }
+    }
+
+    private void park(PrintJob job) {
+        if (job.journaled) {
+            journal.parked(job.number);
+        }
+    }
+
+    private void notifyProgress(PrintJob job, String state) {
+        JSObject data = new JSObject();
+        data.put("jobId", job.id);
+        data.put("printerId", printerId);
+        data.put("type", job.type);
+        data.put("priority", job.priority.key);
+        data.put("state", state);
+        data.put("pending", getPendingCount());
+        listener.onEvent(EVENT_JOB_PROGRESS, data);
+    }
+
+    /**
+     * Records the outcome under the job's idempotency key, or forgets the key after a failure
+     * so the job can be submitted again, and returns the calls of the job's duplicates.
+     */
+    private List<PluginCall> settle(PrintJob job, boolean success) {
+        if (job.idempotencyKey == null || idempotency == null) {
+            return Collections.emptyList();
+        }
+        synchronized (lanes) {
+            if (keyed.remove(job.number) == null) {
+                return Collections.emptyList();
+            }
+            if (success) {
+                idempotency.succeeded(job.keyHash, job.number);
+            } else {
+                idempotency.failed(job.keyHash, job.number);
+            }
+            return job.duplicates;
+        }
+    }
+
+    private static void respond(PluginCall call, String jobId, boolean success, String error, boolean duplicate) {
+        if (!success) {
+            call.reject(error);
+            return;
+        }
+        JSObject response = new JSObject();
+        response.put("success", true);
+        if (duplicate) {
+            response.put("jobId", jobId);
+            response.put("duplicate", true);
+        }
+        call.resolve(response);
+    }
+
+    private void notifyCompleted(PrintJob job, boolean success, String error) {
+        List<PluginCall> duplicates = settle(job, success);
+        if (job.call != null) {
+            respond(job.call, job.id, success, error, false);
+        }
+        for (PluginCall duplicate : duplicates) {
+            respond(duplicate, job.id, success, error, true);
+        }
+        JSObject data = new JSObject();
+        data.put("jobId", job.id);
+        data.put("printerId", printerId);
+        data.put("type", job.type);
+        data.put("success", success);
+        if (error != null) {
+            data.put("error", error);
+        }
+        data.put("durationMs", System.currentTimeMillis() - job.submittedAt);
+        listener.onEvent(EVENT_JOB_COMPLETED, data);
+    }
+
+    private static class PrintJob implements Comparable<PrintJob> {
+        final long number;
+        final String id;
+        final String type;
+        final JSObject options;
+        final PluginCall call;
+        final Priority priority;
+        // Null when the job has no idempotency key
+        final String idempotencyKey;
+        final long keyHash;
+        // Calls of jobs submitted again with the same key while this one was pending, guarded by the lanes
+        final List<PluginCall> duplicates = new ArrayList<>(0);
+        // Wall clock time after which the job is not sent or is aborted, 0 for none
+        final long deadline;
+        // Longest time one SDK call of the job may take, 0 for the watchdog's default
+        final long timeout;
+        final long submittedAt = System.currentTimeMillis();
+        final long submittedNanos = System.nanoTime();
+        // Set right after the job is created
+        Watchdog.Operation operation;
+        // Set by the preparing stage, exactly one of them once the job is handed off
+        Printer.PreparedJob prepared;
+        PrinterException error;
+        // Whether the job is recorded in the journal under its number
+        boolean journaled;
+        // Urgent jobs run in between while this job waited in the hand-off, guarded by the lanes
+        int bypassed;
+
+        PrintJob(long number, String type, JSObject options, PluginCall call, Priority priority, long deadline,
+                 long timeout, String idempotencyKey) {
+            this.number = number;
+            this.id = "job-" + number;
+            this.type = type;
+            this.options = options;
+            this.call = call;
+            this.priority = priority;
+            this.deadline = deadline;
+            this.timeout = timeout;
+            this.idempotencyKey = idempotencyKey;
+            this.keyHash = idempotencyKey != null ? IdempotencyCache.hash(idempotencyKey) : 0;
+        }
+
+        static PrintJob create(long number, String type, JSObject options, PluginCall call) throws PrinterException {
+            Priority priority = Priority.parse(options.getString("priority", Priority.NORMAL.key));
+            String key = options.getString("idempotencyKey");
+            if (key != null && key.isEmpty()) {
+                throw new PrinterException("Idempotency key cannot be empty");
+            }
+            return new PrintJob(number, type, options, call, priority, options.optLong("deadline", 0),
+                options.optLong("timeout", 0), key);
+        }
+
+        long deadlineOrMax() {
+            return deadline > 0 ? deadline : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int compareTo(PrintJob other) {
+            int byDeadline = Long.compare(deadlineOrMax(), other.deadlineOrMax());
+            return byDeadline != 0 ? byDeadline : Long.compare(number, other.number);
+        }
+
+        void release() {
+            if (prepared != null) {
+                prepared.release();
+                prepared = null;
+            }
+        }
+    }
+}
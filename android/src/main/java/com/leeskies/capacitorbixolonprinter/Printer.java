@@ -1,6 +1,8 @@
 package com.leeskies.capacitorbixolonprinter;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
@@ -8,17 +10,29 @@ import android.os.Message;
 import android.util.Base64;
 import android.util.Log;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.PluginCall;
 
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
 import com.bixolon.labelprinter.BixolonLabelPrinter;
 import com.bixolon.labelprinter.PrinterControl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 import java.util.logging.LogManager;
 
@@ -27,14 +41,23 @@ import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
 import org.jetbrains.annotations.NotNull;
 
 public class Printer {
-    private final Handler mHandler = createHandler();
-    
-    private Handler createHandler() {
-        Looper looper = Looper.myLooper();
-        if (looper == null) {
-            Log.i(TAG, "myLooper call failed, defaulting to main looper");
-            looper = Looper.getMainLooper();
-        }
+    public static final String EVENT_PDF_PAGE_PRINTED = "pdfPagePrinted";
+    public static final String EVENT_SERIAL_RUN_PROGRESS = "serialRunProgress";
+    public static final String EVENT_STATUS_CHANGED = "statusChanged";
+    public static final String EVENT_IMAGE_PRINTED = "imagePrinted";
+
+    // Widest print head of the supported models: 4 inch at 203 dpi
+    private static final int MAX_DOT_WIDTH = 832;
+
+    // Raw command payloads are streamed to the connection in slices of this size
+    private static final int RAW_CHUNK_SIZE = 16 * 1024;
+
+    private final Handler mHandler;
+
+    /**
+     * SDK callbacks are delivered on the plugin's printer thread, never on the UI thread.
+     */
+    private Handler createHandler(Looper looper) {
         return new Handler(looper) {
             @Override
             public void handleMessage(Message msg) {
@@ -50,298 +73,837 @@ public class Printer {
         };
     }
     
-    BixolonLabelPrinter printer;
+    final PrinterDevice printer;
     private Context context;
-    private PluginCall call;
-    private PluginCall pendingDiscoveryCall;
+    private final String printerId;
+    private final EventListener listener;
+    private final DocumentStore documents;
+    private final RenderCache renderCache;
+    private final PrinterResources resources;
+    private final Metrics metrics;
+    // Orders this printer's transactions and status reads; SDK calls of all printers are
+    // serialized by the pool's SDK lock
+    private final Object transactionLock = new Object();
+    private volatile boolean transmitting;
+    private volatile PrinterState cachedState;
+    private volatile StatusMonitor statusMonitor;
+    private final ConnectionManager connection;
+    private final FlowController flow;
+    // Operation of the job being transmitted, null between jobs
+    private volatile Watchdog.Operation operation;
+    // Number of transactions sent successfully, tells whether a failed job printed anything
+    private volatile long committedTransactions;
+    // Number of print commands a drawing issued, tells whether a failed transaction printed
+    private volatile long drawnPrints;
+    // Reused for every raw payload, guarded by transactionLock
+    private byte[] rawBuffer;
+
+    public Printer(Context context, String printerId, EventListener listener, PrinterResources resources) throws PrinterException {
+        this(context, printerId, listener, resources, null);
+    }
 
-    public Printer(Context context, PluginCall call) {
+    /**
+     * Creates a printer that drives the given device, or the SDK when it is null.
+     */
+    Printer(Context context, String printerId, EventListener listener, PrinterResources resources, PrinterDevice device) throws PrinterException {
         this.context = context;
-        this.call = call;
-        Looper looper = Looper.myLooper();
-        if (looper == null) {
-            Log.e(TAG, "Initialization failed: myLooper returned null");
-            call.reject("Failed to initialize printer instance");
-            return;
-        }
-        try {
-            printer = new BixolonLabelPrinter(this.context, mHandler, null);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to create BixolonLabelPrinter: " + e.getMessage());
-            call.reject("Failed to initialize printer: " + e.getMessage());
+        this.printerId = printerId;
+        this.listener = listener;
+        this.resources = resources;
+        this.documents = resources.documents;
+        this.renderCache = resources.renderCache;
+        this.metrics = resources.metrics;
+        this.mHandler = createHandler(resources.looper);
+        if (device == null) {
+            try {
+                device = new BixolonDevice(new BixolonLabelPrinter(this.context, mHandler, resources.looper),
+                    resources.sdkLock);
+            } catch (Exception | LinkageError e) {
+                Log.e(TAG, "Failed to create BixolonLabelPrinter: " + e.getMessage());
+                throw new PrinterException("Failed to initialize printer: " + e.getMessage(), e);
+            }
         }
+        printer = device;
+        connection = new ConnectionManager(printer, printerId, listener, transactionLock, metrics, resources.watchdog);
+        flow = new FlowController(printerId, this::refreshState, resources.flowControl.maxBacklog,
+            resources.flowControl.maxRetries);
+        metrics.registerFlow(printerId, flow);
     }
 
     public void discoverNetworkPrinters(PluginCall call) {
+        NetworkDiscovery discovery = resources.discovery;
+        if (!call.getBoolean("refresh", false)) {
+            List<NetworkDiscovery.Device> cached = discovery.getCached();
+            if (!cached.isEmpty()) {
+                resolveDiscovery(call, cached, true);
+                return;
+            }
+        }
         try {
             int timeout = call.getInt("timeout", 5000);
-            this.pendingDiscoveryCall = call;
-            this.printer.findNetworkPrinters(timeout);
-            
-            // Add fallback timeout to prevent hanging calls
-            mHandler.postDelayed(() -> {
-                if (pendingDiscoveryCall != null) {
-                    Log.w(TAG, "Discovery timed out, no response from printer");
-                    JSObject response = new JSObject();
-                    response.put("success", true);
-                    response.put("devices", new JSArray());
-                    pendingDiscoveryCall.resolve(response);
-                    pendingDiscoveryCall = null;
-                }
-            }, timeout + 1000); // Add 1 second buffer to SDK timeout
-            
+            boolean broadcast = call.getBoolean("broadcast", true);
+            boolean started = discovery.discover(
+                call.getString("subnet"),
+                call.getInt("port", NetworkDiscovery.DEFAULT_PORT),
+                timeout,
+                broadcast,
+                devices -> resolveDiscovery(call, devices, false)
+            );
+            // Only the request that started the scan asks the SDK, joiners share its result. The
+            // scan answers by its deadline, so a broadcast that hangs only costs its own thread
+            if (started && broadcast) {
+                Thread thread = new Thread(() -> this.printer.findNetworkPrinters(timeout), "BixolonBroadcast-" + printerId);
+                thread.setDaemon(true);
+                thread.start();
+            }
         } catch (Exception e) {
-            this.pendingDiscoveryCall = null; // Clear pending call on exception
             call.reject("Discovery failed: " + e.getMessage());
         }
     }
 
-    private void handleNetworkDeviceSet(Message msg) {
-        if (pendingDiscoveryCall == null) {
-            Log.w(TAG, "Received network device set but no pending call");
-            return;
+    private void resolveDiscovery(PluginCall call, List<NetworkDiscovery.Device> devices, boolean cached) {
+        JSArray deviceArray = new JSArray();
+        JSArray printers = new JSArray();
+        for (NetworkDiscovery.Device device : devices) {
+            deviceArray.put(device.address);
+            printers.put(device.toJSObject());
         }
-
         JSObject response = new JSObject();
+        response.put("success", true);
+        response.put("devices", deviceArray);
+        response.put("printers", printers);
+        response.put("cached", cached);
+        call.resolve(response);
+    }
+
+    private void handleNetworkDeviceSet(Message msg) {
         try {
             if (msg.obj == null) {
                 Log.i(TAG, "Network Device not found!");
-                response.put("success", true);
-                response.put("devices", new JSArray());
+                resources.discovery.reportBroadcast(null);
             } else {
                 Set<String> devices = (Set<String>) msg.obj;
-                JSArray deviceArray = new JSArray();
-                for (String device : devices) {
-                    deviceArray.put(device);
-                }
-                response.put("success", true);
-                response.put("devices", deviceArray);
                 Log.i(TAG, "Found " + devices.size() + " network devices");
+                resources.discovery.reportBroadcast(devices);
             }
-            pendingDiscoveryCall.resolve(response);
         } catch (Exception e) {
             Log.e(TAG, "Error handling network device set: " + e.getMessage());
-            pendingDiscoveryCall.reject("Failed to process discovered devices: " + e.getMessage());
-        } finally {
-            pendingDiscoveryCall = null;
+            resources.discovery.reportBroadcast(null);
         }
     }
 
-    public void printText(PluginCall call) {
-        String text = call.getString("text");
-        String fontSize = call.getString("fontSize", "normal");
-        String alignment = call.getString("alignment", "left");
-        Boolean bold = call.getBoolean("bold", false);
-        int horizontalPosition = call.getInt("horizontalPosition", 0);
-        int verticalPosition = call.getInt("verticalPosition", 0);
+    public PreparedJob prepareText(JSObject options) throws PrinterException {
+        String text = options.getString("text");
+        String fontSize = options.getString("fontSize", "normal");
+        String alignment = options.getString("alignment", "left");
+        Boolean bold = options.getBoolean("bold", false);
+        int horizontalPosition = options.getInteger("horizontalPosition", 0);
+        int verticalPosition = options.getInteger("verticalPosition", 0);
+        int horizontalMultiplier = options.getInteger("horizontalMultiplier", 1);
+        int verticalMultiplier = options.getInteger("verticalMultiplier", 1);
 
-        JSObject response = new JSObject();
+        if (text == null || text.isEmpty()) {
+            throw new PrinterException("Text cannot be null or empty");
+        }
+
+        // Convert fontSize string to integer
+        int fontSizeInt = convertFontSize(fontSize);
+
+        if (options.getInteger("width", 0) > 0) {
+            TextLayout layout = new TextLayout(fontSizeInt, horizontalMultiplier, verticalMultiplier);
+            return prepareTextBlock(layout, text, bold, alignment, options);
+        }
+
+        // Convert alignment string to integer
+        int alignmentInt = convertAlignment(alignment);
+
+        return () -> printTransaction("text", 1, 1, () -> checkDraw("text", printer.drawText(
+            text,
+            horizontalPosition,
+            verticalPosition,
+            fontSizeInt,
+            horizontalMultiplier,
+            verticalMultiplier,
+            0, // rightSpace
+            BixolonLabelPrinter.ROTATION_NONE,
+            false, // reverse
+            bold,
+            alignmentInt
+        )));
+    }
+
+    /**
+     * Wraps text to the label width and continues it onto as many labels as it needs. Each
+     * label's lines are drawn together and all labels share one transaction.
+     */
+    private PreparedJob prepareTextBlock(TextLayout layout, String text, boolean bold, String alignment,
+                                         JSObject options) throws PrinterException {
+        int copies = options.getInteger("copies", 1);
+        if (copies < 1) {
+            throw new PrinterException("Copies must be at least 1");
+        }
+        long layoutStart = System.nanoTime();
+        List<List<TextLayout.Line>> pages = layout.layout(
+            text,
+            options.getInteger("horizontalPosition", 0),
+            options.getInteger("verticalPosition", 0),
+            options.getInteger("width", 0),
+            options.getInteger("height", 0),
+            options.getInteger("lineSpacing", 0),
+            TextLayout.parseAlignment(alignment)
+        );
+        metrics.record(Metrics.Phase.DECODE, layoutStart);
+
+        return () -> printLabels("text", pages.size() * copies, () -> {
+            for (int i = 0; i < pages.size(); i++) {
+                if (i > 0) {
+                    printer.clearBuffer();
+                }
+                for (TextLayout.Line line : pages.get(i)) {
+                    if (line.text.isEmpty()) {
+                        continue;
+                    }
+                    checkDraw("text", printer.drawText(
+                        line.text,
+                        line.x,
+                        line.y,
+                        layout.getFont(),
+                        layout.getHorizontalMultiplier(),
+                        layout.getVerticalMultiplier(),
+                        0, // rightSpace
+                        BixolonLabelPrinter.ROTATION_NONE,
+                        false, // reverse
+                        bold,
+                        BixolonLabelPrinter.TEXT_ALIGNMENT_LEFT // lines are positioned by the layout
+                    ));
+                }
+                printDrawn(copies);
+            }
+        });
+    }
+
+    public PreparedJob prepareLabel(JSObject options) throws PrinterException {
+        long decodeStart = System.nanoTime();
+        LabelTemplate label = LabelTemplate.compile(options.optJSONArray("elements"), false);
+        metrics.record(Metrics.Phase.DECODE, decodeStart);
+        return prepareCompiledLabel(label, null, options.getInteger("copies", 1), options.getInteger("sets", 1));
+    }
+
+    public PreparedJob prepareTemplate(JSObject options) throws PrinterException {
+        String templateId = options.getString("templateId");
+        LabelTemplate template = templateId != null ? resources.templates.get(templateId) : null;
+        if (template == null) {
+            throw new PrinterException("Unknown template: " + templateId + ". Call registerTemplate() first.");
+        }
+        return prepareCompiledLabel(template, options.optJSONObject("variables"), options.getInteger("copies", 1), options.getInteger("sets", 1));
+    }
+
+    /**
+     * Prints a run of serial-numbered labels from a template. The template is compiled once
+     * and only the serial field changes between labels. Serial labels are sent in batches that
+     * share one transaction, and a run with step 0 prints identical labels using the printer's
+     * own set count instead of resending the label.
+     */
+    public PreparedJob prepareSerialRun(JSObject options) throws PrinterException {
+        return prepareSerialRun(options, null);
+    }
+
+    /**
+     * @param progress told the number of labels printed after every batch, may be null
+     */
+    PreparedJob prepareSerialRun(JSObject options, Progress progress) throws PrinterException {
+        String templateId = options.getString("templateId");
+        LabelTemplate template;
+        if (templateId != null) {
+            template = resources.templates.get(templateId);
+            if (template == null) {
+                throw new PrinterException("Unknown template: " + templateId + ". Call registerTemplate() first.");
+            }
+        } else {
+            long decodeStart = System.nanoTime();
+            template = LabelTemplate.compile(options.optJSONArray("elements"), true);
+            metrics.record(Metrics.Phase.DECODE, decodeStart);
+        }
+
+        String field = options.getString("field", "serial");
+        String pattern = options.getString("pattern", "%d");
+        long start = options.optLong("start", 1);
+        long step = options.optLong("step", 1);
+        int count = options.getInteger("count", 0);
+        int copies = options.getInteger("copies", 1);
+        int batchSize = Math.max(1, options.getInteger("batchSize", 20));
+        JSONObject baseVariables = options.optJSONObject("variables");
+
+        if (count < 1) {
+            throw new PrinterException("Count must be at least 1");
+        }
+        if (copies < 1) {
+            throw new PrinterException("Copies must be at least 1");
+        }
+
+        JSONObject variables;
         try {
-            if (text == null || text.isEmpty()) {
-                response.put("success", false);
-                call.reject("Text cannot be null or empty");
-                return;
+            variables = baseVariables != null ? new JSONObject(baseVariables.toString()) : new JSONObject();
+            variables.put(field, formatSerial(pattern, start));
+        } catch (JSONException e) {
+            throw new PrinterException("Invalid template variables: " + e.getMessage(), e);
+        }
+
+        if (step == 0) {
+            PreparedJob identical = prepareCompiledLabel(template, variables, copies, count);
+            String value = formatSerial(pattern, start);
+            return () -> {
+                identical.transmit();
+                if (progress != null) {
+                    progress.committed(count);
+                }
+                notifySerialProgress(count, count, value);
+            };
+        }
+
+        return () -> {
+            int printed = 0;
+            while (printed < count) {
+                int first = printed;
+                int last = Math.min(count, first + batchSize);
+                printLabels("serial labels " + (first + 1) + "-" + last, (last - first) * copies, () -> {
+                    for (int i = first; i < last; i++) {
+                        variables.put(field, formatSerial(pattern, start + i * step));
+                        if (i > first) {
+                            printer.clearBuffer();
+                        }
+                        template.draw(printer, variables);
+                        printDrawn(copies);
+                    }
+                });
+                printed = last;
+                if (progress != null) {
+                    progress.committed(printed);
+                }
+                notifySerialProgress(printed, count, formatSerial(pattern, start + (printed - 1) * step));
             }
+        };
+    }
 
-            if (!printer.isConnected()) {
-                response.put("success", false);
-                call.reject("Printer is not connected");
-                return;
+    /**
+     * Options that send what is left of a job of which the given number of units printed,
+     * or null when nothing is left. Only serial runs and barcode lists report units; other
+     * jobs are sent again as they are.
+     */
+    static JSObject resumeOptions(String type, JSObject options, int committed) {
+        if (committed <= 0) {
+            return options;
+        }
+        if ("barcode".equals(type)) {
+            JSONArray dataList = options.optJSONArray("dataList");
+            if (dataList == null) {
+                return options;
+            }
+            if (committed >= dataList.length()) {
+                return null;
             }
+            JSONArray rest = new JSONArray();
+            for (int i = committed; i < dataList.length(); i++) {
+                rest.put(dataList.opt(i));
+            }
+            options.put("dataList", rest);
+            return options;
+        }
+        if (!"serial".equals(type)) {
+            return options;
+        }
+        int count = options.getInteger("count", 0);
+        if (committed >= count) {
+            return null;
+        }
+        long step = options.optLong("step", 1);
+        options.put("start", options.optLong("start", 1) + committed * step);
+        options.put("count", count - committed);
+        return options;
+    }
 
-            // Convert fontSize string to integer
-            int fontSizeInt = convertFontSize(fontSize);
-            
-            // Convert alignment string to integer
-            int alignmentInt = convertAlignment(alignment);
-            
-            // Clear buffer before starting new transaction
-            printer.clearBuffer();
-            printer.beginTransactionPrint();
-            int result = printer.drawText(
-                text,
-                horizontalPosition,
-                verticalPosition,
-                fontSizeInt,
-                1, // horizontalMultiplier
-                1, // verticalMultiplier
-                0, // rightSpace
-                BixolonLabelPrinter.ROTATION_NONE,
-                false, // reverse
-                bold,
-                alignmentInt
-            );
-            
-            if (result == 0) {
-                // End transaction and print
-                int printResult = printer.endTransactionPrint();
-                printer.print(1, 1);
-                if (printResult == 3) { // Success code for endTransactionPrint
-                    response.put("success", true);
-                    call.resolve(response);
+    private static String formatSerial(String pattern, long value) throws PrinterException {
+        try {
+            return String.format(Locale.US, pattern, value);
+        } catch (IllegalFormatException e) {
+            throw new PrinterException("Invalid serial pattern \"" + pattern + "\": " + e.getMessage(), e);
+        }
+    }
+
+    private void notifySerialProgress(int printed, int count, String lastValue) {
+        JSObject progress = new JSObject();
+        progress.put("printerId", printerId);
+        progress.put("printed", printed);
+        progress.put("count", count);
+        progress.put("lastValue", lastValue);
+        listener.onEvent(EVENT_SERIAL_RUN_PROGRESS, progress);
+    }
+
+    private PreparedJob prepareCompiledLabel(LabelTemplate label, JSONObject variables, int copies, int sets) throws PrinterException {
+        if (copies < 1 || sets < 1) {
+            throw new PrinterException("Copies and sets must be at least 1");
+        }
+
+        // Draw every element into a single transaction so the label is sent in one round trip
+        return () -> printTransaction("label", sets, copies, () -> label.draw(printer, variables));
+    }
+
+    public PreparedJob preparePDF(JSObject options) throws PrinterException {
+        String base64FileString = options.getString("base64FileString");
+        String documentId = options.getString("documentId");
+        String path = options.getString("path");
+        String uri = options.getString("uri");
+        int width = options.getInteger("width", 0);
+        int horizontalPosition = options.getInteger("horizontalPosition", 0);
+        int verticalPosition = options.getInteger("verticalPosition", 0);
+        int page = options.getInteger("page", 1);
+        Boolean dithering = options.getBoolean("dithering", true);
+        Boolean compress = options.getBoolean("compress", true);
+        int level = options.getInteger("level", 1);
+        // Pages printed from rendered rasters are converted to black and white by the plugin
+        ImageDither.Method method = dithering ? ImageDither.Method.FLOYD_STEINBERG : ImageDither.Method.THRESHOLD;
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "Printing with params: " + width + ", " + horizontalPosition + ", " + verticalPosition + ", " + page + ", " + dithering + ", " + compress + ", " + level);
+        }
+
+        if ((base64FileString == null || base64FileString.isEmpty()) && documentId == null && path == null && uri == null) {
+            throw new PrinterException("One of base64FileString, documentId, path or uri is required");
+        }
+
+        // Pages are printed through the render pipeline when a range is requested or caching is enabled
+        boolean useCache = options.getBoolean("cache", false);
+        boolean rangeMode = options.getBoolean("allPages", false) || options.has("startPage") || options.has("endPage");
+        int startPage = rangeMode ? options.getInteger("startPage", 1) : page;
+        int endPage = rangeMode ? options.getInteger("endPage", 0) : page;
+
+        // A base64 document is keyed by the hash of its string, so a cached one is never decoded
+        String documentKey = null;
+        if (useCache && documentId == null && path == null && uri == null) {
+            documentKey = RenderCache.keyOf(base64FileString);
+            PreparedJob cached = prepareCachedPages(documentKey, startPage, endPage, width,
+                horizontalPosition, verticalPosition, level, method, compress);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        File tempFile = null;
+        try {
+            // Resolve the document to a local file, only writing a temporary copy when needed
+            File pdfFile;
+            if (documentId != null) {
+                pdfFile = documents.get(documentId);
+            } else if (path != null) {
+                pdfFile = new File(path);
+                if (!pdfFile.exists()) {
+                    throw new PrinterException("PDF file not found: " + path);
+                }
+            } else if (uri != null) {
+                Uri sourceUri = Uri.parse(uri);
+                if ("file".equals(sourceUri.getScheme())) {
+                    pdfFile = new File(sourceUri.getPath());
                 } else {
-                    response.put("success", false);
-                    call.reject("Failed to print: error code " + printResult);
+                    long writeStart = System.nanoTime();
+                    tempFile = documents.copyUri(sourceUri, "temp_pdf", ".pdf");
+                    metrics.record(Metrics.Phase.FILE_WRITE, writeStart);
+                    pdfFile = tempFile;
                 }
             } else {
-                printer.clearBuffer(); // Clear on failure
-                response.put("success", false);
-                call.reject("Failed to draw text: error code " + result);
+                // Decode base64 string straight into a temporary file
+                long writeStart = System.nanoTime();
+                tempFile = documents.writeBase64(base64FileString, "temp_pdf", ".pdf");
+                metrics.record(Metrics.Phase.FILE_WRITE, writeStart);
+                pdfFile = tempFile;
             }
-        } catch (Exception e) {
-            printer.clearBuffer(); // Clear on exception
-            response.put("success", false);
-            call.reject("Print text failed: " + e.getMessage());
+
+            if (useCache && documentKey == null) {
+                documentKey = RenderCache.keyOf(pdfFile);
+                PreparedJob cached = prepareCachedPages(documentKey, startPage, endPage, width,
+                    horizontalPosition, verticalPosition, level, method, compress);
+                if (cached != null) {
+                    deleteTempFile(tempFile);
+                    return cached;
+                }
+            }
+
+            File temp = tempFile;
+            if (rangeMode || useCache) {
+                String key = documentKey;
+                return new PreparedJob() {
+                    @Override
+                    public void transmit() throws PrinterException {
+                        printPdfPages(pdfFile, key, startPage, endPage, width, horizontalPosition, verticalPosition, level, method, compress);
+                    }
+
+                    @Override
+                    public void release() {
+                        deleteTempFile(temp);
+                    }
+                };
+            }
+
+            // Create URI from the PDF file
+            Uri pdfUri = Uri.fromFile(pdfFile);
+
+            return new PreparedJob() {
+                @Override
+                public void transmit() throws PrinterException {
+                    printTransaction("PDF", 1, 1, () -> {
+                        // Draw PDF file
+                        if (Log.isLoggable(TAG, Log.DEBUG)) {
+                            Log.d(TAG, "Drawing PDF file with parameters: " + pdfUri + ", " + horizontalPosition + ", " + verticalPosition + ", " + page + ", " + width + ", " + level + ", " + dithering + ", " + compress);
+                        }
+
+                        int result = printer.drawPDFFile(
+                            pdfUri,
+                            horizontalPosition,
+                            verticalPosition,
+                            page,
+                            width,
+                            level,
+                            dithering,
+                            compress
+                        );
+
+                        if (Log.isLoggable(TAG, Log.DEBUG)) {
+                            Log.d(TAG, "drawPDFFile result: " + result);
+                        }
+                        checkDraw("PDF", result);
+                    });
+                }
+
+                @Override
+                public void release() {
+                    deleteTempFile(temp);
+                }
+            };
+        } catch (IOException e) {
+            deleteTempFile(tempFile);
+            throw new PrinterException("Failed to read PDF file: " + e.getMessage(), e);
+        } catch (PrinterException | RuntimeException e) {
+            deleteTempFile(tempFile);
+            throw e;
         }
     }
 
-    public void printPDF(PluginCall call) {
-        String base64FileString = call.getString("base64FileString");
-        int width = call.getInt("width", 0);
-        int horizontalPosition = call.getInt("horizontalPosition", 0);
-        int verticalPosition = call.getInt("verticalPosition", 0);
-        int page = call.getInt("page", 1);
-        Boolean dithering = call.getBoolean("dithering", true);
-        Boolean compress = call.getBoolean("compress", true);
-        int level = call.getInt("level", 1);
-        
-        JSObject response = new JSObject();
-        File tempFile = null;
+    private static void deleteTempFile(File tempFile) {
+        if (tempFile != null && tempFile.exists()) {
+            tempFile.delete();
+        }
+    }
 
-        Log.d(TAG, "Printing with params: " + width + ", " + horizontalPosition + ", " + verticalPosition + ", " + page + ", " + dithering + ", " + compress + ", " + level);
-        
-        try {
-            if (base64FileString == null || base64FileString.isEmpty()) {
-                response.put("success", false);
-                call.reject("Base64 file string cannot be null or empty");
-                return;
+    /**
+     * Prints a range of pages from a PDF that has already been written to disk. Pages are
+     * rendered and dithered ahead on a background thread while earlier pages are transmitted,
+     * and each page is printed as its own label. With a document key, pages are looked up in
+     * and added to the render cache.
+     */
+    private void printPdfPages(File pdfFile, String documentKey, int startPage, int endPage, int width, int horizontalPosition,
+                               int verticalPosition, int level, ImageDither.Method method, boolean compress) throws PrinterException {
+        try (PdfPipeline pipeline = new PdfPipeline(pdfFile, width, startPage, endPage, resources.dither, method,
+                documentKey != null ? renderCache : null, documentKey)) {
+            int pageCount = pipeline.getPageCount();
+            if (pageCount == 0) {
+                throw new PrinterException("PDF page range " + startPage + "-" + endPage + " contains no pages");
             }
+            pipeline.start();
 
-            if (!printer.isConnected()) {
-                response.put("success", false);
-                call.reject("Printer is not connected");
-                return;
+            int printed = 0;
+            PdfPipeline.RenderedPage page;
+            while ((page = pipeline.next()) != null) {
+                printRenderedPage(page.page, page.raster, ++printed, pageCount, horizontalPosition, verticalPosition, level, compress);
+            }
+        } catch (IOException e) {
+            throw new PrinterException("Failed to render PDF: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PrinterException("PDF printing was interrupted");
+        }
+    }
+
+    /**
+     * Prepares a page range straight from the render cache. Returns null unless every page
+     * of the range is cached. The job holds on to the rasters, so eviction in the meantime
+     * doesn't affect it.
+     */
+    private PreparedJob prepareCachedPages(String documentKey, int startPage, int endPage, int width, int horizontalPosition,
+                                           int verticalPosition, int level, ImageDither.Method method, boolean compress) {
+        Integer documentPages = renderCache.getPageCount(documentKey);
+        if (documentPages == null) {
+            return null;
+        }
+        int first = Math.max(1, startPage);
+        int last = endPage > 0 ? Math.min(endPage, documentPages) : documentPages;
+        List<RenderCache.Raster> pages = new ArrayList<>();
+        for (int page = first; page <= last; page++) {
+            RenderCache.Raster raster = renderCache.get(RenderCache.pageKey(documentKey, page, width, method));
+            if (raster == null) {
+                return null;
+            }
+            pages.add(raster);
+        }
+        if (pages.isEmpty()) {
+            return null;
+        }
+        return () -> {
+            for (int i = 0; i < pages.size(); i++) {
+                printRenderedPage(first + i, pages.get(i), i + 1, pages.size(), horizontalPosition, verticalPosition, level, compress);
             }
+        };
+    }
 
-            // Decode base64 string to bytes
-            byte[] pdfBytes = Base64.decode(base64FileString, Base64.DEFAULT);
-            
-            // Create temporary file
-            tempFile = File.createTempFile("temp_pdf", ".pdf", context.getCacheDir());
-            
-            // Write PDF bytes to temporary file
-            try (FileOutputStream fos = new FileOutputStream(tempFile)) {
-                fos.write(pdfBytes);
-                fos.flush();
-            }
-            
-            // Create URI from temporary file
-            Uri pdfUri = Uri.fromFile(tempFile);
-            
-            // Clear buffer and begin transaction for printing
-            printer.clearBuffer();
-            printer.beginTransactionPrint();
-            
-            // Draw PDF file
-            Log.d(TAG, "Drawing PDF file with parameters: " + pdfUri + ", " + horizontalPosition + ", " + verticalPosition + ", " + page + ", " + width + ", " + level + ", " + dithering + ", " + compress);
-
-            int result = printer.drawPDFFile(
-                pdfUri,
-                horizontalPosition,
-                verticalPosition,
-                page,
-                width,
-                level,
-                dithering,
-                compress
-            );
+    private void printRenderedPage(int page, RenderCache.Raster raster, int printed, int pageCount, int horizontalPosition,
+                                   int verticalPosition, int level, boolean compress) throws PrinterException {
+        // The raster is expanded only for as long as the SDK needs it
+        Bitmap bitmap = raster.toBitmap();
+        try {
+            printTransaction("PDF page " + page, 1, 1, () -> checkDraw("PDF page", compress
+                ? printer.drawCompressionImage(bitmap, horizontalPosition, verticalPosition, raster.width, level, false)
+                : printer.drawBitmap(bitmap, horizontalPosition, verticalPosition, raster.width, level, false)));
+        } finally {
+            bitmap.recycle();
+        }
 
-            Log.d(TAG, "drawPDFFile result: " + result);
-            
-            if (result == 0) {
-                // End transaction and print
-                int printResult = printer.endTransactionPrint();
-                printer.print(1, 1);
-                if (printResult == 3) { // Success code for endTransactionPrint
-                    response.put("success", true);
-                    call.resolve(response);
-                } else {
-                    printer.clearBuffer(); // Clear on failure
-                    response.put("success", false);
-                    call.reject("Failed to print PDF: error code " + printResult);
+        JSObject progress = new JSObject();
+        progress.put("printerId", printerId);
+        progress.put("page", page);
+        progress.put("printed", printed);
+        progress.put("pageCount", pageCount);
+        listener.onEvent(EVENT_PDF_PAGE_PRINTED, progress);
+    }
+
+    /**
+     * A job that has been validated, decoded and written to disk and only has to be sent to
+     * the printer. Preparing and transmitting are split so the print queue can prepare the
+     * next job while the current one is being transmitted.
+     */
+    public interface PreparedJob {
+        void transmit() throws PrinterException;
+
+        /**
+         * Frees what preparation allocated, such as temporary files and bitmaps. Called once
+         * whether or not the job was transmitted.
+         */
+        default void release() {
+        }
+    }
+
+    public interface Progress {
+        void committed(int units);
+    }
+
+    /**
+     * Runs a print job of the given type with the given options, preparing and transmitting
+     * it on the calling thread.
+     */
+    public void runJob(String type, JSObject options) throws PrinterException {
+        PreparedJob job = prepareJob(type, options);
+        try {
+            transmitJob(type, job, resources.watchdog.newOperation(type + " job", 0, 0, null));
+        } finally {
+            job.release();
+        }
+    }
+
+    /**
+     * Does everything for a job that does not need the printer. Safe to call while another
+     * job is being transmitted.
+     */
+    public PreparedJob prepareJob(String type, JSObject options) throws PrinterException {
+        return prepareJob(type, options, null);
+    }
+
+    /**
+     * @param progress told how many units of the job printed as they are committed, for jobs
+     *                 that print in several transactions; may be null
+     */
+    public PreparedJob prepareJob(String type, JSObject options, Progress progress) throws PrinterException {
+        switch (type) {
+            case "text":
+                return prepareText(options);
+            case "barcode":
+                return prepareBarcode(options, progress);
+            case "label":
+                return prepareLabel(options);
+            case "template":
+                return prepareTemplate(options);
+            case "serial":
+                return prepareSerialRun(options, progress);
+            case "pdf":
+                return preparePDF(options);
+            case "raw":
+                return prepareRaw(options);
+            case "image":
+                return prepareImage(options);
+            default:
+                throw new PrinterException("Unsupported job type: " + type);
+        }
+    }
+
+    /**
+     * Sends a prepared job as the given operation. When the connection drops before anything
+     * of the job was printed, the session is restored and the job is transmitted once more.
+     * Once the operation is aborted, the job fails with the abort's reason whatever the SDK
+     * made of it.
+     */
+    public void transmitJob(String type, PreparedJob job, Watchdog.Operation operation) throws PrinterException {
+        // An urgent job runs in between on the same thread while the current one waits
+        Watchdog.Operation outer = this.operation;
+        if (outer != null) {
+            outer.pause();
+        }
+        this.operation = operation;
+        try {
+            operation.begin(this::abortOperation);
+            long committed = committedTransactions;
+            long drawn = drawnPrints;
+            try {
+                job.transmit();
+            } catch (PrinterException e) {
+                operation.check();
+                // Like a raw payload, a drawing that issued print commands may have printed labels
+                if (e.getCode() != PrinterException.CONNECTION_LOST || committedTransactions != committed
+                        || drawnPrints != drawn || !connection.hasTarget()) {
+                    throw e;
                 }
-            } else {
-                printer.clearBuffer(); // Clear on failure
-                response.put("success", false);
-                call.reject("Failed to draw PDF: error code " + result);
+                Log.w(TAG, "Connection to " + printerId + " lost, reconnecting to replay " + type + " job");
+                if (!connection.reconnect()) {
+                    operation.check();
+                    throw e;
+                }
+                job.transmit();
             }
-        } catch (IOException e) {
-            printer.clearBuffer(); // Clear on exception
-            response.put("success", false);
-            call.reject("Failed to create temporary PDF file: " + e.getMessage());
-        } catch (Exception e) {
-            printer.clearBuffer(); // Clear on exception
-            response.put("success", false);
-            call.reject("Print PprintpdfDF failed: " + e.getMessage());
+            // An abort can land while the last call returns, after nothing was left to check it
+            operation.check();
+        } catch (PrinterException | RuntimeException e) {
+            operation.check();
+            throw e;
         } finally {
-            // Clean up temporary file
-            if (tempFile != null && tempFile.exists()) {
-                tempFile.delete();
+            operation.finish();
+            this.operation = outer;
+            if (outer != null) {
+                outer.resume();
             }
         }
     }
 
+    /**
+     * Frees the printer from a job that was cancelled or ran out of time. When its SDK call is
+     * still blocked after a grace period the connection is dropped, which fails the blocked
+     * read or write. The failed transaction clears whatever the job drew from the buffer, so a
+     * half-drawn label is not printed, and the next job restores the connection.
+     */
+    private void abortOperation(Watchdog.Operation aborted) {
+        if (!aborted.isInCall()) {
+            // Waiting between two calls, the interrupt is enough
+            return;
+        }
+        // Nothing is sent from here: the blocked call holds the SDK lock, and the timer thread
+        // waiting for it could not run the drop below
+        resources.watchdog.schedule(() -> {
+            if (aborted.isInCall()) {
+                Log.w(TAG, "SDK call on " + printerId + " still blocked after abort, dropping the connection");
+                connection.drop();
+            }
+        }, Watchdog.ABORT_GRACE_MS);
+    }
+
+    /**
+     * Throws when the job being transmitted was cancelled or ran out of time, between two of
+     * its transactions.
+     */
+    private void checkOperation() throws PrinterException {
+        Watchdog.Operation current = operation;
+        if (current != null) {
+            current.check();
+        }
+    }
+
     public void getStatus(PluginCall call) {
-        JSObject response = new JSObject();
         try {
-            boolean connected = printer.isConnected();
-            response.put("connected", connected);
-            
-            if (connected) {
-                // Get printer status
-                byte[] statusBytes = printer.getStatus(false);
-                
-                if (statusBytes != null && statusBytes.length > 0) {
-                    // Parse status bytes to determine printer state
-                    // First byte typically contains general status information
-                    byte generalStatus = statusBytes[0];
-                    
-                    // Check if printer is ready (no errors)
-                    boolean ready = (generalStatus & 0x08) == 0; // Bit 3: 0 = ready, 1 = error
-                    boolean paperOut = (generalStatus & 0x04) != 0; // Bit 2: paper out
-                    boolean coverOpen = (generalStatus & 0x20) != 0; // Bit 5: cover open
-                    
-                    response.put("ready", ready);
-                    response.put("paperOut", paperOut);
-                    response.put("coverOpen", coverOpen);
-                    
-                    if (paperOut) {
-                        response.put("paperStatus", "out");
-                    } else if (coverOpen) {
-                        response.put("paperStatus", "cover_open");
-                    } else {
-                        response.put("paperStatus", "ok");
-                    }
-                } else {
-                    response.put("ready", false);
-                    response.put("paperStatus", "unknown");
-                }
-            } else {
-                response.put("ready", false);
-                response.put("paperStatus", "disconnected");
+            // Answer from the monitor's snapshot unless a fresh read is requested
+            PrinterState state = cachedState;
+            boolean cached = statusMonitor != null && state != null && !call.getBoolean("refresh", false);
+            if (!cached) {
+                state = refreshState();
             }
-            
+            JSObject response = state.toJSObject();
+            response.put("cached", cached);
             call.resolve(response);
         } catch (Exception e) {
             call.reject("Get status failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Reads the status from the printer, updates the cached snapshot and emits a
+     * statusChanged event when the state differs from the previous snapshot.
+     */
+    public PrinterState refreshState() {
+        PrinterState state;
+        synchronized (transactionLock) {
+            boolean connected = printer.isConnected();
+            state = new PrinterState(connected, connected ? printer.getStatus(false) : null, System.currentTimeMillis());
+            if (state.known) {
+                connection.touch();
+            }
+        }
+        PrinterState previous = cachedState;
+        cachedState = state;
+        if (!state.sameAs(previous)) {
+            JSObject event = state.toJSObject();
+            event.put("printerId", printerId);
+            listener.onEvent(EVENT_STATUS_CHANGED, event);
+        }
+        return state;
+    }
+
+    public PrinterState getCachedState() {
+        return cachedState;
+    }
+
+    public boolean isTransmitting() {
+        return transmitting;
+    }
+
+    public synchronized void startStatusMonitor(long interval, long errorInterval, long maxInterval) {
+        stopStatusMonitor();
+        statusMonitor = new StatusMonitor(this, printerId, interval, errorInterval, maxInterval);
+        statusMonitor.start();
+    }
+
+    public synchronized void stopStatusMonitor() {
+        if (statusMonitor != null) {
+            statusMonitor.stop();
+            statusMonitor = null;
+        }
+    }
+
+    public boolean isConnected() {
+        return printer != null && printer.isConnected();
+    }
+
+    /**
+     * Runs the callback every time a connection is established or restored.
+     */
+    public void setOnConnected(Runnable callback) {
+        connection.setOnConnected(callback);
+    }
+
+    /**
+     * Disconnects for good and stops the connection's background work.
+     */
+    public void shutdown() {
+        connection.shutdown();
+        metrics.unregisterFlow(printerId, flow);
+    }
+
     public void disconnect(PluginCall call) {
         JSObject response = new JSObject();
         try {
             if (printer != null) {
-                printer.disconnect();
+                connection.close();
                 response.put("success", true);
                 Log.i(TAG, "Printer disconnected successfully");
             } else {
@@ -356,39 +918,47 @@ public class Printer {
         }
     }
 
-    public void printBarcode(PluginCall call) {
-        String data = call.getString("data");
-        String barcodeType = call.getString("barcodeType", "CODE128");
-        int width = call.getInt("width", 2);
-        int height = call.getInt("height", 100);
-        int horizontalPosition = call.getInt("horizontalPosition", 0);
-        int verticalPosition = call.getInt("verticalPosition", 0);
-        Boolean hri = call.getBoolean("hri", false); // Human Readable Interpretation
+    public PreparedJob prepareBarcode(JSObject options) throws PrinterException {
+        return prepareBarcode(options, null);
+    }
 
-        JSObject response = new JSObject();
-        try {
-            if (data == null || data.isEmpty()) {
-                response.put("success", false);
-                call.reject("Barcode data cannot be null or empty");
-                return;
-            }
+    /**
+     * Prints a 1D barcode, or a QR code, DataMatrix or PDF417 symbol with the printer's own 2D
+     * commands. With a dataList, prints one label per entry, in batches that each share one
+     * transaction.
+     *
+     * @param progress told the number of labels printed after every batch, may be null
+     */
+    PreparedJob prepareBarcode(JSObject options, Progress progress) throws PrinterException {
+        String data = options.getString("data");
+        String barcodeType = options.getString("barcodeType", "CODE128");
+        int width = options.getInteger("width", 2);
+        int height = options.getInteger("height", 100);
+        int horizontalPosition = options.getInteger("horizontalPosition", 0);
+        int verticalPosition = options.getInteger("verticalPosition", 0);
+        Boolean hri = options.getBoolean("hri", false); // Human Readable Interpretation
+        int copies = options.getInteger("copies", 1);
+        int batchSize = Math.max(1, options.getInteger("batchSize", 20));
+        JSONArray dataList = options.optJSONArray("dataList");
 
-            if (!printer.isConnected()) {
-                response.put("success", false);
-                call.reject("Printer is not connected");
-                return;
-            }
+        if (dataList == null && (data == null || data.isEmpty())) {
+            throw new PrinterException("Barcode data cannot be null or empty");
+        }
+        if (copies < 1) {
+            throw new PrinterException("Copies must be at least 1");
+        }
 
-            // Clear buffer and begin transaction for printing
-            printer.clearBuffer();
-            printer.beginTransactionPrint();
-            
+        BarcodeSymbol symbol;
+        String what;
+        if (Barcode2D.isSupported(barcodeType)) {
+            Barcode2D barcode = Barcode2D.compile(barcodeType, options);
+            symbol = value -> barcode.draw(printer, value, horizontalPosition, verticalPosition);
+            what = barcode.describe();
+        } else {
             // Convert barcode type string to integer
             int barcodeSelection = convertBarcodeType(barcodeType);
-            
-            // Draw 1D barcode
-            int result = printer.draw1dBarcode(
-                data,
+            symbol = value -> printer.draw1dBarcode(
+                value,
                 horizontalPosition,
                 verticalPosition,
                 barcodeSelection,
@@ -399,70 +969,539 @@ public class Printer {
                 hri ? BixolonLabelPrinter.HRI_BELOW_BARCODE : BixolonLabelPrinter.HRI_NOT_PRINTED,
                 0 // quietZoneWidth
             );
-            
-            if (result == 0) {
+            what = "barcode";
+        }
+
+        if (dataList == null) {
+            return () -> printTransaction(what, 1, copies, () -> checkDraw(what, symbol.draw(data)));
+        }
+
+        String[] values = new String[dataList.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dataList.optString(i);
+            if (values[i].isEmpty()) {
+                throw new PrinterException("Barcode data at index " + i + " of dataList cannot be empty");
+            }
+        }
+        if (values.length == 0) {
+            throw new PrinterException("Barcode dataList cannot be empty");
+        }
+        return () -> {
+            int printed = 0;
+            while (printed < values.length) {
+                int first = printed;
+                int last = Math.min(values.length, first + batchSize);
+                printLabels(what + " labels " + (first + 1) + "-" + last, (last - first) * copies, () -> {
+                    for (int i = first; i < last; i++) {
+                        if (i > first) {
+                            printer.clearBuffer();
+                        }
+                        checkDraw(what + " " + (i + 1), symbol.draw(values[i]));
+                        printDrawn(copies);
+                    }
+                });
+                printed = last;
+                if (progress != null) {
+                    progress.committed(printed);
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes pre-built printer commands to the connection unchanged, bypassing the SDK's
+     * drawing calls. The payload is streamed from its source through one reused buffer, so
+     * a document is never held in memory as a whole. With verifyStatus the printer status
+     * is read afterwards and an error state fails the job.
+     */
+    public PreparedJob prepareRaw(JSObject options) throws PrinterException {
+        boolean verifyStatus = options.getBoolean("verifyStatus", false);
+        InputStream in;
+        try {
+            in = openSource(options);
+        } catch (IOException e) {
+            throw new PrinterException("Failed to read raw commands: " + e.getMessage(), e);
+        }
+        return new PreparedJob() {
+            @Override
+            public void transmit() throws PrinterException {
+                long sent;
+                try {
+                    sent = transmitRaw(in);
+                } catch (IOException e) {
+                    throw new PrinterException("Failed to read raw commands: " + e.getMessage(), e);
+                }
+                if (Log.isLoggable(TAG, Log.DEBUG)) {
+                    Log.d(TAG, "Sent " + sent + " bytes of raw commands to " + printerId);
+                }
+
+                if (verifyStatus) {
+                    PrinterState state = refreshState();
+                    if (!state.known) {
+                        throw new PrinterException("Raw commands were sent but the printer status could not be read");
+                    }
+                    if (state.hasError()) {
+                        throw new PrinterException("Raw commands were sent but the printer reports an error (paper: "
+                            + state.getPaperStatus() + ")");
+                    }
+                }
+            }
+
+            @Override
+            public void release() {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to close raw command source: " + e.getMessage());
+                }
+            }
+        };
+    }
+
+    /**
+     * Prints a PNG or JPEG image. The image is decoded at the smallest size that still covers
+     * the print width, scaled to the width in dots and converted to black and white here, so
+     * the SDK only has to pack and compress the finished bitmap. Timings and the raster size
+     * are reported in an imagePrinted event.
+     */
+    public PreparedJob prepareImage(JSObject options) throws PrinterException {
+        int width = options.getInteger("width", 0);
+        int horizontalPosition = options.getInteger("horizontalPosition", 0);
+        int verticalPosition = options.getInteger("verticalPosition", 0);
+        int threshold = options.getInteger("threshold", ImageDither.DEFAULT_THRESHOLD);
+        ImageDither.Method method = ImageDither.Method.parse(options.getString("dithering", "floydSteinberg"));
+        boolean compress = options.getBoolean("compress", true);
+        int copies = options.getInteger("copies", 1);
+
+        if (width < 0 || width > MAX_DOT_WIDTH) {
+            throw new PrinterException("Width must be between 0 (auto) and " + MAX_DOT_WIDTH + " dots");
+        }
+        if (copies < 1) {
+            throw new PrinterException("Copies must be at least 1");
+        }
+
+        long decodeStart = System.nanoTime();
+        Bitmap source = decodeImage(options, width > 0 ? width : MAX_DOT_WIDTH);
+        Bitmap scaled = null;
+        try {
+            int targetWidth = width > 0 ? width : Math.min(source.getWidth(), MAX_DOT_WIDTH);
+            int targetHeight = Math.max(1, Math.round(source.getHeight() * (float) targetWidth / source.getWidth()));
+            scaled = targetWidth == source.getWidth()
+                ? source
+                : Bitmap.createScaledBitmap(source, targetWidth, targetHeight, true);
+            int[] pixels = new int[targetWidth * targetHeight];
+            scaled.getPixels(pixels, 0, targetWidth, 0, 0, targetWidth, targetHeight);
+            long decodeNanos = System.nanoTime() - decodeStart;
+            metrics.record(Metrics.Phase.DECODE, decodeStart);
+
+            long ditherStart = System.nanoTime();
+            resources.dither.dither(pixels, targetWidth, targetHeight, method, threshold);
+            long ditherNanos = System.nanoTime() - ditherStart;
+            metrics.record(Metrics.Phase.DITHER, ditherStart);
+            Bitmap label = Bitmap.createBitmap(pixels, targetWidth, targetHeight, Bitmap.Config.ARGB_8888);
+
+            JSObject stats = new JSObject();
+            stats.put("printerId", printerId);
+            stats.put("width", targetWidth);
+            stats.put("height", targetHeight);
+            stats.put("dithering", method.key);
+            stats.put("bands", resources.dither.bandsFor(targetHeight));
+            stats.put("decodeMs", decodeNanos / 1e6);
+            stats.put("ditherMs", ditherNanos / 1e6);
+            stats.put("rasterBytes", (targetWidth + 7) / 8 * targetHeight);
+            stats.put("compressed", compress);
+
+            return new PreparedJob() {
+                @Override
+                public void transmit() throws PrinterException {
+                    // The bitmap is already black and white, so the SDK's own dithering stays off
+                    printTransaction("image", 1, copies, () -> checkDraw("image", compress
+                        ? printer.drawCompressionImage(label, horizontalPosition, verticalPosition, targetWidth, 50, false)
+                        : printer.drawBitmap(label, horizontalPosition, verticalPosition, targetWidth, 50, false)));
+                    listener.onEvent(EVENT_IMAGE_PRINTED, stats);
+                }
+
+                @Override
+                public void release() {
+                    label.recycle();
+                }
+            };
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PrinterException("Image printing was interrupted");
+        } finally {
+            source.recycle();
+            if (scaled != null && scaled != source) {
+                scaled.recycle();
+            }
+        }
+    }
+
+    /**
+     * Decodes an image, subsampling by a power of two while the result stays at least as
+     * wide as the target so a camera photo is never decoded at full resolution. The source is
+     * read once, and both decoding passes share its bytes.
+     */
+    private Bitmap decodeImage(JSObject options, int targetWidth) throws PrinterException {
+        byte[] data;
+        try {
+            data = readSource(options);
+        } catch (IOException e) {
+            throw new PrinterException("Failed to read image: " + e.getMessage(), e);
+        }
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, bounds);
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new PrinterException("Unsupported image format, expected PNG or JPEG");
+        }
+
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = 1;
+        while (bounds.outWidth / (decode.inSampleSize * 2) >= targetWidth) {
+            decode.inSampleSize *= 2;
+        }
+        decode.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, decode);
+        if (bitmap == null) {
+            throw new PrinterException("Failed to decode image");
+        }
+        return bitmap;
+    }
+
+    /**
+     * Reads a whole source into memory. A base64 source is decoded straight into the array.
+     */
+    private byte[] readSource(JSObject options) throws PrinterException, IOException {
+        String base64 = options.getString("base64");
+        if (base64 != null && !base64.isEmpty() && options.getString("documentId") == null
+            && options.getString("path") == null && options.getString("uri") == null) {
+            return Base64.decode(base64, Base64.DEFAULT);
+        }
+        try (InputStream in = openSource(options)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(in.available(), 8192));
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private InputStream openSource(JSObject options) throws PrinterException, IOException {
+        String base64 = options.getString("base64");
+        String documentId = options.getString("documentId");
+        String path = options.getString("path");
+        String uri = options.getString("uri");
+
+        if (documentId != null) {
+            return new FileInputStream(documents.get(documentId));
+        } else if (path != null) {
+            File file = new File(path);
+            if (!file.exists()) {
+                throw new PrinterException("File not found: " + path);
+            }
+            return new FileInputStream(file);
+        } else if (uri != null) {
+            // Content URIs are read directly instead of being copied to a temporary file first
+            Uri sourceUri = Uri.parse(uri);
+            if ("file".equals(sourceUri.getScheme())) {
+                return new FileInputStream(sourceUri.getPath());
+            }
+            InputStream in = context.getContentResolver().openInputStream(sourceUri);
+            if (in == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            return in;
+        } else if (base64 != null && !base64.isEmpty()) {
+            return new ByteArrayInputStream(Base64.decode(base64, Base64.DEFAULT));
+        }
+        throw new PrinterException("One of base64, documentId, path or uri is required");
+    }
+
+    /**
+     * Streams the payload to the printer and returns the number of bytes sent. A payload is
+     * not replayed after the connection drops once writing started, since the printer may
+     * already have printed labels from it.
+     */
+    private long transmitRaw(InputStream in) throws IOException, PrinterException {
+        // The payload's label count is unknown, it only waits for a full printer
+        flow.awaitCapacity(0);
+        checkOperation();
+        synchronized (transactionLock) {
+            if (!printer.isConnected()) {
+                throw new PrinterException("Printer is not connected", PrinterException.CONNECTION_LOST);
+            }
+            if (rawBuffer == null) {
+                rawBuffer = new byte[RAW_CHUNK_SIZE];
+            }
+            byte[] buffer = rawBuffer;
+            long sent = 0;
+            Watchdog.Operation current = operation;
+            transmitting = true;
+            try {
+                long start = System.nanoTime();
+                int length;
+                while ((length = readFully(in, buffer)) > 0) {
+                    if (current != null) {
+                        // A slice at a time, so a long payload doesn't count as one overdue call
+                        current.check();
+                        current.beginCall("raw commands");
+                    }
+                    try {
+                        // The SDK only takes whole arrays, so just the final partial slice is copied
+                        printer.executeDirectIoWithoutCRLF(length == buffer.length ? buffer : Arrays.copyOf(buffer, length));
+                    } finally {
+                        if (current != null) {
+                            current.endCall();
+                        }
+                    }
+                    sent += length;
+                    if (!printer.isConnected()) {
+                        throw new PrinterException("Connection lost after sending " + sent + " bytes of raw commands");
+                    }
+                }
+                metrics.record(Metrics.Phase.TRANSMIT, start);
+            } finally {
+                transmitting = false;
+            }
+            if (sent == 0) {
+                throw new PrinterException("Raw command payload is empty");
+            }
+            committedTransactions++;
+            connection.touch();
+            flow.committed(0, sent);
+            return sent;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+        }
+        return length;
+    }
+
+    private void printTransaction(String what, int sets, int copies, Drawing drawing) throws PrinterException {
+        printTransaction(what, sets, copies, sets * copies, drawing);
+    }
+
+    /**
+     * Prints the label a drawing just drew. The SDK sends the command at once, so from here on
+     * the transaction may have printed and is neither retried nor replayed.
+     */
+    private void printDrawn(int copies) {
+        drawnPrints++;
+        printer.print(1, copies);
+    }
+
+    /**
+     * Runs a drawing that issues its own print commands inside the transaction, which lets
+     * several labels share one transaction.
+     *
+     * @param labels number of labels the drawing prints
+     */
+    private void printLabels(String what, int labels, Drawing drawing) throws PrinterException {
+        printTransaction(what, 0, 0, labels, drawing);
+    }
+
+    /**
+     * Sends a transaction once the flow controller expects the printer to have room for its
+     * labels. A transaction the printer refused while busy is retried after a back-off, unless
+     * its drawing already issued print commands.
+     */
+    private void printTransaction(String what, int sets, int copies, int labels, Drawing drawing) throws PrinterException {
+        for (int attempt = 0; ; attempt++) {
+            checkOperation();
+            flow.awaitCapacity(labels);
+            // Waiting for the printer ends early when the job is aborted
+            checkOperation();
+            long drawn = drawnPrints;
+            try {
+                sendTransaction(what, sets, copies, drawing);
+                flow.committed(labels, 0);
+                return;
+            } catch (PrinterException e) {
+                checkOperation();
+                if (e.getCode() != PrinterException.PRINTER_BUSY || attempt >= flow.getMaxRetries()) {
+                    throw e;
+                }
+                if (drawnPrints != drawn) {
+                    // The SDK sent the drawing's print commands as they were issued, so some of its
+                    // labels may have printed and a retry would print them again
+                    throw new PrinterException("Printer was busy after printing part of " + what,
+                        PrinterException.PRINTER_BUSY);
+                }
+                long backoff = flow.refused(attempt);
+                Log.w(TAG, "Printer " + printerId + " is busy, retrying " + what + " in " + backoff + " ms");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the buffer, draws inside a transaction, ends the transaction and prints.
+     * Transactions are serialized so direct calls and the print queue never interleave.
+     * With zero sets the drawing issues its own print commands inside the transaction.
+     */
+    private void sendTransaction(String what, int sets, int copies, Drawing drawing) throws PrinterException {
+        synchronized (transactionLock) {
+            if (!printer.isConnected()) {
+                throw new PrinterException("Printer is not connected", PrinterException.CONNECTION_LOST);
+            }
+            Watchdog.Operation current = operation;
+            if (current != null) {
+                current.beginCall(what);
+            }
+            transmitting = true;
+            try {
+                // Clear buffer and begin transaction for printing
+                printer.clearBuffer();
+                printer.beginTransactionPrint();
+                long phaseStart = System.nanoTime();
+                drawing.draw();
+                metrics.record(Metrics.Phase.DRAW, phaseStart);
+
                 // End transaction and print
+                phaseStart = System.nanoTime();
                 int printResult = printer.endTransactionPrint();
-                printer.print(1, 1);
-                if (printResult == 3) { // Success code for endTransactionPrint
-                    response.put("success", true);
-                    call.resolve(response);
-                } else {
-                    response.put("success", false);
-                    call.reject("Failed to print barcode: error code " + printResult);
+                metrics.record(Metrics.Phase.END_TRANSACTION, phaseStart);
+                if (printResult != 3) { // Success code for endTransactionPrint
+                    printer.clearBuffer(); // Clear on failure
+                    throw new PrinterException("Failed to print " + what + ": error code " + printResult,
+                        transactionFailure(printResult));
+                }
+                if (sets > 0) {
+                    phaseStart = System.nanoTime();
+                    printer.print(sets, copies);
+                    metrics.record(Metrics.Phase.PRINT, phaseStart);
+                }
+                committedTransactions++;
+                connection.touch();
+            } catch (PrinterException e) {
+                printer.clearBuffer(); // Clear what an aborted drawing left behind
+                throw e;
+            } catch (Exception e) {
+                printer.clearBuffer(); // Clear on exception
+                if (!printer.isConnected()) {
+                    throw new PrinterException("Print " + what + " failed: " + e.getMessage(), PrinterException.CONNECTION_LOST);
+                }
+                throw new PrinterException("Print " + what + " failed: " + e.getMessage(), e);
+            } finally {
+                transmitting = false;
+                if (current != null) {
+                    current.endCall();
                 }
-            } else {
-                printer.clearBuffer(); // Clear on failure
-                response.put("success", false);
-                call.reject("Failed to draw barcode: error code " + result);
             }
-        } catch (Exception e) {
-            printer.clearBuffer(); // Clear on exception
-            response.put("success", false);
-            call.reject("Print barcode failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Code for a transaction the printer did not accept. A printer that is connected and
+     * reports no error was only busy, which is worth retrying.
+     */
+    private int transactionFailure(int printResult) {
+        if (!printer.isConnected()) {
+            return PrinterException.CONNECTION_LOST;
+        }
+        PrinterState state = refreshState();
+        return state.known && !state.hasError() ? PrinterException.PRINTER_BUSY : printResult;
+    }
+
+    private void checkDraw(String what, int result) throws PrinterException {
+        if (result != 0) {
+            printer.clearBuffer(); // Clear on failure
+            throw new PrinterException("Failed to draw " + what + ": error code " + result, result);
+        }
+    }
+
+    private interface Drawing {
+        void draw() throws Exception;
+    }
+
+    private interface BarcodeSymbol {
+        int draw(String data);
+    }
+
+    /**
+     * Connects on the connection's own thread, so a slow or hung connect never holds up the
+     * plugin's other methods.
+     */
     public void connect(PluginCall call) {
         String address = call.getString("address");
         String type = call.getString("type", "network");
         int port = call.getInt("port", 9100);
         int timeout = call.getInt("timeout", 5000);
 
-        JSObject response = new JSObject();
         try {
-            if (address == null || address.isEmpty()) {
-                response.put("success", false);
-                call.reject("Address cannot be null or empty");
-                return;
-            }
+            connection.connectAsync(
+                address,
+                type,
+                port,
+                timeout,
+                call.getLong("keepAliveInterval", ConnectionManager.DEFAULT_KEEP_ALIVE_MS),
+                call.getLong("reconnectTimeout", ConnectionManager.DEFAULT_RECONNECT_TIMEOUT_MS),
+                new ConnectionManager.Callback() {
+                    @Override
+                    public void connected(String printerName) {
+                        JSObject response = new JSObject();
+                        response.put("success", true);
+                        response.put("message", "Connected to: " + printerName);
+                        response.put("printerName", printerName);
+                        Log.i(TAG, "Printer connected successfully, printer name: " + printerName);
+                        call.resolve(response);
+                    }
 
-            String result;
-            if ("network".equals(type)) {
-                Log.d(TAG, "Connecting to network printer at " + address + ":" + port + " with timeout of " + timeout + "ms");
-                result = printer.connect(address, port, timeout);
-                Log.d(TAG, "Connection result: " + result);
-            } else {
-                result = printer.connect(address);
-            }
+                    @Override
+                    public void failed(PrinterException error) {
+                        Log.e(TAG, error.getMessage());
+                        call.reject(error.getMessage());
+                    }
+                }
+            );
+        } catch (PrinterException e) {
+            Log.e(TAG, e.getMessage());
+            call.reject(e.getMessage());
+        }
+    }
 
-            // Check if connection was successful
-            // Success: non-null result that doesn't contain error codes
-            if (result != null && !result.trim().isEmpty() && !result.contains("FAIL") && !result.contains("ERROR")) {
-                response.put("success", true);
-                response.put("message", "Connected to: " + result);
-                response.put("printerName", result);
-                Log.i(TAG, "Printer connected successfully, printer name: " + result);
-                call.resolve(response);
-            } else {
-                response.put("success", false);
-                response.put("message", "Connection failed: " + (result != null ? result : "null"));
-                Log.e(TAG, "Connection failed with result: " + result);
-                call.reject("Connection failed: " + (result != null ? result : "Unknown error"));
+    /**
+     * Connects in the background so the first job doesn't pay the connect latency.
+     */
+    public void prewarm(JSObject options) throws PrinterException {
+        connection.connectAsync(
+            options.getString("address"),
+            options.getString("type", "network"),
+            options.getInteger("port", 9100),
+            options.getInteger("timeout", 5000),
+            options.optLong("keepAliveInterval", ConnectionManager.DEFAULT_KEEP_ALIVE_MS),
+            options.optLong("reconnectTimeout", ConnectionManager.DEFAULT_RECONNECT_TIMEOUT_MS),
+            null
+        );
+    }
+
+    /**
+     * Runs the SDK's native command encoder once, so the first job doesn't pay for linking
+     * and initializing it. Only done while disconnected, when the encoded command is dropped.
+     */
+    public void warmUp() throws PrinterException {
+        synchronized (transactionLock) {
+            if (printer.isConnected()) {
+                return;
+            }
+            try {
+                printer.clearBuffer();
+            } catch (RuntimeException | LinkageError e) {
+                throw new PrinterException("Printer SDK is not usable: " + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            response.put("success", false);
-            call.reject("Connection failed: " + e.getMessage());
         }
     }
 
@@ -477,7 +1516,7 @@ public class Printer {
         }
     }
 
-    private int convertFontSize(String fontSize) {
+    static int convertFontSize(String fontSize) {
         switch (fontSize.toLowerCase()) {
             case "small":
                 return BixolonLabelPrinter.FONT_SIZE_8;
@@ -493,7 +1532,7 @@ public class Printer {
         }
     }
 
-    private int convertAlignment(String alignment) {
+    static int convertAlignment(String alignment) {
         switch (alignment.toLowerCase()) {
             case "left":
                 return BixolonLabelPrinter.TEXT_ALIGNMENT_LEFT;
@@ -506,7 +1545,7 @@ public class Printer {
         }
     }
 
-    private int convertBarcodeType(String barcodeType) {
+    static int convertBarcodeType(String barcodeType) {
         switch (barcodeType.toUpperCase()) {
             case "CODE39":
                 return BixolonLabelPrinter.BARCODE_CODE39;
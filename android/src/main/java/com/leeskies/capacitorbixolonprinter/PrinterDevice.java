@@ -0,0 +1,63 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+/**
+ * The subset of the {@link com.bixolon.labelprinter.BixolonLabelPrinter} API the plugin
+ * drives. The SDK class is final, so this is the seam that lets benchmarks and tests run the
+ * plugin against a stand-in. Signatures and return codes match the SDK.
+ */
+public interface PrinterDevice {
+    String connect(String address);
+
+    String connect(String address, int port, int timeout);
+
+    boolean isConnected();
+
+    void disconnect();
+
+    String findNetworkPrinters(int timeout);
+
+    int drawText(String data, int horizontalPosition, int verticalPosition, int fontSelection, int horizontalMultiplier,
+                 int verticalMultiplier, int rightSpace, int rotation, boolean reverse, boolean bold, int alignment);
+
+    int draw1dBarcode(String data, int horizontalPosition, int verticalPosition, int barcodeSelection, int narrowBarWidth,
+                      int wideBarWidth, int height, int rotation, int hri, int quietZoneWidth);
+
+    int drawQrCode(String data, int horizontalPosition, int verticalPosition, int model, int eccLevel, int size,
+                   int rotation);
+
+    int drawDataMatrix(String data, int horizontalPosition, int verticalPosition, int size, int rotation);
+
+    int drawPdf417(String data, int horizontalPosition, int verticalPosition, int maximumRowCount,
+                   int maximumColumnCount, int errorCorrectionLevel, int dataCompressionMethod, int hri,
+                   int barcodeOriginPoint, int moduleWidth, int barHeight, int rotation);
+
+    int drawBlock(int horizontalStartPosition, int verticalStartPosition, int horizontalEndPosition,
+                  int verticalEndPosition, int option, int thickness);
+
+    int drawBitmap(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level, boolean dithering);
+
+    int drawCompressionImage(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                             boolean dithering);
+
+    int drawPDFFile(Uri uri, int horizontalPosition, int verticalPosition, int page, int width, int level,
+                    boolean dithering, boolean compress);
+
+    int clearBuffer();
+
+    byte[] getStatus(boolean checkImageBuffer);
+
+    int print(int sets, int copies);
+
+    void beginTransactionPrint();
+
+    int endTransactionPrint();
+
+    /**
+     * Writes bytes to the connection as they are. The SDK writes synchronously, so the array
+     * may be reused once the call returns.
+     */
+    void executeDirectIoWithoutCRLF(byte[] data);
+}
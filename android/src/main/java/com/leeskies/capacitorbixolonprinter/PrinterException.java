@@ -0,0 +1,42 @@
+package com.leeskies.capacitorbixolonprinter;
+
+/**
+ * Thrown when a printer operation fails. Carries the SDK return code when there is one.
+ */
+public class PrinterException extends Exception {
+    private static final long serialVersionUID = 1L;
+
+    /** The connection dropped; not an SDK return code */
+    public static final int CONNECTION_LOST = -1000;
+    /** The job's deadline passed before it could be sent; not an SDK return code */
+    public static final int DEADLINE_EXCEEDED = -1001;
+    /**
+     * The printer refused a transaction while busy and kept refusing its retries, or refused it
+     * after labels of it went out, which rules out a retry; not an SDK return code
+     */
+    public static final int PRINTER_BUSY = -1002;
+    /** An SDK call did not return within the operation timeout and was aborted; not an SDK return code */
+    public static final int TIMEOUT = -1003;
+    /** The job was cancelled; not an SDK return code */
+    public static final int CANCELLED = -1004;
+
+    private final int code;
+
+    public PrinterException(String message) {
+        this(message, 0);
+    }
+
+    public PrinterException(String message, int code) {
+        super(message);
+        this.code = code;
+    }
+
+    public PrinterException(String message, Throwable cause) {
+        super(message, cause);
+        this.code = 0;
+    }
+
+    public int getCode() {
+        return code;
+    }
+}
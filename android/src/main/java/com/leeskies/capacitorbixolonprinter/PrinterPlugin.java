@@ -1,106 +1,591 @@
 package com.leeskies.capacitorbixolonprinter;
 
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import java.io.File;
+
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;;
 
+import org.json.JSONException;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
 @CapacitorPlugin(name = "BixolonPrinter")
 public class PrinterPlugin extends Plugin {
 
-    private Printer implementation;
+    private volatile PrinterPool pool;
+    // Receives every SDK callback and runs initialization, keeping both off the UI thread
+    private HandlerThread printerThread;
+    private Handler printerHandler;
+    // Options the current pool was created with, only accessed on the printer thread
+    private String initializedWith;
 
     @Override
     public void load() {
-        // Don't initialize here - will be done per method call
+        printerThread = new HandlerThread("BixolonPrinter");
+        printerThread.start();
+        printerHandler = new Handler(printerThread.getLooper());
+        // Load the SDK while the app is starting, so initialize() doesn't have to
+        printerHandler.post(() -> {
+            try {
+                BixolonDevice.preload();
+            } catch (LinkageError e) {
+                Log.e(TAG, "Failed to preload the printer SDK: " + e.getMessage());
+            }
+        });
     }
 
+    /**
+     * Initializes on the printer thread and resolves once the SDK is ready. Calls are
+     * serialized there, and a call with the same options as the current pool resolves
+     * without touching it, so initialize() can safely be called from every page.
+     */
     @PluginMethod
     public void initialize(PluginCall call) {
-        try {
-            implementation = new Printer(this.getContext(), call);
+        printerHandler.post(() -> initializePool(call));
+    }
+
+    private void initializePool(PluginCall call) {
+        String options = call.getData().toString();
+        if (pool != null && options.equals(initializedWith)) {
             JSObject response = new JSObject();
             response.put("success", true);
             call.resolve(response);
-        } catch (Exception e) {
+            return;
+        }
+
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+            initializedWith = null;
+        }
+        PrinterPool created = null;
+        try {
+            Metrics metrics = new Metrics();
+            created = new PrinterPool(
+                this.getContext(),
+                call.getInt("maxConnections", PrinterPool.DEFAULT_MAX_CONNECTIONS),
+                call.getLong("idleTimeout", PrinterPool.DEFAULT_IDLE_TIMEOUT_MS),
+                call.getInt("queueDepth", PrintQueue.DEFAULT_CAPACITY),
+                this::notifyListeners,
+                new PrinterResources(
+                    new DocumentStore(this.getContext()),
+                    new RenderCache(
+                        this.getContext(),
+                        call.getLong("renderCacheSize", RenderCache.DEFAULT_MAX_BYTES),
+                        call.getBoolean("persistRenderCache", false)
+                    ),
+                    new NetworkDiscovery(
+                        this::notifyListeners,
+                        call.getLong("discoveryCacheTtl", NetworkDiscovery.DEFAULT_CACHE_TTL_MS),
+                        metrics
+                    ),
+                    metrics,
+                    printerThread.getLooper(),
+                    openJournal(call),
+                    new IdempotencyCache(
+                        call.getInt("idempotencyCapacity", IdempotencyCache.DEFAULT_CAPACITY),
+                        call.getLong("idempotencyWindow", IdempotencyCache.DEFAULT_WINDOW_MS)
+                    ),
+                    new FlowController.Settings(
+                        call.getInt("flowBacklog", FlowController.DEFAULT_MAX_BACKLOG),
+                        call.getInt("busyRetries", FlowController.DEFAULT_MAX_RETRIES)
+                    ),
+                    new Watchdog(call.getLong("operationTimeout", Watchdog.DEFAULT_OPERATION_TIMEOUT_MS), metrics)
+                )
+            );
+            // Only report success once the SDK has actually encoded a command
+            created.getOrCreate(PrinterPool.DEFAULT_PRINTER_ID).printer.warmUp();
+            prewarm(created, call.getArray("printers"));
+            metrics.startReporting(this::notifyListeners, call.getLong("metricsInterval", 0L));
+            pool = created;
+            initializedWith = options;
+            for (PrinterPool.Entry entry : created.getEntries()) {
+                entry.queue.replayJournal();
+            }
             JSObject response = new JSObject();
-            response.put("success", false);
+            response.put("success", true);
+            call.resolve(response);
+        } catch (Exception | LinkageError e) {
+            if (created != null) {
+                created.shutdown();
+            }
+            Log.e(TAG, "Initialization failed: " + e.getMessage());
             call.reject("Initialization failed: " + e.getMessage());
         }
     }
 
+    private JobJournal openJournal(PluginCall call) throws PrinterException {
+        if (!call.getBoolean("journal", false)) {
+            return null;
+        }
+        return JobJournal.open(
+            new File(this.getContext().getFilesDir(), "bixolon-journal"),
+            call.getInt("journalSize", JobJournal.DEFAULT_SIZE),
+            call.getLong("journalSyncInterval", JobJournal.DEFAULT_SYNC_INTERVAL_MS)
+        );
+    }
+
     @PluginMethod
     public void printText(PluginCall call) {
-        if (implementation == null) {
-            call.reject("Printer not initialized. Call initialize() first.");
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
             return;
         }
-        implementation.printText(call);
+        entry.queue.execute("text", call);
     }
 
     @PluginMethod
     public void printBarcode(PluginCall call) {
-        if (implementation == null) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("barcode", call);
+    }
+
+    @PluginMethod
+    public void printLabel(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("label", call);
+    }
+
+    @PluginMethod
+    public void registerTemplate(PluginCall call) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.printBarcode(call);
+        String templateId = call.getString("templateId");
+        if (templateId == null || templateId.isEmpty()) {
+            call.reject("Template ID cannot be null or empty");
+            return;
+        }
+        try {
+            LabelTemplate template = LabelTemplate.compile(call.getArray("elements"), true);
+            pool.getResources().templates.put(templateId, template);
+            JSObject response = new JSObject();
+            response.put("success", true);
+            response.put("elements", template.getElementCount());
+            call.resolve(response);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
     }
 
     @PluginMethod
-    public void getStatus(PluginCall call) {
-        if (implementation == null) {
+    public void unregisterTemplate(PluginCall call) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.getStatus(call);
+        String templateId = call.getString("templateId");
+        JSObject response = new JSObject();
+        response.put("success", templateId != null && pool.getResources().templates.remove(templateId) != null);
+        call.resolve(response);
     }
 
     @PluginMethod
-    public void disconnect(PluginCall call) {
-        if (implementation == null) {
+    public void printTemplate(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("template", call);
+    }
+
+    @PluginMethod
+    public void printSerialRun(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("serial", call);
+    }
+
+    @PluginMethod
+    public void submitJob(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        String type = call.getString("type");
+        JSObject options = call.getObject("options", new JSObject());
+        if (type == null || type.isEmpty()) {
+            call.reject("Job type cannot be null or empty");
+            return;
+        }
+        try {
+            String jobId = entry.queue.submit(type, options);
+            JSObject response = new JSObject();
+            response.put("success", true);
+            response.put("jobId", jobId);
+            call.resolve(response);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
+    }
+
+    /**
+     * Cancels a job by ID on the given printer, or on whichever printer has it.
+     */
+    @PluginMethod
+    public void cancelJob(PluginCall call) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.disconnect(call);
+        String jobId = call.getString("jobId");
+        if (jobId == null || jobId.isEmpty()) {
+            call.reject("Job ID cannot be null or empty");
+            return;
+        }
+        boolean cancelled = false;
+        if (call.getString("printerId") != null) {
+            PrinterPool.Entry entry = getPrinter(call);
+            if (entry == null) {
+                return;
+            }
+            cancelled = entry.queue.cancel(jobId);
+        } else {
+            // Job IDs are unique across printers
+            for (PrinterPool.Entry entry : pool.getEntries()) {
+                if (entry.queue.cancel(jobId)) {
+                    cancelled = true;
+                    break;
+                }
+            }
+        }
+        JSObject response = new JSObject();
+        response.put("cancelled", cancelled);
+        call.resolve(response);
     }
 
+    /**
+     * Cancels every pending job of the given printer, or of every printer.
+     */
     @PluginMethod
-    public void discoverNetworkPrinters(PluginCall call) {
-        if (implementation == null) {
+    public void cancelAll(PluginCall call) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.discoverNetworkPrinters(call);
+        int cancelled = 0;
+        if (call.getString("printerId") != null) {
+            PrinterPool.Entry entry = getPrinter(call);
+            if (entry == null) {
+                return;
+            }
+            cancelled = entry.queue.cancelAll();
+        } else {
+            for (PrinterPool.Entry entry : pool.getEntries()) {
+                cancelled += entry.queue.cancelAll();
+            }
+        }
+        JSObject response = new JSObject();
+        response.put("cancelled", cancelled);
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void getQueueStatus(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        JSObject response = new JSObject();
+        response.put("pending", entry.queue.getPendingCount());
+        response.put("capacity", entry.queue.getCapacity());
+        JSObject lanes = new JSObject();
+        for (PrintQueue.Priority priority : PrintQueue.Priority.values()) {
+            lanes.put(priority.key, entry.queue.getQueuedCount(priority));
+        }
+        response.put("queued", lanes);
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void getStatus(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.getStatus(call);
+    }
+
+    @PluginMethod
+    public void startStatusMonitor(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.startStatusMonitor(
+            call.getLong("interval", StatusMonitor.DEFAULT_INTERVAL_MS),
+            call.getLong("errorInterval", StatusMonitor.DEFAULT_ERROR_INTERVAL_MS),
+            call.getLong("maxInterval", StatusMonitor.DEFAULT_MAX_INTERVAL_MS)
+        );
+        JSObject response = new JSObject();
+        response.put("success", true);
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void stopStatusMonitor(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.stopStatusMonitor();
+        JSObject response = new JSObject();
+        response.put("success", true);
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void disconnect(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.disconnect(call);
+        if (!PrinterPool.DEFAULT_PRINTER_ID.equals(entry.id)) {
+            pool.remove(entry.id);
+        }
+    }
+
+    @PluginMethod
+    public void discoverNetworkPrinters(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.discoverNetworkPrinters(call);
     }
 
     @PluginMethod
     public void connect(PluginCall call) {
-        if (implementation == null) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.connect(call);
+        try {
+            pool.getOrCreate(call.getString("printerId")).printer.connect(call);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
     }
 
     @PluginMethod
     public void printPDF(PluginCall call) {
-        if (implementation == null) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("pdf", call);
+    }
+
+    @PluginMethod
+    public void sendRaw(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("raw", call);
+    }
+
+    @PluginMethod
+    public void printImage(PluginCall call) {
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.queue.execute("image", call);
+    }
+
+    @PluginMethod
+    public void beginDocument(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        try {
+            JSObject response = new JSObject();
+            response.put("documentId", pool.getResources().documents.begin());
+            call.resolve(response);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void appendChunk(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        try {
+            long size = pool.getResources().documents.append(call.getString("documentId"), call.getString("data"));
+            JSObject response = new JSObject();
+            response.put("size", size);
+            call.resolve(response);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void commitDocument(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        try {
+            String documentId = call.getString("documentId");
+            long size = pool.getResources().documents.commit(documentId);
+            JSObject response = new JSObject();
+            response.put("documentId", documentId);
+            response.put("size", size);
+            call.resolve(response);
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void releaseDocument(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        JSObject response = new JSObject();
+        response.put("success", pool.getResources().documents.discard(call.getString("documentId")));
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void getCacheStats(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        RenderCache cache = pool.getResources().renderCache;
+        if (call.getBoolean("clear", false)) {
+            cache.clear();
+        }
+        JSObject response = new JSObject();
+        response.put("hits", cache.getHits());
+        response.put("misses", cache.getMisses());
+        response.put("evictions", cache.getEvictions());
+        response.put("entries", cache.getEntryCount());
+        response.put("bytes", cache.getCurrentBytes());
+        response.put("maxBytes", cache.getMaxBytes());
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return;
+        }
+        Metrics metrics = pool.getResources().metrics;
+        JSObject response = metrics.toJSObject();
+        if (call.getBoolean("reset", false)) {
+            metrics.reset();
+        }
+        call.resolve(response);
+    }
+
+    @PluginMethod
+    public void listPrinters(PluginCall call) {
+        if (pool == null) {
             call.reject("Printer not initialized. Call initialize() first.");
             return;
         }
-        implementation.printPDF(call);
+        JSArray printers = new JSArray();
+        for (PrinterPool.Entry entry : pool.getEntries()) {
+            JSObject printer = new JSObject();
+            printer.put("printerId", entry.id);
+            printer.put("connected", entry.printer.isConnected());
+            printer.put("pending", entry.queue.getPendingCount());
+            printers.put(printer);
+        }
+        JSObject response = new JSObject();
+        response.put("printers", printers);
+        call.resolve(response);
     }
 
     @PluginMethod
     public void isInitialized(PluginCall call) {
-        if (implementation == null) {
+        if (pool == null) {
             JSObject response = new JSObject();
             response.put("initialized", false);
             call.resolve(response);
             return;
         }
-        implementation.isInitialized(call);
+        PrinterPool.Entry entry = getPrinter(call);
+        if (entry == null) {
+            return;
+        }
+        entry.printer.isInitialized(call);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        if (printerThread != null) {
+            printerThread.quitSafely();
+        }
+    }
+
+    /**
+     * Starts connecting to known printers in the background. Each entry takes the same options
+     * as connect(), the printer ID defaults to the address.
+     */
+    private void prewarm(PrinterPool pool, JSArray printers) throws PrinterException {
+        if (printers == null) {
+            return;
+        }
+        for (int i = 0; i < printers.length(); i++) {
+            try {
+                JSObject options = JSObject.fromJSONObject(printers.getJSONObject(i));
+                String address = options.getString("address");
+                if (address == null || address.isEmpty()) {
+                    throw new PrinterException("Printer at index " + i + " has no address");
+                }
+                pool.getOrCreate(options.getString("printerId", address)).printer.prewarm(options);
+            } catch (JSONException e) {
+                throw new PrinterException("Invalid printer at index " + i + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Looks up the printer selected by the optional printerId option. Rejects the call and
+     * returns null when the plugin is not initialized or the printer is unknown.
+     */
+    private PrinterPool.Entry getPrinter(PluginCall call) {
+        if (pool == null) {
+            call.reject("Printer not initialized. Call initialize() first.");
+            return null;
+        }
+        try {
+            return pool.get(call.getString("printerId"));
+        } catch (PrinterException e) {
+            call.reject(e.getMessage());
+            return null;
+        }
     }
-}
\ No newline at end of file
+}
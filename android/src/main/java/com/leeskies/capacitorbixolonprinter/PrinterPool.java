@@ -0,0 +1,181 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Pool of printers keyed by address or alias. Every printer owns its own SDK instance
+ * and print queue, so different devices prepare jobs and wait for their printers
+ * concurrently while jobs for one device stay serialized. The SDK's command encoder is
+ * shared, so SDK calls of all printers take turns on {@link PrinterResources#sdkLock}.
+ * Idle printers are evicted and the pool is capped at a maximum size.
+ */
+public class PrinterPool {
+    public static final String DEFAULT_PRINTER_ID = "default";
+    public static final int DEFAULT_MAX_CONNECTIONS = 4;
+    public static final long DEFAULT_IDLE_TIMEOUT_MS = 5 * 60 * 1000;
+
+    public static class Entry {
+        public final String id;
+        public final Printer printer;
+        public final PrintQueue queue;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        Entry(String id, Printer printer, PrintQueue queue) {
+            this.id = id;
+            this.printer = printer;
+            this.queue = queue;
+        }
+
+        void touch() {
+            lastUsed = System.currentTimeMillis();
+        }
+
+        boolean isIdle() {
+            return queue.getPendingCount() == 0;
+        }
+    }
+
+    private final Context context;
+    private final int maxConnections;
+    private final long idleTimeoutMs;
+    private final int queueDepth;
+    private final EventListener listener;
+    private final PrinterResources resources;
+    // Access-ordered so iteration starts at the least recently used printer
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(8, 0.75f, true);
+    private final ScheduledExecutorService evictor;
+
+    public PrinterPool(Context context, int maxConnections, long idleTimeoutMs, int queueDepth, EventListener listener,
+                       PrinterResources resources) {
+        this.context = context;
+        this.resources = resources;
+        this.maxConnections = Math.max(1, maxConnections);
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.queueDepth = queueDepth;
+        this.listener = listener;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BixolonPrinterPoolEvictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (idleTimeoutMs > 0) {
+            long period = Math.max(1000, idleTimeoutMs / 4);
+            evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Returns the printer registered under the given ID, or the default printer when the ID is null.
+     */
+    public synchronized Entry get(String printerId) throws PrinterException {
+        String id = printerId != null ? printerId : DEFAULT_PRINTER_ID;
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            throw new PrinterException("Unknown printer: " + id + ". Call connect() with this printerId first.");
+        }
+        entry.touch();
+        return entry;
+    }
+
+    /**
+     * Returns the printer registered under the given ID, creating it when needed. When the pool
+     * is full the least recently used idle printer is evicted to make room.
+     */
+    public synchronized Entry getOrCreate(String printerId) throws PrinterException {
+        String id = printerId != null ? printerId : DEFAULT_PRINTER_ID;
+        Entry entry = entries.get(id);
+        if (entry != null) {
+            entry.touch();
+            return entry;
+        }
+        if (entries.size() >= maxConnections && !evictLeastRecentlyUsed()) {
+            throw new PrinterException("Maximum of " + maxConnections + " printers already connected");
+        }
+        Printer printer = new Printer(context, id, listener, resources);
+        PrintQueue queue = new PrintQueue(id, printer, queueDepth, listener, resources.metrics, resources.journal,
+            resources.idempotency, resources.watchdog);
+        // Jobs left unfinished by a dropped connection or a previous run go out once connected
+        printer.setOnConnected(queue::replayJournal);
+        entry = new Entry(id, printer, queue);
+        entries.put(id, entry);
+        Log.i(TAG, "Added printer " + id + " to pool (" + entries.size() + "/" + maxConnections + ")");
+        return entry;
+    }
+
+    public synchronized void remove(String printerId) {
+        Entry entry = entries.remove(printerId);
+        if (entry != null) {
+            close(entry);
+        }
+    }
+
+    public PrinterResources getResources() {
+        return resources;
+    }
+
+    public synchronized List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    public synchronized void shutdown() {
+        evictor.shutdownNow();
+        for (Entry entry : entries.values()) {
+            close(entry);
+        }
+        entries.clear();
+        resources.clear();
+        resources.metrics.stopReporting();
+        resources.dither.shutdown();
+        resources.watchdog.shutdown();
+        if (resources.journal != null) {
+            resources.journal.close();
+        }
+    }
+
+    private boolean evictLeastRecentlyUsed() {
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Entry entry = it.next().getValue();
+            if (!DEFAULT_PRINTER_ID.equals(entry.id) && entry.isIdle()) {
+                Log.i(TAG, "Evicting least recently used printer " + entry.id);
+                it.remove();
+                close(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Entry entry = it.next().getValue();
+            if (!DEFAULT_PRINTER_ID.equals(entry.id) && entry.isIdle() && now - entry.lastUsed > idleTimeoutMs) {
+                Log.i(TAG, "Evicting idle printer " + entry.id);
+                it.remove();
+                close(entry);
+            }
+        }
+    }
+
+    private void close(Entry entry) {
+        entry.queue.shutdown();
+        entry.printer.stopStatusMonitor();
+        try {
+            entry.printer.shutdown();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to disconnect printer " + entry.id + ": " + e.getMessage());
+        }
+    }
+}
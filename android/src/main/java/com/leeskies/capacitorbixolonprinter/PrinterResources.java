@@ -0,0 +1,52 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.os.Looper;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State shared by every printer in the pool.
+ */
+public class PrinterResources {
+    public final DocumentStore documents;
+    public final RenderCache renderCache;
+    public final NetworkDiscovery discovery;
+    public final Metrics metrics;
+    /** Looper of the thread that receives every SDK callback */
+    public final Looper looper;
+    /** Record of queued jobs that survives restarts, or null when journaling is off */
+    public final JobJournal journal;
+    /** Idempotency keys of recent jobs on any printer */
+    public final IdempotencyCache idempotency;
+    public final FlowController.Settings flowControl;
+    /** Aborts operations of any printer that run too long */
+    public final Watchdog watchdog;
+    /**
+     * Held by every SDK call that encodes commands, since the SDK's command encoder is one
+     * instance shared by every printer. See {@link BixolonDevice}.
+     */
+    public final Object sdkLock = new Object();
+    public final Map<String, LabelTemplate> templates = new ConcurrentHashMap<>();
+    public final ImageDither dither = new ImageDither();
+
+    public PrinterResources(DocumentStore documents, RenderCache renderCache, NetworkDiscovery discovery, Metrics metrics,
+                            Looper looper, JobJournal journal, IdempotencyCache idempotency,
+                            FlowController.Settings flowControl, Watchdog watchdog) {
+        this.documents = documents;
+        this.renderCache = renderCache;
+        this.discovery = discovery;
+        this.metrics = metrics;
+        this.looper = looper;
+        this.journal = journal;
+        this.idempotency = idempotency;
+        this.flowControl = flowControl;
+        this.watchdog = watchdog;
+    }
+
+    public void clear() {
+        documents.clear();
+        templates.clear();
+        discovery.clear();
+    }
+}
@@ -0,0 +1,103 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.bixolon.labelprinter.BixolonLabelPrinter;
+import com.getcapacitor.JSObject;
+
+/**
+ * Immutable snapshot of the printer status, decoded from the status bytes returned by
+ * {@link BixolonLabelPrinter#getStatus(boolean)}.
+ */
+public final class PrinterState {
+
+    public final boolean connected;
+    public final boolean known;
+    public final boolean paperOut;
+    public final boolean coverOpen;
+    public final boolean cutterJammed;
+    public final boolean overheated;
+    public final boolean autoSensingFailure;
+    public final boolean ribbonEnd;
+    public final boolean buildingImage;
+    public final boolean printingImage;
+    public final boolean pausedInPeeler;
+    public final long timestamp;
+
+    public PrinterState(boolean connected, byte[] statusBytes, long timestamp) {
+        this.connected = connected;
+        this.known = connected && statusBytes != null && statusBytes.length > 0;
+        byte first = known ? statusBytes[0] : 0;
+        byte second = known && statusBytes.length > 1 ? statusBytes[1] : 0;
+        this.paperOut = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_PAPER_EMPTY) != 0;
+        this.coverOpen = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_COVER_OPEN) != 0;
+        this.cutterJammed = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_CUTTER_JAMMED) != 0;
+        this.overheated = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_TPH_OVERHEAT) != 0;
+        this.autoSensingFailure = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_AUTO_SENSING_FAILURE) != 0;
+        this.ribbonEnd = (first & BixolonLabelPrinter.STATUS_1ST_BYTE_RIBBON_END_ERROR) != 0;
+        this.buildingImage = (second & BixolonLabelPrinter.STATUS_2ND_BYTE_BUILDING_IN_IMAGE_BUFFER) != 0;
+        this.printingImage = (second & BixolonLabelPrinter.STATUS_2ND_BYTE_PRINTING_IN_IMAGE_BUFFER) != 0;
+        this.pausedInPeeler = (second & BixolonLabelPrinter.STATUS_2ND_BYTE_PAUSED_IN_PEELER_UNIT) != 0;
+        this.timestamp = timestamp;
+    }
+
+    public boolean hasError() {
+        return paperOut || coverOpen || cutterJammed || overheated || autoSensingFailure || ribbonEnd;
+    }
+
+    public boolean isBusy() {
+        return buildingImage || printingImage;
+    }
+
+    public boolean isReady() {
+        return known && !hasError();
+    }
+
+    public String getPaperStatus() {
+        if (!connected) {
+            return "disconnected";
+        } else if (!known) {
+            return "unknown";
+        } else if (paperOut) {
+            return "out";
+        } else if (coverOpen) {
+            return "cover_open";
+        }
+        return "ok";
+    }
+
+    /**
+     * Whether the two snapshots describe the same state, ignoring when they were taken.
+     */
+    public boolean sameAs(PrinterState other) {
+        return other != null
+            && connected == other.connected
+            && known == other.known
+            && paperOut == other.paperOut
+            && coverOpen == other.coverOpen
+            && cutterJammed == other.cutterJammed
+            && overheated == other.overheated
+            && autoSensingFailure == other.autoSensingFailure
+            && ribbonEnd == other.ribbonEnd
+            && buildingImage == other.buildingImage
+            && printingImage == other.printingImage
+            && pausedInPeeler == other.pausedInPeeler;
+    }
+
+    public JSObject toJSObject() {
+        JSObject response = new JSObject();
+        response.put("connected", connected);
+        response.put("ready", isReady());
+        response.put("paperStatus", getPaperStatus());
+        if (known) {
+            response.put("paperOut", paperOut);
+            response.put("coverOpen", coverOpen);
+            response.put("cutterJammed", cutterJammed);
+            response.put("overheated", overheated);
+            response.put("autoSensingFailure", autoSensingFailure);
+            response.put("ribbonEnd", ribbonEnd);
+            response.put("busy", isBusy());
+            response.put("pausedInPeeler", pausedInPeeler);
+        }
+        response.put("timestamp", timestamp);
+        return response;
+    }
+}
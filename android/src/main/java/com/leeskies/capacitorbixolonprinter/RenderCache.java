@@ -0,0 +1,310 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Content-hash keyed cache of rendered, printer-ready pages. Pages are held as dithered 1-bit
+ * rasters, a 32nd of the size of the bitmaps they were rendered to, and the byte budget is
+ * spent on those. Eviction is least recently used. Optionally pages and page counts are
+ * persisted in the cache directory, so repeat prints survive an app restart without
+ * re-rendering.
+ */
+public class RenderCache {
+    public static final long DEFAULT_MAX_BYTES = 32L * 1024 * 1024;
+    private static final int HASH_SLICE = 64 * 1024;
+    private static final String RASTER_SUFFIX = ".raster";
+    private static final String PAGE_COUNT_SUFFIX = ".pages";
+
+    /**
+     * A page dithered to black and white, packed eight dots to a byte with the most
+     * significant bit first and set for black. Rows are padded to whole bytes.
+     */
+    public static final class Raster {
+        public final int width;
+        public final int height;
+        private final byte[] bits;
+
+        private Raster(int width, int height, byte[] bits) {
+            this.width = width;
+            this.height = height;
+            this.bits = bits;
+        }
+
+        /**
+         * Packs pixels that have already been dithered to {@link ImageDither#BLACK} and
+         * {@link ImageDither#WHITE}.
+         */
+        public static Raster pack(int[] pixels, int width, int height) {
+            int stride = (width + 7) / 8;
+            byte[] bits = new byte[stride * height];
+            for (int y = 0; y < height; y++) {
+                int in = y * width;
+                int out = y * stride;
+                for (int x = 0; x < width; x++) {
+                    if (pixels[in + x] == ImageDither.BLACK) {
+                        bits[out + (x >> 3)] |= (byte) (0x80 >>> (x & 7));
+                    }
+                }
+            }
+            return new Raster(width, height, bits);
+        }
+
+        /**
+         * Expands the raster to a new bitmap for the SDK, which the caller recycles. The
+         * pixels are already black and white, so the SDK's own dithering stays off.
+         */
+        public Bitmap toBitmap() {
+            int stride = (width + 7) / 8;
+            int[] pixels = new int[width * height];
+            for (int y = 0; y < height; y++) {
+                int in = y * stride;
+                int out = y * width;
+                for (int x = 0; x < width; x++) {
+                    boolean black = (bits[in + (x >> 3)] & (0x80 >>> (x & 7))) != 0;
+                    pixels[out + x] = black ? ImageDither.BLACK : ImageDither.WHITE;
+                }
+            }
+            return Bitmap.createBitmap(pixels, width, height, Bitmap.Config.ARGB_8888);
+        }
+
+        public int getByteCount() {
+            return bits.length;
+        }
+    }
+
+    private final File directory;
+    private final long maxBytes;
+    private final boolean persistent;
+    private final LinkedHashMap<String, Raster> pages = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> pageCounts = new HashMap<>();
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public RenderCache(Context context, long maxBytes, boolean persistent) {
+        this.directory = new File(context.getCacheDir(), "bixolon-render-cache");
+        this.maxBytes = maxBytes;
+        this.persistent = persistent;
+        if (persistent && !directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Failed to create render cache directory " + directory);
+        }
+    }
+
+    /**
+     * Hashes a base64 document without decoding it, so a fully cached document is never decoded.
+     */
+    public static String keyOf(String base64) throws PrinterException {
+        MessageDigest digest = sha256();
+        for (int offset = 0; offset < base64.length(); offset += HASH_SLICE) {
+            String slice = base64.substring(offset, Math.min(base64.length(), offset + HASH_SLICE));
+            digest.update(slice.getBytes(StandardCharsets.US_ASCII));
+        }
+        return "b" + toHex(digest.digest());
+    }
+
+    public static String keyOf(File file) throws PrinterException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[HASH_SLICE];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new PrinterException("Failed to hash document: " + e.getMessage(), e);
+        }
+        return "f" + toHex(digest.digest());
+    }
+
+    public static String pageKey(String documentKey, int page, int width, ImageDither.Method dithering) {
+        return documentKey + "_" + page + "_" + width + "_" + dithering.key;
+    }
+
+    public synchronized Raster get(String key) {
+        Raster raster = pages.get(key);
+        if (raster == null && persistent) {
+            raster = readRaster(new File(directory, key + RASTER_SUFFIX));
+            if (raster != null) {
+                store(key, raster);
+            }
+        }
+        if (raster != null) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        return raster;
+    }
+
+    /**
+     * Adds a rendered page. Returns false when the raster is larger than the whole budget and
+     * was not cached.
+     */
+    public synchronized boolean put(String key, Raster raster) {
+        if (raster.getByteCount() > maxBytes) {
+            return false;
+        }
+        store(key, raster);
+        if (persistent) {
+            File file = new File(directory, key + RASTER_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeInt(raster.width);
+                out.writeInt(raster.height);
+                out.write(raster.bits);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to persist rendered page " + key + ": " + e.getMessage());
+                file.delete();
+            }
+        }
+        return true;
+    }
+
+    public synchronized Integer getPageCount(String documentKey) {
+        Integer pageCount = pageCounts.get(documentKey);
+        if (pageCount == null && persistent) {
+            File file = new File(directory, documentKey + PAGE_COUNT_SUFFIX);
+            if (file.exists()) {
+                try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+                    pageCount = in.readInt();
+                    pageCounts.put(documentKey, pageCount);
+                } catch (IOException e) {
+                    Log.w(TAG, "Failed to read page count of " + documentKey + ": " + e.getMessage());
+                    file.delete();
+                }
+            }
+        }
+        return pageCount;
+    }
+
+    public synchronized void putPageCount(String documentKey, int pageCount) {
+        Integer previous = pageCounts.put(documentKey, pageCount);
+        if (persistent && (previous == null || previous != pageCount)) {
+            File file = new File(directory, documentKey + PAGE_COUNT_SUFFIX);
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+                out.writeInt(pageCount);
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to persist page count of " + documentKey + ": " + e.getMessage());
+                file.delete();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        pages.clear();
+        pageCounts.clear();
+        currentBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public synchronized int getEntryCount() {
+        return pages.size();
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private void store(String key, Raster raster) {
+        Raster previous = pages.put(key, raster);
+        if (previous != null) {
+            currentBytes -= previous.getByteCount();
+        }
+        currentBytes += raster.getByteCount();
+        for (Iterator<Map.Entry<String, Raster>> it = pages.entrySet().iterator(); currentBytes > maxBytes && it.hasNext(); ) {
+            Map.Entry<String, Raster> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            currentBytes -= eldest.getValue().getByteCount();
+            it.remove();
+            evictions.incrementAndGet();
+            if (persistent) {
+                new File(directory, eldest.getKey() + RASTER_SUFFIX).delete();
+            }
+        }
+    }
+
+    private static Raster readRaster(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            int width = in.readInt();
+            int height = in.readInt();
+            if (width <= 0 || height <= 0) {
+                throw new IOException("Invalid raster size " + width + "x" + height);
+            }
+            byte[] bits = new byte[(width + 7) / 8 * height];
+            in.readFully(bits);
+            return new Raster(width, height, bits);
+        } catch (IOException e) {
+            // A page that was only partly written before the app died is rendered again
+            Log.w(TAG, "Failed to read rendered page " + file.getName() + ": " + e.getMessage());
+            file.delete();
+            return null;
+        }
+    }
+
+    private static MessageDigest sha256() throws PrinterException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new PrinterException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            hex[i * 2] = Character.forDigit(value >>> 4, 16);
+            hex[i * 2 + 1] = Character.forDigit(value & 0x0F, 16);
+        }
+        return new String(hex);
+    }
+}
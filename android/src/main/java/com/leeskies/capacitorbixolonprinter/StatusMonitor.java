@@ -0,0 +1,73 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Opt-in background poller that keeps a printer's cached status fresh. Polls quickly while the
+ * printer reports an error, backs off exponentially while nothing changes, and skips polls
+ * while a transaction is being transmitted. Only transitions are reported.
+ */
+public class StatusMonitor {
+    public static final long DEFAULT_INTERVAL_MS = 2000;
+    public static final long DEFAULT_ERROR_INTERVAL_MS = 500;
+    public static final long DEFAULT_MAX_INTERVAL_MS = 15000;
+
+    private final Printer printer;
+    private final long interval;
+    private final long errorInterval;
+    private final long maxInterval;
+    private final ScheduledExecutorService scheduler;
+    private long currentInterval;
+
+    public StatusMonitor(Printer printer, String printerId, long interval, long errorInterval, long maxInterval) {
+        this.printer = printer;
+        this.interval = Math.max(100, interval);
+        this.errorInterval = Math.max(100, errorInterval);
+        this.maxInterval = Math.max(this.interval, maxInterval);
+        this.currentInterval = this.interval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "BixolonStatusMonitor-" + printerId);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.execute(this::poll);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void poll() {
+        try {
+            if (printer.isTransmitting()) {
+                // Don't contend with the transaction, look again once it is likely done
+                currentInterval = interval;
+            } else {
+                PrinterState previous = printer.getCachedState();
+                PrinterState state = printer.refreshState();
+                if (state.hasError() || !state.connected) {
+                    currentInterval = errorInterval;
+                } else if (state.isBusy() || !state.sameAs(previous)) {
+                    currentInterval = interval;
+                } else {
+                    currentInterval = Math.min(maxInterval, currentInterval * 2);
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Status poll failed: " + e.getMessage());
+            currentInterval = errorInterval;
+        }
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::poll, currentInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.bixolon.labelprinter.BixolonLabelPrinter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lays out text in the printer's built-in fonts: wraps it to a width in dots, aligns each line
+ * on its own and splits the lines into pages that fit a label. The built-in fonts are fixed
+ * width, so the layout works on character counts from a metrics table that is built once.
+ */
+public class TextLayout {
+    /** A line of text and its top-left position in dots. */
+    public static final class Line {
+        public final String text;
+        public final int x;
+        public final int y;
+
+        Line(String text, int x, int y) {
+            this.text = text;
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    /** Cell size in dots of a built-in font at 203 dpi, without multipliers. */
+    static final class FontMetrics {
+        final int width;
+        final int height;
+
+        FontMetrics(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    public static final int ALIGN_LEFT = 0;
+    public static final int ALIGN_CENTER = 1;
+    public static final int ALIGN_RIGHT = 2;
+
+    // The SDK numbers its fonts FONT_SIZE_6 ('0') to FONT_SIZE_24 ('9'), in this order
+    private static final FontMetrics[] FONTS = {
+        new FontMetrics(9, 15),
+        new FontMetrics(12, 20),
+        new FontMetrics(16, 25),
+        new FontMetrics(19, 30),
+        new FontMetrics(24, 38),
+        new FontMetrics(32, 50),
+        new FontMetrics(48, 76),
+        new FontMetrics(22, 34),
+        new FontMetrics(28, 44),
+        new FontMetrics(37, 58)
+    };
+
+    private final int font;
+    private final int horizontalMultiplier;
+    private final int verticalMultiplier;
+    private final int charWidth;
+    private final int lineHeight;
+
+    public TextLayout(int font, int horizontalMultiplier, int verticalMultiplier) throws PrinterException {
+        FontMetrics metrics = metrics(font);
+        if (metrics == null) {
+            throw new PrinterException("Text layout does not support font " + font);
+        }
+        if (horizontalMultiplier < 1 || horizontalMultiplier > 9 || verticalMultiplier < 1 || verticalMultiplier > 9) {
+            throw new PrinterException("Multipliers must be between 1 and 9");
+        }
+        this.font = font;
+        this.horizontalMultiplier = horizontalMultiplier;
+        this.verticalMultiplier = verticalMultiplier;
+        this.charWidth = metrics.width * horizontalMultiplier;
+        this.lineHeight = metrics.height * verticalMultiplier;
+    }
+
+    static FontMetrics metrics(int font) {
+        int index = font - BixolonLabelPrinter.FONT_SIZE_6;
+        return index >= 0 && index < FONTS.length ? FONTS[index] : null;
+    }
+
+    static int parseAlignment(String alignment) {
+        switch (alignment.toLowerCase()) {
+            case "center":
+                return ALIGN_CENTER;
+            case "right":
+                return ALIGN_RIGHT;
+            default:
+                return ALIGN_LEFT;
+        }
+    }
+
+    public int getFont() {
+        return font;
+    }
+
+    public int getHorizontalMultiplier() {
+        return horizontalMultiplier;
+    }
+
+    public int getVerticalMultiplier() {
+        return verticalMultiplier;
+    }
+
+    /**
+     * Wraps the text at word boundaries and splits the lines into pages. Line breaks in the
+     * text are kept, and words longer than a line are broken wherever the line is full.
+     *
+     * @param left        horizontal position of the text block
+     * @param top         vertical position of the first line on every page
+     * @param width       width of the text block in dots
+     * @param height      label height in dots, or 0 to put every line on one page
+     * @param lineSpacing dots between consecutive lines
+     */
+    public List<List<Line>> layout(String text, int left, int top, int width, int height, int lineSpacing,
+                                   int alignment) throws PrinterException {
+        int columns = width / charWidth;
+        if (columns < 1) {
+            throw new PrinterException("Width of " + width + " dots is narrower than one character");
+        }
+        int pitch = lineHeight + Math.max(0, lineSpacing);
+        int linesPerPage = Integer.MAX_VALUE;
+        if (height > 0) {
+            linesPerPage = (height - top + Math.max(0, lineSpacing)) / pitch;
+            if (linesPerPage < 1) {
+                throw new PrinterException("Label height of " + height + " dots does not fit one line");
+            }
+        }
+
+        List<String> lines = wrap(text, columns);
+        int perPage = Math.min(linesPerPage, lines.size());
+        List<List<Line>> pages = new ArrayList<>((lines.size() + perPage - 1) / perPage);
+        List<Line> page = null;
+        for (int i = 0; i < lines.size(); i++) {
+            int row = i % perPage;
+            if (row == 0) {
+                page = new ArrayList<>();
+                pages.add(page);
+            }
+            String line = lines.get(i);
+            int x = left;
+            if (alignment != ALIGN_LEFT) {
+                int slack = width - line.length() * charWidth;
+                x += alignment == ALIGN_CENTER ? slack / 2 : slack;
+            }
+            page.add(new Line(line, x, top + row * pitch));
+        }
+        return pages;
+    }
+
+    /**
+     * Greedy word wrap to a number of columns. Runs of spaces between words collapse to one.
+     */
+    static List<String> wrap(String text, int columns) {
+        List<String> lines = new ArrayList<>();
+        StringBuilder line = new StringBuilder(columns);
+        int length = text.length();
+        int i = 0;
+        while (i <= length) {
+            // One paragraph per explicit line break
+            int end = text.indexOf('\n', i);
+            if (end < 0) {
+                end = length;
+            }
+            int paragraphEnd = end > i && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            line.setLength(0);
+            int p = i;
+            while (p < paragraphEnd) {
+                while (p < paragraphEnd && Character.isWhitespace(text.charAt(p))) {
+                    p++;
+                }
+                int wordStart = p;
+                while (p < paragraphEnd && !Character.isWhitespace(text.charAt(p))) {
+                    p++;
+                }
+                int word = p - wordStart;
+                if (word == 0) {
+                    break;
+                }
+                if (line.length() > 0 && line.length() + 1 + word <= columns) {
+                    line.append(' ').append(text, wordStart, p);
+                    continue;
+                }
+                if (line.length() > 0) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                }
+                while (word > columns) {
+                    lines.add(text.substring(wordStart, wordStart + columns));
+                    wordStart += columns;
+                    word -= columns;
+                }
+                line.append(text, wordStart, p);
+            }
+            lines.add(line.toString());
+            i = end + 1;
+        }
+        return lines;
+    }
+}
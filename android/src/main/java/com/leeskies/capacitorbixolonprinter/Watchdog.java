@@ -0,0 +1,250 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.util.Log;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.leeskies.capacitorbixolonprinter.Constants.TAG;
+
+/**
+ * Bounds how long printer operations run. Every job and connect is an {@link Operation} that
+ * arms a timer around each blocking SDK call and one for its deadline, and that can be
+ * cancelled from any thread. Aborting interrupts the thread running the operation, so waits
+ * and sleeps end at once, and hands the operation to whoever runs it, which frees the
+ * printer from an SDK call that does not return. One timer thread serves every printer.
+ */
+public class Watchdog {
+    public static final long DEFAULT_OPERATION_TIMEOUT_MS = 30_000;
+    // Time an aborted SDK call gets to return before its connection is dropped
+    public static final long ABORT_GRACE_MS = 2000;
+
+    /** Told about an operation that was cancelled or ran past its deadline or timeout. */
+    public interface Listener {
+        void aborted(Operation operation);
+    }
+
+    private final long operationTimeout;
+    private final Metrics metrics;
+    private final ScheduledThreadPoolExecutor timer;
+
+    public Watchdog(long operationTimeout, Metrics metrics) {
+        this.operationTimeout = operationTimeout;
+        this.metrics = metrics;
+        this.timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "BixolonWatchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Nearly every timer is disarmed long before it fires, don't let them pile up
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Creates an operation that is not running yet.
+     *
+     * @param deadline wall clock time after which the operation is aborted, 0 for none
+     * @param timeout  longest time one SDK call may take, 0 for the default and less for none
+     * @param listener told when the operation is aborted, may be null
+     */
+    public Operation newOperation(String what, long deadline, long timeout, Listener listener) {
+        return new Operation(what, deadline, timeout != 0 ? timeout : operationTimeout, listener);
+    }
+
+    /**
+     * Runs the task on the timer thread after the delay. Returns null once shut down.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        try {
+            return timer.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    public final class Operation {
+        private final String what;
+        private final long deadline;
+        private final long timeout;
+        private final Listener listener;
+
+        // Guarded by this
+        private Thread thread;
+        private Listener executor;
+        private boolean paused;
+        private boolean done;
+        private String call;
+        private int code;
+        private String message;
+        private long abortedAt;
+        private ScheduledFuture<?> deadlineTimer;
+        private ScheduledFuture<?> callTimer;
+
+        private Operation(String what, long deadline, long timeout, Listener listener) {
+            this.what = what;
+            this.deadline = deadline;
+            this.timeout = timeout;
+            this.listener = listener;
+        }
+
+        /**
+         * Starts running the operation on the calling thread.
+         *
+         * @param executor told when the operation is aborted while running, so it can free the
+         *                 printer; may be null
+         * @throws PrinterException when the operation was aborted or its deadline passed
+         */
+        public void begin(Listener executor) throws PrinterException {
+            synchronized (this) {
+                if (code == 0) {
+                    thread = Thread.currentThread();
+                    this.executor = executor;
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (deadline > 0 && remaining > 0) {
+                        deadlineTimer = schedule(this::deadlinePassed, remaining);
+                    }
+                }
+            }
+            check();
+        }
+
+        /**
+         * Throws when the operation was aborted or its deadline passed. Called between the
+         * steps of an operation, so a cancelled job stops before its next transaction.
+         */
+        public void check() throws PrinterException {
+            if (deadline > 0 && System.currentTimeMillis() > deadline) {
+                deadlinePassed();
+            }
+            PrinterException failure = failure();
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        /**
+         * Arms the timer of a blocking SDK call. Every call is followed by {@link #endCall}.
+         */
+        public synchronized void beginCall(String call) {
+            this.call = call;
+            if (timeout > 0 && code == 0) {
+                callTimer = schedule(() -> abort(PrinterException.TIMEOUT,
+                    call + " did not return within " + timeout + " ms"), timeout);
+            }
+        }
+
+        public synchronized void endCall() {
+            call = null;
+            if (callTimer != null) {
+                callTimer.cancel(false);
+                callTimer = null;
+            }
+        }
+
+        /**
+         * Whether the operation is inside an SDK call, which an abort can't interrupt.
+         */
+        public synchronized boolean isInCall() {
+            return call != null;
+        }
+
+        /**
+         * Stops interrupting the running thread on abort while it runs another operation in
+         * between. An abort in the meantime takes effect at the next {@link #check}.
+         */
+        public synchronized void pause() {
+            paused = true;
+        }
+
+        public synchronized void resume() {
+            paused = false;
+        }
+
+        /**
+         * @return false when the operation had already finished or been aborted
+         */
+        public boolean cancel() {
+            return abort(PrinterException.CANCELLED, "Cancelled " + what);
+        }
+
+        public synchronized boolean isAborted() {
+            return code != 0;
+        }
+
+        /**
+         * The exception the operation fails with, or null while it was not aborted.
+         */
+        public synchronized PrinterException failure() {
+            return code != 0 ? new PrinterException(message, code) : null;
+        }
+
+        /**
+         * Ends the operation on its thread. Clears the interrupt an abort left behind, so it
+         * doesn't hit whatever the thread does next.
+         */
+        public void finish() {
+            long aborted;
+            synchronized (this) {
+                done = true;
+                cancelTimers();
+                if (code == 0 || thread != Thread.currentThread()) {
+                    return;
+                }
+                Thread.interrupted();
+                aborted = abortedAt;
+            }
+            metrics.record(Metrics.Phase.ABORT, aborted);
+        }
+
+        private void deadlinePassed() {
+            abort(PrinterException.DEADLINE_EXCEEDED, "Deadline of " + what + " passed");
+        }
+
+        private boolean abort(int code, String message) {
+            Listener executor;
+            synchronized (this) {
+                if (done || this.code != 0) {
+                    return false;
+                }
+                this.code = code;
+                this.message = message;
+                abortedAt = System.nanoTime();
+                cancelTimers();
+                if (thread != null && !paused) {
+                    thread.interrupt();
+                }
+                executor = thread != null ? this.executor : null;
+                Log.w(TAG, message + (call != null ? " during " + call : ""));
+            }
+            if (code == PrinterException.CANCELLED) {
+                metrics.recordCancellation();
+            } else {
+                metrics.recordTimeout();
+            }
+            if (listener != null) {
+                listener.aborted(this);
+            }
+            if (executor != null) {
+                executor.aborted(this);
+            }
+            return true;
+        }
+
+        private void cancelTimers() {
+            if (deadlineTimer != null) {
+                deadlineTimer.cancel(false);
+                deadlineTimer = null;
+            }
+            if (callTimer != null) {
+                callTimer.cancel(false);
+                callTimer = null;
+            }
+        }
+    }
+}
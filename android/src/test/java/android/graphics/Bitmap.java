@@ -0,0 +1,52 @@
+package android.graphics;
+
+/**
+ * JVM implementation of the parts of android.graphics.Bitmap the PDF pipeline uses. The unit
+ * test android.jar only has stubs, and test classes come first on the classpath.
+ */
+public final class Bitmap {
+    public enum Config {
+        ALPHA_8,
+        RGB_565,
+        ARGB_8888
+    }
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private Bitmap(int width, int height, int[] pixels) {
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, new int[width * height]);
+    }
+
+    public static Bitmap createBitmap(int[] colors, int width, int height, Config config) {
+        return new Bitmap(width, height, colors.clone());
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void eraseColor(int color) {
+        java.util.Arrays.fill(pixels, color);
+    }
+
+    public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++) {
+            System.arraycopy(this.pixels, (y + row) * this.width + x, pixels, offset + row * stride, width);
+        }
+    }
+
+    public void recycle() {
+    }
+}
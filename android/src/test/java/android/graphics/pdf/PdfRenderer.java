@@ -0,0 +1,54 @@
+package android.graphics.pdf;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.os.ParcelFileDescriptor;
+
+/**
+ * JVM stand-in for android.graphics.pdf.PdfRenderer that opens every document as a single
+ * blank US Letter page. The unit test android.jar only has stubs, and test classes come
+ * first on the classpath.
+ */
+public final class PdfRenderer implements AutoCloseable {
+    public PdfRenderer(ParcelFileDescriptor descriptor) {
+    }
+
+    public int getPageCount() {
+        return 1;
+    }
+
+    public Page openPage(int index) {
+        if (index != 0) {
+            throw new IllegalArgumentException("Invalid page index " + index);
+        }
+        return new Page();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    public final class Page implements AutoCloseable {
+        public static final int RENDER_MODE_FOR_DISPLAY = 1;
+        public static final int RENDER_MODE_FOR_PRINT = 2;
+
+        private Page() {
+        }
+
+        public int getWidth() {
+            return 612;
+        }
+
+        public int getHeight() {
+            return 792;
+        }
+
+        public void render(Bitmap destination, Rect destClip, Matrix transform, int renderMode) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package android.os;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+
+/**
+ * JVM stand-in for android.os.ParcelFileDescriptor that only checks the file exists. The
+ * unit test android.jar only has stubs, and test classes come first on the classpath.
+ */
+public class ParcelFileDescriptor implements Closeable {
+    public static final int MODE_READ_ONLY = 0x10000000;
+
+    public static ParcelFileDescriptor open(File file, int mode) throws FileNotFoundException {
+        if (!file.exists()) {
+            throw new FileNotFoundException(file.getPath());
+        }
+        return new ParcelFileDescriptor();
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,21 @@
+package android.util;
+
+/**
+ * JVM implementation of the parts of android.util.Base64 the plugin uses. The unit test
+ * android.jar only has stubs, and test classes come first on the classpath.
+ */
+public class Base64 {
+    public static final int DEFAULT = 0;
+    public static final int NO_WRAP = 2;
+
+    public static byte[] decode(String str, int flags) {
+        return java.util.Base64.getMimeDecoder().decode(str);
+    }
+
+    public static String encodeToString(byte[] input, int flags) {
+        if ((flags & NO_WRAP) != 0) {
+            return java.util.Base64.getEncoder().encodeToString(input);
+        }
+        return java.util.Base64.getMimeEncoder().encodeToString(input) + "\n";
+    }
+}
@@ -0,0 +1,135 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Minimal JMH-style harness: a fixed number of warm-up iterations followed by measured
+ * iterations of a fixed number of operations each. Every operation is timed into a
+ * {@link LatencyHistogram}, and allocation is measured per thread, so results are comparable
+ * between runs on the same machine and JVM settings.
+ */
+final class BenchmarkRunner {
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    static final class Result {
+        final String name;
+        final long operations;
+        final double nanosPerOp;
+        final double p50Micros;
+        final double p99Micros;
+        final double bytesAllocatedPerOp;
+        final double megabytesPerSecond;
+
+        Result(String name, long operations, double nanosPerOp, double p50Micros, double p99Micros,
+               double bytesAllocatedPerOp, double megabytesPerSecond) {
+            this.name = name;
+            this.operations = operations;
+            this.nanosPerOp = nanosPerOp;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+            this.bytesAllocatedPerOp = bytesAllocatedPerOp;
+            this.megabytesPerSecond = megabytesPerSecond;
+        }
+
+        String format() {
+            return String.format(Locale.US, "%-28s %10.0f ns/op %10.1f p50 us %10.1f p99 us %12.0f B/op %10s",
+                name, nanosPerOp, p50Micros, p99Micros, bytesAllocatedPerOp,
+                megabytesPerSecond > 0 ? String.format(Locale.US, "%.1f MB/s", megabytesPerSecond) : "");
+        }
+
+        String toCsv() {
+            return String.format(Locale.US, "%s,%d,%.0f,%.1f,%.1f,%.0f,%.1f",
+                name, operations, nanosPerOp, p50Micros, p99Micros, bytesAllocatedPerOp, megabytesPerSecond);
+        }
+    }
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private final int operationsPerIteration;
+    private final String outputPath;
+
+    BenchmarkRunner(int warmupIterations, int measuredIterations, int operationsPerIteration, String outputPath) {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+        this.operationsPerIteration = operationsPerIteration;
+        this.outputPath = outputPath;
+    }
+
+    Result run(String name, Operation operation) throws Exception {
+        return run(name, 0, operationsPerIteration, operation);
+    }
+
+    /**
+     * Runs a benchmark.
+     *
+     * @param bytesPerOp payload size of one operation for throughput reporting, or 0
+     */
+    Result run(String name, long bytesPerOp, int operations, Operation operation) throws Exception {
+        for (int i = 0; i < warmupIterations; i++) {
+            for (int j = 0; j < operations; j++) {
+                operation.run();
+            }
+        }
+        System.gc();
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        LatencyHistogram histogram = new LatencyHistogram();
+        double[] iterationNanosPerOp = new double[measuredIterations];
+        long allocated = 0;
+        for (int i = 0; i < measuredIterations; i++) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long iterationStart = System.nanoTime();
+            for (int j = 0; j < operations; j++) {
+                long start = System.nanoTime();
+                operation.run();
+                histogram.recordNanos(System.nanoTime() - start);
+            }
+            iterationNanosPerOp[i] = (System.nanoTime() - iterationStart) / (double) operations;
+            allocated += threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        }
+
+        // The median iteration is less sensitive to a stray GC pause than the mean
+        Arrays.sort(iterationNanosPerOp);
+        double nanosPerOp = iterationNanosPerOp[measuredIterations / 2];
+        long total = (long) measuredIterations * operations;
+        Result result = new Result(
+            name,
+            total,
+            nanosPerOp,
+            histogram.percentile(50),
+            histogram.percentile(99),
+            allocated / (double) total,
+            bytesPerOp > 0 ? bytesPerOp / nanosPerOp * 1e9 / (1024 * 1024) : 0
+        );
+        report(result);
+        return result;
+    }
+
+    private void report(Result result) throws IOException {
+        System.out.println(result.format());
+        if (outputPath == null || outputPath.isEmpty()) {
+            return;
+        }
+        File file = new File(outputPath);
+        boolean header = !file.exists();
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        try (Writer writer = new FileWriter(file, true)) {
+            if (header) {
+                writer.write("name,operations,nsPerOp,p50Micros,p99Micros,bytesPerOp,megabytesPerSecond\n");
+            }
+            writer.write(result.toCsv());
+            writer.write('\n');
+        }
+    }
+}
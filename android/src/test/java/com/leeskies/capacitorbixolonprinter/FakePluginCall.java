@@ -0,0 +1,45 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.PluginCall;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plugin call that is not backed by a bridge and records how it was settled.
+ */
+class FakePluginCall extends PluginCall {
+    private final CountDownLatch settled = new CountDownLatch(1);
+    private volatile JSObject result;
+    private volatile String error;
+
+    FakePluginCall(String methodName, JSObject data) {
+        super(null, "BixolonPrinter", "fake", methodName, data);
+    }
+
+    @Override
+    public void resolve(JSObject data) {
+        result = data;
+        settled.countDown();
+    }
+
+    @Override
+    public void reject(String msg) {
+        error = msg;
+        settled.countDown();
+    }
+
+    /**
+     * Waits for the call to be settled and fails when it was rejected.
+     */
+    JSObject await(long timeoutMs) throws InterruptedException {
+        if (!settled.await(timeoutMs, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException(getMethodName() + " was not settled within " + timeoutMs + " ms");
+        }
+        if (error != null) {
+            throw new IllegalStateException(getMethodName() + " was rejected: " + error);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory stand-in for the SDK. Every call succeeds with the SDK's success code, optionally
+ * after a fixed delay that simulates the transport, and is counted.
+ */
+class FakePrinterDevice implements PrinterDevice {
+    private final long drawLatencyNanos;
+    private final long printLatencyNanos;
+    private volatile boolean connected = true;
+
+    long drawCalls;
+    long transactions;
+    long printCalls;
+    long bytesWritten;
+
+    FakePrinterDevice() {
+        this(0, 0);
+    }
+
+    FakePrinterDevice(long drawLatencyNanos, long printLatencyNanos) {
+        this.drawLatencyNanos = drawLatencyNanos;
+        this.printLatencyNanos = printLatencyNanos;
+    }
+
+    @Override
+    public String connect(String address) {
+        connected = true;
+        return "FAKE-PRINTER";
+    }
+
+    @Override
+    public String connect(String address, int port, int timeout) {
+        return connect(address);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    public void disconnect() {
+        connected = false;
+    }
+
+    @Override
+    public String findNetworkPrinters(int timeout) {
+        return null;
+    }
+
+    @Override
+    public int drawText(String data, int horizontalPosition, int verticalPosition, int fontSelection,
+                        int horizontalMultiplier, int verticalMultiplier, int rightSpace, int rotation, boolean reverse,
+                        boolean bold, int alignment) {
+        return draw();
+    }
+
+    @Override
+    public int draw1dBarcode(String data, int horizontalPosition, int verticalPosition, int barcodeSelection,
+                             int narrowBarWidth, int wideBarWidth, int height, int rotation, int hri, int quietZoneWidth) {
+        return draw();
+    }
+
+    @Override
+    public int drawQrCode(String data, int horizontalPosition, int verticalPosition, int model, int eccLevel, int size,
+                          int rotation) {
+        return draw();
+    }
+
+    @Override
+    public int drawDataMatrix(String data, int horizontalPosition, int verticalPosition, int size, int rotation) {
+        return draw();
+    }
+
+    @Override
+    public int drawPdf417(String data, int horizontalPosition, int verticalPosition, int maximumRowCount,
+                          int maximumColumnCount, int errorCorrectionLevel, int dataCompressionMethod, int hri,
+                          int barcodeOriginPoint, int moduleWidth, int barHeight, int rotation) {
+        return draw();
+    }
+
+    @Override
+    public int drawBlock(int horizontalStartPosition, int verticalStartPosition, int horizontalEndPosition,
+                         int verticalEndPosition, int option, int thickness) {
+        return draw();
+    }
+
+    @Override
+    public int drawBitmap(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                          boolean dithering) {
+        return draw();
+    }
+
+    @Override
+    public int drawCompressionImage(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                                    boolean dithering) {
+        return draw();
+    }
+
+    @Override
+    public int drawPDFFile(Uri uri, int horizontalPosition, int verticalPosition, int page, int width, int level,
+                           boolean dithering, boolean compress) {
+        return draw();
+    }
+
+    @Override
+    public int clearBuffer() {
+        return 0;
+    }
+
+    @Override
+    public byte[] getStatus(boolean checkImageBuffer) {
+        return new byte[] { 0, 0 };
+    }
+
+    @Override
+    public int print(int sets, int copies) {
+        printCalls++;
+        delay(printLatencyNanos);
+        return 0;
+    }
+
+    @Override
+    public void beginTransactionPrint() {
+        transactions++;
+    }
+
+    @Override
+    public int endTransactionPrint() {
+        return 3;
+    }
+
+    @Override
+    public void executeDirectIoWithoutCRLF(byte[] data) {
+        bytesWritten += data.length;
+    }
+
+    private int draw() {
+        drawCalls++;
+        delay(drawLatencyNanos);
+        return 0;
+    }
+
+    private static void delay(long nanos) {
+        if (nanos > 0) {
+            LockSupport.parkNanos(nanos);
+        }
+    }
+}
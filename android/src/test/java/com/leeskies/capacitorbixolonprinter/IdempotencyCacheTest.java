@@ -0,0 +1,86 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Duplicate detection and expiry of {@link IdempotencyCache}.
+ */
+public class IdempotencyCacheTest {
+    private static final long WINDOW_MS = 1000;
+
+    @Test
+    public void heldKeyReportsItsJob() {
+        IdempotencyCache cache = new IdempotencyCache(16, WINDOW_MS);
+        long hash = IdempotencyCache.hash("order-1");
+        assertEquals(IdempotencyCache.CLAIMED, cache.claim(hash, 7, 0));
+        assertEquals(7 << 2 | IdempotencyCache.PENDING, cache.claim(hash, 8, 10));
+
+        cache.succeeded(hash, 7);
+        assertEquals(7 << 2 | IdempotencyCache.SUCCEEDED, cache.claim(hash, 9, 20));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void failedKeyCanBeClaimedAgain() {
+        IdempotencyCache cache = new IdempotencyCache(16, WINDOW_MS);
+        long hash = IdempotencyCache.hash("order-1");
+        cache.claim(hash, 7, 0);
+        // Only the holder's outcome counts
+        cache.failed(hash, 8);
+        assertEquals(7 << 2 | IdempotencyCache.PENDING, cache.claim(hash, 8, 10));
+
+        cache.failed(hash, 7);
+        assertEquals(0, cache.size());
+        assertEquals(IdempotencyCache.CLAIMED, cache.claim(hash, 9, 20));
+    }
+
+    @Test
+    public void keyExpiresAfterWindow() {
+        IdempotencyCache cache = new IdempotencyCache(16, WINDOW_MS);
+        long hash = IdempotencyCache.hash("order-1");
+        cache.claim(hash, 7, 0);
+        cache.succeeded(hash, 7);
+        assertEquals(7 << 2 | IdempotencyCache.SUCCEEDED, cache.claim(hash, 8, WINDOW_MS));
+        assertEquals(IdempotencyCache.CLAIMED, cache.claim(hash, 9, WINDOW_MS + 1));
+    }
+
+    @Test
+    public void fullCacheForgetsOldestKey() {
+        int capacity = 4;
+        IdempotencyCache cache = new IdempotencyCache(capacity, WINDOW_MS);
+        for (int job = 0; job <= capacity; job++) {
+            assertEquals(IdempotencyCache.CLAIMED, cache.claim(IdempotencyCache.hash("order-" + job), job, job));
+        }
+        assertEquals(capacity, cache.size());
+        assertEquals(IdempotencyCache.CLAIMED, cache.claim(IdempotencyCache.hash("order-0"), 10, 10));
+        // Claiming the oldest key again pushed out the next oldest
+        assertEquals(IdempotencyCache.CLAIMED, cache.claim(IdempotencyCache.hash("order-1"), 11, 11));
+        assertEquals(4L << 2 | IdempotencyCache.PENDING, cache.claim(IdempotencyCache.hash("order-4"), 12, 12));
+    }
+
+    @Test
+    public void remainingKeysAreFoundAfterOthersFailed() {
+        int count = 500;
+        IdempotencyCache cache = new IdempotencyCache(count, WINDOW_MS);
+        for (int job = 0; job < count; job++) {
+            cache.claim(IdempotencyCache.hash("order-" + job), job, 0);
+        }
+        // Every third key is forgotten out of order, shifting colliding keys back
+        for (int job = count - 1; job >= 0; job--) {
+            if (job % 3 == 0) {
+                cache.failed(IdempotencyCache.hash("order-" + job), job);
+            }
+        }
+        assertEquals(count - (count + 2) / 3, cache.size());
+        for (int job = 0; job < count; job++) {
+            long held = cache.claim(IdempotencyCache.hash("order-" + job), count + job, 0);
+            if (job % 3 == 0) {
+                assertEquals(IdempotencyCache.CLAIMED, held);
+            } else {
+                assertEquals((long) job << 2 | IdempotencyCache.PENDING, held);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import com.getcapacitor.JSObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Recovery and compaction of {@link JobJournal}.
+ */
+public class JobJournalTest {
+    // Header, then length and CRC-32 in front of every record
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_OVERHEAD = 8;
+
+    private File directory;
+    private JobJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("bixolon-journal").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        if (journal != null) {
+            journal.close();
+        }
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void unfinishedJobsAreReplayedAfterReopen() throws Exception {
+        journal = open();
+        assertTrue(journal.submitted(1, "printer", "text", options("first")));
+        assertTrue(journal.submitted(2, "printer", "serial", options("second")));
+        assertTrue(journal.submitted(3, "other", "text", options("third")));
+        journal.progress(2, 40);
+        journal.finished(1);
+        journal.close();
+
+        journal = open();
+        assertEquals(3, journal.getLastSequence());
+        assertEquals(2, journal.getUnfinishedCount());
+        List<JobJournal.Entry> entries = journal.takeUnfinished("printer");
+        assertEquals(1, entries.size());
+        JobJournal.Entry entry = entries.get(0);
+        assertEquals(2, entry.sequence);
+        assertEquals("serial", entry.type);
+        assertEquals(40, entry.getCommitted());
+        assertEquals("second", entry.getOptions().getString("text"));
+        // Handed out once until it is parked again
+        assertTrue(journal.takeUnfinished("printer").isEmpty());
+        journal.parked(2);
+        assertEquals(1, journal.takeUnfinished("printer").size());
+    }
+
+    @Test
+    public void tornRecordIsDropped() throws Exception {
+        journal = open();
+        journal.submitted(1, "printer", "text", options("intact"));
+        journal.submitted(2, "printer", "text", options("torn"));
+        journal.close();
+
+        // Damage the payload of the last record, as a write cut short by a crash would
+        File file = new File(directory, "jobs.journal");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(HEADER_SIZE);
+            int last = HEADER_SIZE + RECORD_OVERHEAD + raf.readInt();
+            raf.seek(last + RECORD_OVERHEAD + 4);
+            int value = raf.read();
+            raf.seek(last + RECORD_OVERHEAD + 4);
+            raf.write(value ^ 0xFF);
+        }
+
+        journal = open();
+        List<JobJournal.Entry> entries = journal.takeUnfinished("printer");
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).sequence);
+        assertEquals("intact", entries.get(0).getOptions().getString("text"));
+
+        // Recovery rewrote the file, so records appended after it are read back
+        journal.submitted(3, "printer", "text", options("after"));
+        journal.close();
+        journal = open();
+        assertEquals(2, journal.getUnfinishedCount());
+        assertEquals(3, journal.getLastSequence());
+    }
+
+    @Test
+    public void fullJournalIsCompacted() throws Exception {
+        int size = 1024;
+        journal = JobJournal.open(directory, size, 0);
+        journal.submitted(1, "printer", "text", options("kept"));
+        // Each job alone fits, but all of them only do because finished ones are dropped
+        for (long sequence = 2; sequence < 500; sequence++) {
+            assertTrue(journal.submitted(sequence, "printer", "text", options("label " + sequence)));
+            journal.progress(sequence, 1);
+            journal.finished(sequence);
+        }
+        journal.progress(1, 7);
+        journal.close();
+
+        assertEquals(size, new File(directory, "jobs.journal").length());
+        journal = open();
+        List<JobJournal.Entry> entries = journal.takeUnfinished("printer");
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).sequence);
+        assertEquals(7, entries.get(0).getCommitted());
+    }
+
+    @Test
+    public void journalIsRewoundWhenEveryJobFinished() throws Exception {
+        journal = open();
+        for (long sequence = 1; sequence <= 10; sequence++) {
+            journal.submitted(sequence, "printer", "text", options("label"));
+        }
+        for (long sequence = 1; sequence <= 10; sequence++) {
+            journal.finished(sequence);
+        }
+        journal.close();
+
+        journal = open();
+        assertEquals(0, journal.getUnfinishedCount());
+    }
+
+    private JobJournal open() throws PrinterException {
+        return JobJournal.open(directory, JobJournal.DEFAULT_SIZE, 0);
+    }
+
+    private static JSObject options(String text) {
+        JSObject options = new JSObject();
+        options.put("text", text);
+        return options;
+    }
+}
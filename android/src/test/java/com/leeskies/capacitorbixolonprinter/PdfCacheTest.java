@@ -0,0 +1,103 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.ContextWrapper;
+import android.util.Base64;
+
+import com.getcapacitor.JSObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Render cache lookups of printPDF, with the SDK replaced by {@link FakePrinterDevice}.
+ */
+public class PdfCacheTest {
+    private static final int WIDTH = 16;
+
+    private File cacheDir;
+    private CountingDocumentStore documents;
+    private PrinterResources resources;
+    private FakePrinterDevice device;
+    private Printer printer;
+
+    /** Counts how often a base64 document is decoded to a temporary file. */
+    private static class CountingDocumentStore extends DocumentStore {
+        int base64Writes;
+
+        CountingDocumentStore(ContextWrapper context) {
+            super(context);
+        }
+
+        @Override
+        public File writeBase64(String base64, String prefix, String suffix) throws IOException {
+            base64Writes++;
+            return super.writeBase64(base64, prefix, suffix);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("bixolon-test").toFile();
+        ContextWrapper context = new ContextWrapper(null) {
+            @Override
+            public File getCacheDir() {
+                return cacheDir;
+            }
+        };
+        EventListener listener = (eventName, data) -> { };
+        Metrics metrics = new Metrics();
+        documents = new CountingDocumentStore(context);
+        resources = new PrinterResources(
+            documents,
+            new RenderCache(context, RenderCache.DEFAULT_MAX_BYTES, false),
+            new NetworkDiscovery(listener, NetworkDiscovery.DEFAULT_CACHE_TTL_MS, metrics),
+            metrics,
+            null,
+            null,
+            new IdempotencyCache(IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_WINDOW_MS),
+            FlowController.Settings.DEFAULT,
+            new Watchdog(Watchdog.DEFAULT_OPERATION_TIMEOUT_MS, metrics)
+        );
+        device = new FakePrinterDevice();
+        printer = new Printer(context, "test", listener, resources, device);
+    }
+
+    @After
+    public void tearDown() {
+        printer.shutdown();
+        resources.clear();
+        resources.watchdog.shutdown();
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void repeatedBase64PrintIsNotDecoded() throws Exception {
+        String base64 = Base64.encodeToString("%PDF-1.4 return label".getBytes(StandardCharsets.US_ASCII), Base64.NO_WRAP);
+        JSObject options = new JSObject();
+        options.put("base64FileString", base64);
+        options.put("width", WIDTH);
+        options.put("cache", true);
+
+        // The first print renders the page and caches it
+        printer.runJob("pdf", options);
+        assertEquals(1, documents.base64Writes);
+        assertEquals(1, resources.renderCache.getEntryCount());
+
+        // A repeat is recognized by the hash of the string and printed from the cache
+        printer.runJob("pdf", options);
+        assertEquals(1, documents.base64Writes);
+        assertEquals(1, resources.renderCache.getHits());
+        assertEquals(2, device.drawCalls);
+    }
+}
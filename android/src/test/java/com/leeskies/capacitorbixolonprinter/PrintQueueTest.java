@@ -0,0 +1,400 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.ContextWrapper;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Scheduling of {@link PrintQueue}, with the SDK replaced by a {@link FakePrinterDevice} that
+ * holds every transaction until the test lets it through.
+ */
+public class PrintQueueTest {
+    private static final long TIMEOUT_MS = 5000;
+
+    private File cacheDir;
+    private GatedPrinterDevice device;
+    private PrinterResources resources;
+    private Printer printer;
+    private PrintQueue queue;
+    // IDs of completed jobs, with a suffix for failed ones, and serial run progress in the
+    // order they were reported
+    private final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+    // IDs of the jobs that were queued, in submission order
+    private final BlockingQueue<String> queued = new LinkedBlockingQueue<>();
+    private final EventListener listener = (eventName, data) -> {
+        if (PrintQueue.EVENT_JOB_PROGRESS.equals(eventName) && "queued".equals(data.getString("state"))) {
+            queued.add(data.getString("jobId"));
+        } else if (PrintQueue.EVENT_JOB_COMPLETED.equals(eventName)) {
+            events.add(data.getString("jobId") + (data.getBoolean("success", false) ? "" : " failed"));
+        } else if (Printer.EVENT_SERIAL_RUN_PROGRESS.equals(eventName)) {
+            events.add("serial " + data.getInteger("printed"));
+        }
+    };
+
+    private static class GatedPrinterDevice extends FakePrinterDevice {
+        final Semaphore gate = new Semaphore(0);
+        final Semaphore entered = new Semaphore(0);
+        // What endTransactionPrint returns, 3 for an accepted transaction
+        volatile int endResult = 3;
+        // Whether the connection drops at the end of a transaction
+        volatile boolean dropOnEnd;
+
+        @Override
+        public void beginTransactionPrint() {
+            super.beginTransactionPrint();
+            entered.release();
+            try {
+                gate.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int endTransactionPrint() {
+            if (dropOnEnd) {
+                disconnect();
+            }
+            return endResult;
+        }
+
+        void open() {
+            gate.release(1000);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = Files.createTempDirectory("bixolon-test").toFile();
+        ContextWrapper context = new ContextWrapper(null) {
+            @Override
+            public File getCacheDir() {
+                return cacheDir;
+            }
+        };
+        Metrics metrics = new Metrics();
+        resources = new PrinterResources(
+            new DocumentStore(context),
+            new RenderCache(context, RenderCache.DEFAULT_MAX_BYTES, false),
+            new NetworkDiscovery(listener, NetworkDiscovery.DEFAULT_CACHE_TTL_MS, metrics),
+            metrics,
+            null,
+            null,
+            new IdempotencyCache(IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_WINDOW_MS),
+            FlowController.Settings.DEFAULT,
+            new Watchdog(Watchdog.DEFAULT_OPERATION_TIMEOUT_MS, metrics)
+        );
+        device = new GatedPrinterDevice();
+        printer = new Printer(context, "test", listener, resources, device);
+    }
+
+    @After
+    public void tearDown() {
+        device.open();
+        if (queue != null) {
+            queue.shutdown();
+        }
+        printer.shutdown();
+        resources.clear();
+        resources.watchdog.shutdown();
+        for (File file : cacheDir.listFiles()) {
+            file.delete();
+        }
+        cacheDir.delete();
+    }
+
+    @Test
+    public void fullQueueRejectsJobs() throws Exception {
+        queue = newQueue(2);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String prepared = queue.submit("text", text(null));
+        awaitQueued(PrintQueue.Priority.NORMAL, 0);
+        String first = queue.submit("text", text(null));
+        String second = queue.submit("text", text(null));
+        assertEquals(4, queue.getPendingCount());
+
+        FakePluginCall overflow = new FakePluginCall("printText", text(null));
+        queue.execute("text", overflow);
+        try {
+            overflow.await(TIMEOUT_MS);
+            fail("A job was accepted by a full queue");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().endsWith("Print queue is full (2 jobs pending)"));
+        }
+
+        device.open();
+        assertEquals(Arrays.asList(printing, prepared, first, second), awaitEvents(4));
+        FakePluginCall accepted = new FakePluginCall("printText", text(null));
+        queue.execute("text", accepted);
+        assertNotNull(accepted.await(TIMEOUT_MS));
+    }
+
+    @Test
+    public void urgentJobGoesAheadOfPreparedJob() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String prepared = queue.submit("text", text(null));
+        awaitQueued(PrintQueue.Priority.NORMAL, 0);
+        String urgent = queue.submit("text", text("urgent"));
+
+        device.open();
+        assertEquals(Arrays.asList(printing, urgent, prepared), awaitEvents(3));
+    }
+
+    @Test
+    public void urgentJobRunsBetweenBatchesOfSerialRun() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        JSObject run = new JSObject();
+        run.put("elements", new JSArray().put(new JSObject()
+            .put("type", "text")
+            .put("text", "Serial {{serial}}")));
+        run.put("count", 3);
+        run.put("batchSize", 1);
+        run.put("priority", "bulk");
+        String serial = queue.submit("serial", run);
+        awaitTransaction();
+        String urgent = queue.submit("text", text("urgent"));
+
+        device.open();
+        // The urgent job runs once the first batch is committed, before it is reported
+        assertEquals(Arrays.asList(urgent, "serial 1", "serial 2", "serial 3", serial), awaitEvents(5));
+    }
+
+    @Test
+    public void preparedJobIsNotStarvedByUrgentJobs() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String bulk = queue.submit("text", text("bulk"));
+        awaitQueued(PrintQueue.Priority.BULK, 0);
+        List<String> urgent = new ArrayList<>();
+        for (int i = 0; i < PrintQueue.STARVATION_LIMIT + 2; i++) {
+            urgent.add(queue.submit("text", text("urgent")));
+        }
+
+        device.open();
+        List<String> expected = new ArrayList<>();
+        expected.add(printing);
+        expected.addAll(urgent.subList(0, PrintQueue.STARVATION_LIMIT));
+        expected.add(bulk);
+        expected.addAll(urgent.subList(PrintQueue.STARVATION_LIMIT, urgent.size()));
+        assertEquals(expected, awaitEvents(expected.size()));
+    }
+
+    @Test
+    public void waitingLaneIsNotStarvedByHigherLane() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String prepared = queue.submit("text", text(null));
+        awaitQueued(PrintQueue.Priority.NORMAL, 0);
+        String bulk = queue.submit("text", text("bulk"));
+        List<String> normal = new ArrayList<>();
+        for (int i = 0; i < PrintQueue.STARVATION_LIMIT + 2; i++) {
+            normal.add(queue.submit("text", text(null)));
+        }
+
+        device.open();
+        List<String> expected = new ArrayList<>();
+        expected.add(printing);
+        expected.add(prepared);
+        expected.addAll(normal.subList(0, PrintQueue.STARVATION_LIMIT));
+        expected.add(bulk);
+        expected.addAll(normal.subList(PrintQueue.STARVATION_LIMIT, normal.size()));
+        assertEquals(expected, awaitEvents(expected.size()));
+    }
+
+    @Test
+    public void busyBatchIsNotRetriedOncePrinted() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        device.open();
+        // Refused by a printer that reports no error, which reads as busy
+        device.endResult = -1;
+        JSObject run = new JSObject();
+        run.put("elements", new JSArray().put(new JSObject()
+            .put("type", "text")
+            .put("text", "Serial {{serial}}")));
+        run.put("count", 3);
+        run.put("batchSize", 3);
+        String serial = queue.submit("serial", run);
+
+        assertEquals(Arrays.asList(serial + " failed"), awaitEvents(1));
+        // Each label's print command went out while drawing, a retry would have repeated them
+        assertEquals(1, device.transactions);
+        assertEquals(3, device.printCalls);
+    }
+
+    @Test
+    public void batchIsNotReplayedOncePrinted() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        device.open();
+        FakePluginCall connect = new FakePluginCall("connect", new JSObject().put("address", "127.0.0.1"));
+        printer.connect(connect);
+        connect.await(TIMEOUT_MS);
+        device.endResult = -1;
+        device.dropOnEnd = true;
+        JSObject run = new JSObject();
+        run.put("elements", new JSArray().put(new JSObject()
+            .put("type", "text")
+            .put("text", "Serial {{serial}}")));
+        run.put("count", 3);
+        run.put("batchSize", 3);
+        String serial = queue.submit("serial", run);
+
+        // The connection is restored, but the labels it lost went out, so the job isn't sent again
+        assertEquals(Arrays.asList(serial + " failed"), awaitEvents(1));
+        assertEquals(1, device.transactions);
+        assertEquals(3, device.printCalls);
+    }
+
+    @Test
+    public void cancelledWaitingJobIsAnsweredAtOnce() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String prepared = queue.submit("text", text(null));
+        awaitQueued(PrintQueue.Priority.NORMAL, 0);
+        String waiting = queue.submit("text", text(null));
+
+        assertTrue(queue.cancel(waiting));
+        assertEquals(Arrays.asList(waiting + " failed"), awaitEvents(1));
+        assertEquals(0, queue.getQueuedCount(PrintQueue.Priority.NORMAL));
+        assertFalse(queue.cancel(waiting));
+        assertFalse(queue.cancel("job-0"));
+
+        device.open();
+        assertEquals(Arrays.asList(printing, prepared), awaitEvents(2));
+    }
+
+    @Test
+    public void cancelledPrintingJobLetsGoOfPrinter() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        FakePluginCall call = new FakePluginCall("printText", text(null));
+        queue.execute("text", call);
+        String printing = queued.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        awaitTransaction();
+        String next = queue.submit("text", text(null));
+
+        assertTrue(queue.cancel(printing));
+        assertEquals(Arrays.asList(printing + " failed"), awaitEvents(1));
+        try {
+            call.await(TIMEOUT_MS);
+            fail("A cancelled job was resolved");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Cancelled text job " + printing));
+        }
+
+        device.open();
+        assertEquals(Arrays.asList(next), awaitEvents(1));
+    }
+
+    @Test
+    public void cancelAllCancelsNewestFirst() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        String printing = queue.submit("text", text(null));
+        awaitTransaction();
+        String prepared = queue.submit("text", text(null));
+        awaitQueued(PrintQueue.Priority.NORMAL, 0);
+        String first = queue.submit("text", text(null));
+        String second = queue.submit("text", text("bulk"));
+
+        assertEquals(4, queue.cancelAll());
+        assertEquals(Arrays.asList(second + " failed", first + " failed", prepared + " failed", printing + " failed"),
+            awaitEvents(4));
+        assertEquals(0, queue.cancelAll());
+    }
+
+    @Test
+    public void repeatedIdempotencyKeyIsPrintedOnce() throws Exception {
+        queue = newQueue(PrintQueue.DEFAULT_CAPACITY);
+        JSObject options = text(null);
+        options.put("idempotencyKey", "order-1");
+        FakePluginCall original = new FakePluginCall("printText", options);
+        queue.execute("text", original);
+        String printing = queued.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        awaitTransaction();
+
+        // A retry while the job prints is answered once it completes
+        FakePluginCall retry = new FakePluginCall("printText", options);
+        queue.execute("text", retry);
+        device.open();
+        assertNotNull(original.await(TIMEOUT_MS));
+        JSObject response = retry.await(TIMEOUT_MS);
+        assertEquals(printing, response.getString("jobId"));
+        assertTrue(response.getBool("duplicate"));
+
+        // And a retry after it completed is answered at once
+        FakePluginCall late = new FakePluginCall("printText", options);
+        queue.execute("text", late);
+        assertEquals(printing, late.await(TIMEOUT_MS).getString("jobId"));
+        assertEquals(Arrays.asList(printing), awaitEvents(1));
+        assertEquals(1, device.transactions);
+    }
+
+    private PrintQueue newQueue(int capacity) {
+        return new PrintQueue("test", printer, capacity, listener, resources.metrics, null,
+            resources.idempotency, resources.watchdog);
+    }
+
+    private static JSObject text(String priority) {
+        JSObject options = new JSObject();
+        options.put("text", "Test label");
+        if (priority != null) {
+            options.put("priority", priority);
+        }
+        return options;
+    }
+
+    private void awaitTransaction() throws InterruptedException {
+        assertTrue("No transaction started", device.entered.tryAcquire(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Waits until the lane holds the given number of jobs, such as once the preparing stage
+     * has taken a job from it.
+     */
+    private void awaitQueued(PrintQueue.Priority priority, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (queue.getQueuedCount(priority) != count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail(queue.getQueuedCount(priority) + " " + priority.key + " jobs queued, expected " + count);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private List<String> awaitEvents(int count) throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        while (received.size() < count) {
+            String event = events.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (event == null) {
+                fail("Received " + received + ", expected " + count + " events");
+            }
+            received.add(event);
+        }
+        return received;
+    }
+}
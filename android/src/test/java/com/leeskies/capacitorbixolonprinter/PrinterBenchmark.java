@@ -0,0 +1,292 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.content.ContextWrapper;
+import android.util.Base64;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Benchmarks of the plugin layer on a plain JVM, with the SDK replaced by
+ * {@link FakePrinterDevice}. Skipped unless enabled, run them with
+ *
+ * <pre>./gradlew testDebugUnitTest -Pbenchmark --tests '*PrinterBenchmark'</pre>
+ *
+ * Results are printed and appended to build/reports/benchmarks/results.csv. Payloads are
+ * generated from a fixed seed so runs stay comparable between releases.
+ */
+public class PrinterBenchmark {
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+    private static final int OPERATIONS = 2000;
+    // Label time of a fast printer, so a load test runs in seconds
+    private static final long VIRTUAL_LABEL_MS = 5;
+
+    private File cacheDir;
+    private ContextWrapper context;
+    private FakePrinterDevice device;
+    private PrinterResources resources;
+    private Printer printer;
+    private BenchmarkRunner runner;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("Run with -Pbenchmark to enable benchmarks", Boolean.getBoolean("benchmark"));
+        cacheDir = Files.createTempDirectory("bixolon-benchmark").toFile();
+        context = new ContextWrapper(null) {
+            @Override
+            public File getCacheDir() {
+                return cacheDir;
+            }
+        };
+        EventListener listener = (eventName, data) -> { };
+        Metrics metrics = new Metrics();
+        resources = new PrinterResources(
+            new DocumentStore(context),
+            new RenderCache(context, RenderCache.DEFAULT_MAX_BYTES, false),
+            new NetworkDiscovery(listener, NetworkDiscovery.DEFAULT_CACHE_TTL_MS, metrics),
+            metrics,
+            null, // The fake device sends no SDK callbacks
+            null,
+            new IdempotencyCache(IdempotencyCache.DEFAULT_CAPACITY, IdempotencyCache.DEFAULT_WINDOW_MS),
+            FlowController.Settings.DEFAULT,
+            new Watchdog(Watchdog.DEFAULT_OPERATION_TIMEOUT_MS, metrics)
+        );
+        device = new FakePrinterDevice();
+        printer = new Printer(context, "benchmark", listener, resources, device);
+        runner = new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS, OPERATIONS,
+            System.getProperty("benchmark.output"));
+    }
+
+    @After
+    public void tearDown() {
+        if (printer != null) {
+            printer.shutdown();
+            resources.clear();
+            resources.watchdog.shutdown();
+            for (File file : cacheDir.listFiles()) {
+                file.delete();
+            }
+            cacheDir.delete();
+        }
+    }
+
+    @Test
+    public void textJob() throws Exception {
+        JSObject options = new JSObject();
+        options.put("text", "Lot 4711 - best before 2026-12-31");
+        options.put("fontSize", "large");
+        runner.run("text", () -> printer.runJob("text", options));
+    }
+
+    @Test
+    public void barcodeJob() throws Exception {
+        JSObject options = new JSObject();
+        options.put("data", "0123456789012");
+        options.put("barcodeType", "EAN13");
+        options.put("hri", true);
+        runner.run("barcode", () -> printer.runJob("barcode", options));
+    }
+
+    @Test
+    public void qrCodeListJob() throws Exception {
+        JSArray dataList = new JSArray();
+        for (int i = 0; i < 100; i++) {
+            dataList.put("https://example.com/asset/" + (100000 + i));
+        }
+        JSObject options = new JSObject();
+        options.put("dataList", dataList);
+        options.put("barcodeType", "QR");
+        runner.run("QR code list (100 labels)", 0, OPERATIONS / 10, () -> printer.runJob("barcode", options));
+    }
+
+    @Test
+    public void labelJob() throws Exception {
+        JSObject options = new JSObject();
+        options.put("elements", labelElements());
+        runner.run("label", () -> printer.runJob("label", options));
+    }
+
+    @Test
+    public void templateJob() throws Exception {
+        resources.templates.put("benchmark", LabelTemplate.compile(labelElements(), true));
+        JSObject variables = new JSObject();
+        variables.put("serial", 42);
+        JSObject options = new JSObject();
+        options.put("templateId", "benchmark");
+        options.put("variables", variables);
+        runner.run("template", () -> printer.runJob("template", options));
+    }
+
+    @Test
+    public void pdfJob() throws Exception {
+        byte[] pdf = randomBytes(64 * 1024);
+        JSObject options = new JSObject();
+        options.put("base64FileString", Base64.encodeToString(pdf, Base64.NO_WRAP));
+        runner.run("pdf (64 KB base64)", pdf.length, OPERATIONS / 10, () -> printer.runJob("pdf", options));
+    }
+
+    @Test
+    public void rawJob() throws Exception {
+        File commands = new File(cacheDir, "label.prn");
+        Files.write(commands.toPath(), randomBytes(64 * 1024));
+        JSObject options = new JSObject();
+        options.put("path", commands.getPath());
+        runner.run("raw (64 KB file)", commands.length(), OPERATIONS / 10, () -> printer.runJob("raw", options));
+    }
+
+    @Test
+    public void dither() throws Exception {
+        // A 4 inch wide photo-sized label with a horizontal gradient
+        int width = 832;
+        int height = 1200;
+        int[] image = new int[width * height];
+        for (int i = 0; i < image.length; i++) {
+            int gray = (i % width) * 255 / width;
+            image[i] = 0xFF000000 | gray << 16 | gray << 8 | gray;
+        }
+        int[] pixels = new int[image.length];
+        for (ImageDither.Method method : ImageDither.Method.values()) {
+            runner.run("dither " + method.key, image.length, OPERATIONS / 100, () -> {
+                System.arraycopy(image, 0, pixels, 0, image.length);
+                resources.dither.dither(pixels, width, height, method, ImageDither.DEFAULT_THRESHOLD);
+            });
+        }
+    }
+
+    @Test
+    public void base64ToTempFile() throws Exception {
+        byte[] document = randomBytes(1024 * 1024);
+        String base64 = Base64.encodeToString(document, Base64.NO_WRAP);
+        runner.run("base64 to temp file (1 MB)", document.length, OPERATIONS / 100, () -> {
+            File file = resources.documents.writeBase64(base64, "benchmark", ".pdf");
+            file.delete();
+        });
+    }
+
+    @Test
+    public void chunkedUpload() throws Exception {
+        byte[] document = randomBytes(1024 * 1024);
+        String base64 = Base64.encodeToString(document, Base64.NO_WRAP);
+        int chunkSize = 64 * 1024;
+        runner.run("chunked upload (1 MB)", document.length, OPERATIONS / 100, () -> {
+            String documentId = resources.documents.begin();
+            for (int offset = 0; offset < base64.length(); offset += chunkSize) {
+                resources.documents.append(documentId, base64.substring(offset, Math.min(base64.length(), offset + chunkSize)));
+            }
+            resources.documents.commit(documentId);
+            resources.documents.discard(documentId);
+        });
+    }
+
+    @Test
+    public void queuedTextJob() throws Exception {
+        runQueuedText("queued text", null);
+    }
+
+    @Test
+    public void journaledTextJob() throws Exception {
+        // Forcing every record is the worst case, the default batches forces on a timer
+        JobJournal journal = JobJournal.open(new File(cacheDir, "journal"), JobJournal.DEFAULT_SIZE, 0);
+        try {
+            runQueuedText("journaled text (sync every record)", journal);
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    public void virtualPrinter() throws Exception {
+        try (VirtualPrinter virtual = new VirtualPrinter(0, VirtualPrinter.DEFAULT_MODEL, VIRTUAL_LABEL_MS,
+            VirtualPrinter.DEFAULT_BUFFER_BYTES)) {
+            Printer networked = new Printer(context, "virtual", (eventName, data) -> { }, resources,
+                new SocketPrinterDevice());
+            PrintQueue queue = new PrintQueue("virtual", networked, PrintQueue.DEFAULT_CAPACITY, (eventName, data) -> { },
+                resources.metrics, null, resources.idempotency, resources.watchdog);
+            try {
+                JSObject target = new JSObject();
+                target.put("address", virtual.getAddress().getHostAddress());
+                target.put("port", virtual.getPort());
+                runner.run("virtual printer connect", 0, OPERATIONS / 100, () -> {
+                    FakePluginCall call = new FakePluginCall("connect", target);
+                    networked.connect(call);
+                    call.await(5000);
+                });
+
+                // Paced by flow control to the printer's label rate, which the status reads measure
+                JSObject options = new JSObject();
+                options.put("text", "Virtual label");
+                runner.run("virtual printer text", 0, OPERATIONS / 20, () -> {
+                    FakePluginCall call = new FakePluginCall("printText", options);
+                    queue.execute("text", call);
+                    call.await(5000);
+                });
+
+                JSObject refresh = new JSObject();
+                refresh.put("refresh", true);
+                runner.run("virtual printer status", () -> {
+                    FakePluginCall call = new FakePluginCall("getStatus", refresh);
+                    networked.getStatus(call);
+                    call.await(5000);
+                });
+            } finally {
+                queue.shutdown();
+                networked.shutdown();
+            }
+        }
+    }
+
+    private void runQueuedText(String name, JobJournal journal) throws Exception {
+        PrintQueue queue = new PrintQueue("benchmark", printer, PrintQueue.DEFAULT_CAPACITY, (eventName, data) -> { },
+            resources.metrics, journal, resources.idempotency, resources.watchdog);
+        JSObject options = new JSObject();
+        options.put("text", "Queued label");
+        try {
+            // Submission to resolution, including the hand-off to the queue's worker thread
+            runner.run(name, () -> {
+                FakePluginCall call = new FakePluginCall("printText", options);
+                queue.execute("text", call);
+                call.await(5000);
+            });
+        } finally {
+            queue.shutdown();
+        }
+    }
+
+    private static JSArray labelElements() throws Exception {
+        JSArray elements = new JSArray();
+        elements.put(new JSObject()
+            .put("type", "text")
+            .put("text", "Serial {{serial}}")
+            .put("horizontalPosition", 20)
+            .put("verticalPosition", 20));
+        elements.put(new JSObject()
+            .put("type", "barcode")
+            .put("data", "SN{{serial}}")
+            .put("horizontalPosition", 20)
+            .put("verticalPosition", 80));
+        elements.put(new JSObject()
+            .put("type", "box")
+            .put("horizontalPosition", 10)
+            .put("verticalPosition", 10)
+            .put("horizontalEndPosition", 400)
+            .put("verticalEndPosition", 300));
+        return elements;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
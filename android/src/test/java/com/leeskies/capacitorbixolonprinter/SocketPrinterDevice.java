@@ -0,0 +1,250 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Stand-in for the SDK that speaks the subset of SLCS {@link VirtualPrinter} understands over
+ * a raw TCP socket, so load tests cover the network round trips of connect, print and status.
+ * Like the SDK, drawing inside a transaction is buffered and sent when it ends, and status
+ * and model queries wait for the printer's answer.
+ */
+class SocketPrinterDevice implements PrinterDevice {
+    private static final int DEFAULT_PORT = 9100;
+    private static final int DEFAULT_TIMEOUT_MS = 5000;
+    private static final byte[] STATUS_REQUEST = { 0x1B, '!', '?' };
+    private static final byte[] MODEL_REQUEST = { '~', '!', 'T' };
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+    private boolean inTransaction;
+
+    @Override
+    public String connect(String address) {
+        return connect(address, DEFAULT_PORT, DEFAULT_TIMEOUT_MS);
+    }
+
+    @Override
+    public synchronized String connect(String address, int port, int timeout) {
+        disconnect();
+        try {
+            Socket connection = new Socket();
+            connection.connect(new InetSocketAddress(address, port), timeout);
+            connection.setSoTimeout(timeout);
+            connection.setTcpNoDelay(true);
+            socket = connection;
+            in = connection.getInputStream();
+            out = connection.getOutputStream();
+            out.write(MODEL_REQUEST);
+            out.flush();
+            return readLine();
+        } catch (IOException e) {
+            disconnect();
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized boolean isConnected() {
+        return socket != null;
+    }
+
+    @Override
+    public synchronized void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        socket = null;
+        in = null;
+        out = null;
+        inTransaction = false;
+        pending.reset();
+    }
+
+    @Override
+    public String findNetworkPrinters(int timeout) {
+        return null;
+    }
+
+    @Override
+    public int drawText(String data, int horizontalPosition, int verticalPosition, int fontSelection,
+                        int horizontalMultiplier, int verticalMultiplier, int rightSpace, int rotation, boolean reverse,
+                        boolean bold, int alignment) {
+        return command("T%d,%d,%d,%d,%d,%d,%d,%s,%s,'%s'", horizontalPosition, verticalPosition, fontSelection,
+            horizontalMultiplier, verticalMultiplier, rightSpace, rotation, reverse ? "R" : "N", bold ? "B" : "N", data);
+    }
+
+    @Override
+    public int draw1dBarcode(String data, int horizontalPosition, int verticalPosition, int barcodeSelection,
+                             int narrowBarWidth, int wideBarWidth, int height, int rotation, int hri, int quietZoneWidth) {
+        return command("B1%d,%d,%d,%d,%d,%d,%d,%d,%d,'%s'", horizontalPosition, verticalPosition, barcodeSelection,
+            narrowBarWidth, wideBarWidth, height, rotation, hri, quietZoneWidth, data);
+    }
+
+    @Override
+    public int drawQrCode(String data, int horizontalPosition, int verticalPosition, int model, int eccLevel, int size,
+                          int rotation) {
+        return command("B2%d,%d,Q,%d,%d,%d,%d,'%s'", horizontalPosition, verticalPosition, model, eccLevel, size,
+            rotation, data);
+    }
+
+    @Override
+    public int drawDataMatrix(String data, int horizontalPosition, int verticalPosition, int size, int rotation) {
+        return command("B2%d,%d,D,%d,%d,'%s'", horizontalPosition, verticalPosition, size, rotation, data);
+    }
+
+    @Override
+    public int drawPdf417(String data, int horizontalPosition, int verticalPosition, int maximumRowCount,
+                          int maximumColumnCount, int errorCorrectionLevel, int dataCompressionMethod, int hri,
+                          int barcodeOriginPoint, int moduleWidth, int barHeight, int rotation) {
+        return command("B2%d,%d,P,%d,%d,%d,%d,%d,%d,%d,%d,%d,'%s'", horizontalPosition, verticalPosition,
+            maximumRowCount, maximumColumnCount, errorCorrectionLevel, dataCompressionMethod, hri, barcodeOriginPoint,
+            moduleWidth, barHeight, rotation, data);
+    }
+
+    @Override
+    public int drawBlock(int horizontalStartPosition, int verticalStartPosition, int horizontalEndPosition,
+                         int verticalEndPosition, int option, int thickness) {
+        return command("LO%d,%d,%d,%d,%d,%d", horizontalStartPosition, verticalStartPosition, horizontalEndPosition,
+            verticalEndPosition, option, thickness);
+    }
+
+    @Override
+    public int drawBitmap(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                          boolean dithering) {
+        return image(bitmap, horizontalPosition, verticalPosition);
+    }
+
+    @Override
+    public int drawCompressionImage(Bitmap bitmap, int horizontalPosition, int verticalPosition, int width, int level,
+                                    boolean dithering) {
+        return image(bitmap, horizontalPosition, verticalPosition);
+    }
+
+    @Override
+    public int drawPDFFile(Uri uri, int horizontalPosition, int verticalPosition, int page, int width, int level,
+                           boolean dithering, boolean compress) {
+        // The SDK renders the page itself; send a full-width page of image data in its place
+        int height = width * 11 / 8;
+        write(String.format(Locale.US, "GW%d,%d,%d,%d,", horizontalPosition, verticalPosition, (width + 7) / 8, height)
+            .getBytes(StandardCharsets.US_ASCII));
+        write(new byte[(width + 7) / 8 * height]);
+        return command("");
+    }
+
+    @Override
+    public synchronized int clearBuffer() {
+        pending.reset();
+        return 0;
+    }
+
+    @Override
+    public synchronized byte[] getStatus(boolean checkImageBuffer) {
+        if (socket == null) {
+            return null;
+        }
+        try {
+            out.write(STATUS_REQUEST);
+            out.flush();
+            byte[] status = new byte[2];
+            for (int read = 0; read < status.length; ) {
+                int count = in.read(status, read, status.length - read);
+                if (count < 0) {
+                    throw new IOException("Connection closed");
+                }
+                read += count;
+            }
+            return status;
+        } catch (IOException e) {
+            disconnect();
+            return null;
+        }
+    }
+
+    @Override
+    public int print(int sets, int copies) {
+        return command("P%d,%d", sets, copies);
+    }
+
+    @Override
+    public synchronized void beginTransactionPrint() {
+        inTransaction = true;
+    }
+
+    @Override
+    public synchronized int endTransactionPrint() {
+        inTransaction = false;
+        return flush() ? 3 : -1;
+    }
+
+    @Override
+    public void executeDirectIoWithoutCRLF(byte[] data) {
+        write(data);
+    }
+
+    private int command(String format, Object... args) {
+        write((String.format(Locale.US, format, args) + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        return 0;
+    }
+
+    private synchronized int image(Bitmap bitmap, int horizontalPosition, int verticalPosition) {
+        int bytesPerRow = (bitmap.getWidth() + 7) / 8;
+        write(String.format(Locale.US, "GW%d,%d,%d,%d,", horizontalPosition, verticalPosition, bytesPerRow,
+            bitmap.getHeight()).getBytes(StandardCharsets.US_ASCII));
+        write(new byte[bytesPerRow * bitmap.getHeight()]);
+        return command("");
+    }
+
+    /**
+     * Buffers the bytes inside a transaction and sends them at once outside of one.
+     */
+    private synchronized void write(byte[] data) {
+        pending.write(data, 0, data.length);
+        if (!inTransaction) {
+            flush();
+        }
+    }
+
+    private synchronized boolean flush() {
+        if (socket == null) {
+            pending.reset();
+            return false;
+        }
+        try {
+            pending.writeTo(out);
+            out.flush();
+            return true;
+        } catch (IOException e) {
+            disconnect();
+            return false;
+        } finally {
+            pending.reset();
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.append((char) b);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,410 @@
+package com.leeskies.capacitorbixolonprinter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Loopback stand-in for a Bixolon label printer on a raw TCP port, for load testing the
+ * connect, print and status paths without hardware. {@link PrinterBenchmark} drives it through
+ * {@link SocketPrinterDevice}. Self-contained so it also runs straight from source on any
+ * JDK 11+, for an app on an emulator, which reaches the host's loopback as 10.0.2.2:
+ *
+ * <pre>java android/src/test/java/com/leeskies/capacitorbixolonprinter/VirtualPrinter.java --port 9100 --label-ms 250</pre>
+ *
+ * A device on the network needs {@code --bind 0.0.0.0} to reach it.
+ *
+ * It answers the SLCS status request (ESC ! ?) with the two status bytes the SDK decodes and
+ * the model name request (~!T) with a configurable model, records every job ended by a
+ * P&lt;sets&gt;[,&lt;copies&gt;] print command, and prints each label in a configurable time.
+ * Received but unprinted data is capped at the buffer size, beyond which the emulator stops
+ * reading so the sender sees TCP backpressure like on a real printer. Paper out and cover
+ * open pause printing until cleared. While running, the state can be changed from stdin:
+ * paper-out on|off, cover-open on|off, busy on|off, stats, reset and quit.
+ */
+public class VirtualPrinter implements AutoCloseable {
+    public static final int DEFAULT_PORT = 9100;
+    public static final String DEFAULT_MODEL = "SLP-TX400";
+    public static final long DEFAULT_LABEL_MS = 200;
+    public static final int DEFAULT_BUFFER_BYTES = 256 * 1024;
+
+    // Bits of the status bytes, matching BixolonLabelPrinter.STATUS_*
+    static final int STATUS_1ST_PAPER_EMPTY = 0x80;
+    static final int STATUS_1ST_COVER_OPEN = 0x40;
+    static final int STATUS_2ND_BUILDING = 0x80;
+    static final int STATUS_2ND_PRINTING = 0x40;
+
+    private static final byte[] STATUS_REQUEST = { 0x1B, '!', '?' };
+    private static final byte[] MODEL_REQUEST = { '~', '!', 'T' };
+    private static final Pattern PRINT_COMMAND = Pattern.compile("^P(\\d+)(?:,(\\d+))?\r?$");
+    private static final int MAX_LINE = 32;
+
+    /** A job received from a client. */
+    public static final class Job {
+        public final int index;
+        public final long bytes;
+        public final int sets;
+        public final int copies;
+        public final long receivedAt;
+        volatile long printedAt;
+
+        Job(int index, long bytes, int sets, int copies) {
+            this.index = index;
+            this.bytes = bytes;
+            this.sets = sets;
+            this.copies = copies;
+            this.receivedAt = System.currentTimeMillis();
+        }
+
+        public int getLabels() {
+            return Math.max(1, sets) * Math.max(1, copies);
+        }
+
+        public long getPrintedAt() {
+            return printedAt;
+        }
+    }
+
+    private final ServerSocket server;
+    private final String model;
+    private final long labelMs;
+    private final int bufferBytes;
+    private final List<Job> jobs = new ArrayList<>();
+    private final BlockingQueue<Job> printQueue = new LinkedBlockingQueue<>();
+    private final Object bufferLock = new Object();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong statusRequests = new AtomicLong();
+    private final AtomicLong connections = new AtomicLong();
+    private final AtomicLong labelsPrinted = new AtomicLong();
+    private final Thread acceptor;
+    private final Thread engine;
+    private long bufferedBytes;
+    private volatile boolean paperOut;
+    private volatile boolean coverOpen;
+    private volatile boolean busy;
+    private volatile boolean printing;
+    private volatile boolean running = true;
+
+    public VirtualPrinter(int port, String model, long labelMs, int bufferBytes) throws IOException {
+        this(InetAddress.getLoopbackAddress(), port, model, labelMs, bufferBytes);
+    }
+
+    public VirtualPrinter(InetAddress bindAddress, int port, String model, long labelMs, int bufferBytes) throws IOException {
+        this.server = new ServerSocket(port, 50, bindAddress);
+        this.model = model;
+        this.labelMs = labelMs;
+        this.bufferBytes = bufferBytes;
+        this.acceptor = new Thread(this::accept, "VirtualPrinter-accept");
+        this.engine = new Thread(this::printLoop, "VirtualPrinter-engine");
+        acceptor.setDaemon(true);
+        engine.setDaemon(true);
+        acceptor.start();
+        engine.start();
+    }
+
+    public InetAddress getAddress() {
+        return server.getInetAddress();
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public void setPaperOut(boolean paperOut) {
+        this.paperOut = paperOut;
+        wake();
+    }
+
+    public void setCoverOpen(boolean coverOpen) {
+        this.coverOpen = coverOpen;
+        wake();
+    }
+
+    /** Reports the printer as busy building an image regardless of the print queue. */
+    public void setBusy(boolean busy) {
+        this.busy = busy;
+    }
+
+    public synchronized List<Job> getJobs() {
+        return new ArrayList<>(jobs);
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    public long getLabelsPrinted() {
+        return labelsPrinted.get();
+    }
+
+    public synchronized void reset() {
+        jobs.clear();
+        bytesReceived.set(0);
+        statusRequests.set(0);
+        labelsPrinted.set(0);
+    }
+
+    public String getStats() {
+        int jobCount;
+        synchronized (this) {
+            jobCount = jobs.size();
+        }
+        return String.format(Locale.US,
+            "connections=%d jobs=%d labels=%d pending=%d bytes=%d buffered=%d statusRequests=%d paperOut=%b coverOpen=%b busy=%b",
+            connections.get(), jobCount, labelsPrinted.get(), printQueue.size(), bytesReceived.get(), buffered(),
+            statusRequests.get(), paperOut, coverOpen, busy);
+    }
+
+    byte[] statusBytes() {
+        int first = (paperOut ? STATUS_1ST_PAPER_EMPTY : 0) | (coverOpen ? STATUS_1ST_COVER_OPEN : 0);
+        int second = (busy ? STATUS_2ND_BUILDING : 0) | (printing || !printQueue.isEmpty() ? STATUS_2ND_PRINTING : 0);
+        return new byte[] { (byte) first, (byte) second };
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        engine.interrupt();
+        wake();
+    }
+
+    private void accept() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                connections.incrementAndGet();
+                Thread session = new Thread(() -> serve(socket), "VirtualPrinter-session-" + connections.get());
+                session.setDaemon(true);
+                session.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads one client's byte stream, answering queries as they arrive and cutting the stream
+     * into jobs at print commands.
+     */
+    private void serve(Socket socket) {
+        byte[] buffer = new byte[8192];
+        byte[] line = new byte[MAX_LINE];
+        int lineLength = 0;
+        int window = 0; // Last three bytes, for spotting query commands anywhere in the stream
+        long jobBytes = 0;
+        try (Socket client = socket; InputStream in = client.getInputStream(); OutputStream out = client.getOutputStream()) {
+            int read;
+            while (running && (read = in.read(buffer, 0, waitForBufferSpace(buffer.length))) != -1) {
+                bytesReceived.addAndGet(read);
+                jobBytes += read;
+                synchronized (bufferLock) {
+                    bufferedBytes += read;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer[i];
+                    window = (window << 8 | (b & 0xFF)) & 0xFFFFFF;
+                    if (window == pack(STATUS_REQUEST)) {
+                        statusRequests.incrementAndGet();
+                        out.write(statusBytes());
+                        out.flush();
+                    } else if (window == pack(MODEL_REQUEST)) {
+                        out.write((model + "\r\n").getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    }
+                    if (b == '\n') {
+                        Matcher matcher = PRINT_COMMAND.matcher(new String(line, 0, lineLength, StandardCharsets.US_ASCII));
+                        if (lineLength < MAX_LINE && matcher.matches()) {
+                            int sets = Integer.parseInt(matcher.group(1));
+                            int copies = matcher.group(2) != null ? Integer.parseInt(matcher.group(2)) : 1;
+                            submit(jobBytes - (read - i - 1), sets, copies);
+                            jobBytes = read - i - 1;
+                        }
+                        lineLength = 0;
+                    } else if (lineLength < MAX_LINE) {
+                        line[lineLength++] = b;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            System.err.println("Session failed: " + e.getMessage());
+        }
+        if (jobBytes > 0) {
+            // Data without a print command is discarded like a cleared buffer
+            release(jobBytes);
+        }
+    }
+
+    private synchronized void submit(long bytes, int sets, int copies) {
+        Job job = new Job(jobs.size() + 1, bytes, sets, copies);
+        jobs.add(job);
+        printQueue.add(job);
+    }
+
+    private void printLoop() {
+        while (running) {
+            try {
+                Job job = printQueue.take();
+                printing = true;
+                for (int label = 0; label < job.getLabels(); label++) {
+                    // Errors pause the print engine until they are cleared
+                    synchronized (bufferLock) {
+                        while (running && (paperOut || coverOpen)) {
+                            bufferLock.wait();
+                        }
+                    }
+                    Thread.sleep(labelMs);
+                    labelsPrinted.incrementAndGet();
+                }
+                job.printedAt = System.currentTimeMillis();
+                release(job.bytes);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                printing = false;
+            }
+        }
+    }
+
+    private int waitForBufferSpace(int wanted) throws IOException {
+        synchronized (bufferLock) {
+            // Only wait while queued jobs will drain the buffer, a single oversized job is let through
+            while (running && bufferedBytes >= bufferBytes && (printing || !printQueue.isEmpty())) {
+                try {
+                    bufferLock.wait();
+                } catch (InterruptedException e) {
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            return (int) Math.min(wanted, Math.max(1, bufferBytes - bufferedBytes));
+        }
+    }
+
+    private void release(long bytes) {
+        synchronized (bufferLock) {
+            bufferedBytes = Math.max(0, bufferedBytes - bytes);
+            bufferLock.notifyAll();
+        }
+    }
+
+    private long buffered() {
+        synchronized (bufferLock) {
+            return bufferedBytes;
+        }
+    }
+
+    private void wake() {
+        synchronized (bufferLock) {
+            bufferLock.notifyAll();
+        }
+    }
+
+    private static int pack(byte[] command) {
+        return (command[0] & 0xFF) << 16 | (command[1] & 0xFF) << 8 | (command[2] & 0xFF);
+    }
+
+    public static void main(String[] args) throws Exception {
+        String usage = "Usage: VirtualPrinter [--bind 127.0.0.1] [--port 9100] [--model " + DEFAULT_MODEL + "]"
+            + " [--label-ms 200] [--buffer 262144] [--paper-out] [--cover-open] [--busy]";
+        InetAddress bindAddress = InetAddress.getLoopbackAddress();
+        int port = DEFAULT_PORT;
+        String model = DEFAULT_MODEL;
+        long labelMs = DEFAULT_LABEL_MS;
+        int bufferBytes = DEFAULT_BUFFER_BYTES;
+        boolean paperOut = false;
+        boolean coverOpen = false;
+        boolean busy = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--bind":
+                    bindAddress = InetAddress.getByName(args[++i]);
+                    break;
+                case "--port":
+                    port = Integer.parseInt(args[++i]);
+                    break;
+                case "--model":
+                    model = args[++i];
+                    break;
+                case "--label-ms":
+                    labelMs = Long.parseLong(args[++i]);
+                    break;
+                case "--buffer":
+                    bufferBytes = Integer.parseInt(args[++i]);
+                    break;
+                case "--paper-out":
+                    paperOut = true;
+                    break;
+                case "--cover-open":
+                    coverOpen = true;
+                    break;
+                case "--busy":
+                    busy = true;
+                    break;
+                case "--help":
+                    System.out.println(usage);
+                    return;
+                default:
+                    System.err.println(usage);
+                    System.exit(2);
+            }
+        }
+
+        try (VirtualPrinter printer = new VirtualPrinter(bindAddress, port, model, labelMs, bufferBytes)) {
+            printer.setPaperOut(paperOut);
+            printer.setCoverOpen(coverOpen);
+            printer.setBusy(busy);
+            System.out.println("Virtual " + model + " listening on " + printer.getAddress().getHostAddress() + ":"
+                + printer.getPort());
+            BufferedReader console = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            String command;
+            while ((command = console.readLine()) != null) {
+                String[] parts = command.trim().split("\\s+");
+                boolean on = parts.length < 2 || "on".equals(parts[1]);
+                switch (parts[0]) {
+                    case "paper-out":
+                        printer.setPaperOut(on);
+                        break;
+                    case "cover-open":
+                        printer.setCoverOpen(on);
+                        break;
+                    case "busy":
+                        printer.setBusy(on);
+                        break;
+                    case "reset":
+                        printer.reset();
+                        break;
+                    case "quit":
+                        return;
+                    case "stats":
+                    case "":
+                        break;
+                    default:
+                        System.out.println("Commands: paper-out on|off, cover-open on|off, busy on|off, stats, reset, quit");
+                        continue;
+                }
+                System.out.println(printer.getStats());
+            }
+            // Keep serving when stdin is closed, e.g. when started in the background
+            Thread.currentThread().join();
+        }
+    }
+}
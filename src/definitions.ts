@@ -1,46 +1,140 @@
+import type { PluginListenerHandle } from '@capacitor/core';
+
 /** Defines the interface for Printer plugin */
 export interface PrinterPlugin {
   /** 
-   * Initialize the printer connection
+   * Initialize the printer connection. Runs off the UI thread and resolves once the printer SDK is loaded
+   * and working. Calling it again with the same options is a no-op; different options re-create the printers.
+   * @param {InitializeOptions} options - Options for initialization (optional)
    * @returns {Promise<{success: boolean}>} A promise that resolves when initialization is complete
    */
-  initialize(): Promise<{ success: boolean }>;
+  initialize(options?: InitializeOptions): Promise<{ success: boolean }>;
   
   /**
-   * Print text to the connected printer
+   * Print text to the connected printer. With a `width` the text is wrapped, and with a `height` it continues
+   * onto as many labels as it needs, all sent in one transaction.
    * @param {PrintOptions} options - Options for printing text
    * @returns {Promise<{success: boolean}>} A promise that resolves when printing is complete
    */
   printText(options: PrintOptions): Promise<{ success: boolean }>;
   
   /**
-   * Print a barcode
+   * Print a barcode, or one label per entry of `dataList`
    * @param {BarcodeOptions} options - Options for printing barcode
    * @returns {Promise<{success: boolean}>} A promise that resolves when barcode printing is complete
    */
   printBarcode(options: BarcodeOptions): Promise<{ success: boolean }>;
   
   /**
-   * Check printer status
+   * Print a composite label made of several elements in a single transaction
+   * @param {LabelOptions} options - Options for printing the label
+   * @returns {Promise<{success: boolean}>} A promise that resolves when label printing is complete
+   */
+  printLabel(options: LabelOptions): Promise<{ success: boolean }>;
+  
+  /**
+   * Validate and compile a label layout once so it can be printed repeatedly with printTemplate.
+   * Text and barcode data may contain {{name}} placeholders that are filled in per label.
+   * @param {RegisterTemplateOptions} options - The template ID and its elements
+   * @returns {Promise<{success: boolean, elements: number}>} A promise that resolves once the template is compiled
+   */
+  registerTemplate(options: RegisterTemplateOptions): Promise<{ success: boolean; elements: number }>;
+
+  /**
+   * Remove a registered template
+   * @param {TemplateSelector} options - The template to remove
+   * @returns {Promise<{success: boolean}>} A promise that resolves with whether the template existed
+   */
+  unregisterTemplate(options: TemplateSelector): Promise<{ success: boolean }>;
+
+  /**
+   * Print a registered template, substituting its variables
+   * @param {PrintTemplateOptions} options - The template and its variable values
+   * @returns {Promise<{success: boolean}>} A promise that resolves when printing is complete
+   */
+  printTemplate(options: PrintTemplateOptions): Promise<{ success: boolean }>;
+
+  /**
+   * Print a run of serial-numbered labels. Labels are sent in batches that share one transaction,
+   * and progress is reported through the `serialRunProgress` event.
+   * @param {SerialRunOptions} options - The label layout and the serial number sequence
+   * @returns {Promise<{success: boolean}>} A promise that resolves when the whole run is printed
+   */
+  printSerialRun(options: SerialRunOptions): Promise<{ success: boolean }>;
+
+  /**
+   * Queue a print job and return immediately with its ID.
+   * Progress and completion are reported through the `jobProgress` and `jobCompleted` events.
+   * @param {SubmitJobOptions} options - The job to queue
+   * @returns {Promise<{success: boolean, jobId: string}>} A promise that resolves once the job is queued
+   */
+  submitJob(options: SubmitJobOptions): Promise<{ success: boolean; jobId: string }>;
+
+  /**
+   * Get the number of pending jobs and the queue capacity
+   * @param {PrinterSelector} options - Printer whose queue to query (optional, defaults to the default printer)
+   * @returns {Promise<QueueStatus>} A promise that resolves with the queue status
+   */
+  getQueueStatus(options?: PrinterSelector): Promise<QueueStatus>;
+
+  /**
+   * Cancel a job that has not completed. A waiting job is dropped; a job that is printing is aborted, its buffer is
+   * cleared and its call is rejected at once. Labels already sent to the printer may still come out.
+   * @param {CancelJobOptions} options - The job to cancel, as returned by submitJob or reported in `jobProgress`
+   * @returns {Promise<{cancelled: boolean}>} A promise that resolves with whether a pending job was cancelled
+   */
+  cancelJob(options: CancelJobOptions): Promise<{ cancelled: boolean }>;
+
+  /**
+   * Cancel every pending job of a printer, or of every printer when no printerId is given
+   * @param {PrinterSelector} options - Printer whose jobs to cancel (optional)
+   * @returns {Promise<{cancelled: number}>} A promise that resolves with the number of jobs cancelled
+   */
+  cancelAll(options?: PrinterSelector): Promise<{ cancelled: number }>;
+
+  /**
+   * Check printer status. While the status monitor is running the last polled status is returned
+   * without a round trip to the printer, unless `refresh` is set.
+   * @param {StatusOptions} options - Printer to query (optional, defaults to the default printer)
    * @returns {Promise<PrinterStatus>} A promise that resolves to the printer status
    */
-  getStatus(): Promise<PrinterStatus>;
+  getStatus(options?: StatusOptions): Promise<PrinterStatus>;
+
+  /**
+   * Start polling the printer status in the background. Changes are reported through the
+   * `statusChanged` event. Polling backs off while the printer is idle and speeds up on errors.
+   * @param {StatusMonitorOptions} options - Polling intervals (optional)
+   * @returns {Promise<{success: boolean}>} A promise that resolves once the monitor is started
+   */
+  startStatusMonitor(options?: StatusMonitorOptions): Promise<{ success: boolean }>;
+
+  /**
+   * Stop the background status monitor
+   * @param {PrinterSelector} options - Printer to stop monitoring (optional, defaults to the default printer)
+   * @returns {Promise<{success: boolean}>} A promise that resolves once the monitor is stopped
+   */
+  stopStatusMonitor(options?: PrinterSelector): Promise<{ success: boolean }>;
   
   /**
-   * Disconnect from the printer
+   * Disconnect from the printer. Printers other than the default one are also removed from the pool.
+   * @param {PrinterSelector} options - Printer to disconnect (optional, defaults to the default printer)
    * @returns {Promise<{success: boolean}>} A promise that resolves when disconnection is complete
    */
-  disconnect(): Promise<{ success: boolean }>;
+  disconnect(options?: PrinterSelector): Promise<{ success: boolean }>;
   
   /**
-   * Discover network printers on the network
+   * Discover network printers on the network. The local subnet is probed on the raw print port
+   * alongside the SDK broadcast, each printer is reported through the `deviceFound` event as soon
+   * as it answers, and concurrent calls share one scan. Results are cached, so repeat calls
+   * return immediately unless `refresh` is set.
    * @param {DiscoveryOptions} options - Options for network discovery
    * @returns {Promise<DiscoveryResult>} A promise that resolves with discovered printers
    */
   discoverNetworkPrinters(options?: DiscoveryOptions): Promise<DiscoveryResult>;
   
   /**
-   * Connect to a specific printer
+   * Connect to a specific printer. The connection is kept alive, and restored with backoff when
+   * it drops; a job interrupted by the drop is replayed once if none of it was printed.
    * @param {ConnectOptions} options - Options for connecting to printer
    * @returns {Promise<{success: boolean, message?: string}>} A promise that resolves when connection is complete
    */
@@ -52,16 +146,203 @@ export interface PrinterPlugin {
    * @returns {Promise<{success: boolean}>} A promise that resolves when PDF printing is complete
    */
   printPDF(options: PDFOptions): Promise<{ success: boolean }>;
+
+  /**
+   * Send pre-built printer commands to the printer unchanged, for labels rendered elsewhere.
+   * The payload is streamed to the connection without going through the drawing API.
+   * @param {RawOptions} options - The command bytes to send
+   * @returns {Promise<{success: boolean}>} A promise that resolves once the commands are sent
+   */
+  sendRaw(options: RawOptions): Promise<{ success: boolean }>;
+
+  /**
+   * Print a PNG or JPEG image. The image is scaled to the print width and converted to
+   * black and white on the device before it is sent.
+   * @param {ImageOptions} options - The image and how to print it
+   * @returns {Promise<{success: boolean}>} A promise that resolves when the image is printed
+   */
+  printImage(options: ImageOptions): Promise<{ success: boolean }>;
   
+  /**
+   * Start a chunked document upload
+   * @returns {Promise<{documentId: string}>} A promise that resolves with the ID of the new document
+   */
+  beginDocument(): Promise<{ documentId: string }>;
+
+  /**
+   * Append a base64 chunk to a document upload. Chunks are decoded straight to disk and may be split anywhere.
+   * @param {AppendChunkOptions} options - The document and the chunk to append
+   * @returns {Promise<{size: number}>} A promise that resolves with the number of decoded bytes written so far
+   */
+  appendChunk(options: AppendChunkOptions): Promise<{ size: number }>;
+
+  /**
+   * Finish a document upload so it can be printed with `printPDF({ documentId })` or sent with `sendRaw({ documentId })`
+   * @param {DocumentOptions} options - The document to commit
+   * @returns {Promise<{documentId: string, size: number}>} A promise that resolves with the document size in bytes
+   */
+  commitDocument(options: DocumentOptions): Promise<{ documentId: string; size: number }>;
+
+  /**
+   * Delete a committed document or abort an upload in progress
+   * @param {DocumentOptions} options - The document to release
+   * @returns {Promise<{success: boolean}>} A promise that resolves once the document is deleted
+   */
+  releaseDocument(options: DocumentOptions): Promise<{ success: boolean }>;
+
   /**
    * Check if the printer instance is initialized
+   * @param {PrinterSelector} options - Printer to check (optional, defaults to the default printer)
    * @returns {Promise<{initialized: boolean}>} A promise that resolves with initialization status
    */
-  isInitialized(): Promise<{ initialized: boolean }>;
+  isInitialized(options?: PrinterSelector): Promise<{ initialized: boolean }>;
+
+  /**
+   * Get hit, miss and eviction counters of the rendered page cache
+   * @param {CacheStatsOptions} options - Options for reading the stats (optional)
+   * @returns {Promise<CacheStats>} A promise that resolves with the cache statistics
+   */
+  getCacheStats(options?: CacheStatsOptions): Promise<CacheStats>;
+
+  /**
+   * Get per-phase latency percentiles, throughput and error counts of all printers
+   * @param {MetricsOptions} options - Options for reading the metrics (optional)
+   * @returns {Promise<PrinterMetrics>} A promise that resolves with the metrics
+   */
+  getMetrics(options?: MetricsOptions): Promise<PrinterMetrics>;
+
+  /**
+   * List the printers in the connection pool
+   * @returns {Promise<{printers: PooledPrinter[]}>} A promise that resolves with the pooled printers
+   */
+  listPrinters(): Promise<{ printers: PooledPrinter[] }>;
+
+  /** Listen for progress of queued jobs */
+  addListener(eventName: 'jobProgress', listenerFunc: (event: JobProgressEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for completion of queued jobs */
+  addListener(eventName: 'jobCompleted', listenerFunc: (event: JobCompletedEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for pages printed by a multi-page PDF job */
+  addListener(eventName: 'pdfPagePrinted', listenerFunc: (event: PdfPagePrintedEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for timings and raster size of printed images */
+  addListener(eventName: 'imagePrinted', listenerFunc: (event: ImagePrintedEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for progress of serial runs */
+  addListener(eventName: 'serialRunProgress', listenerFunc: (event: SerialRunProgressEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for printers found by a network discovery scan */
+  addListener(eventName: 'deviceFound', listenerFunc: (event: DiscoveredPrinter) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for printer connections being established, lost or restored */
+  addListener(eventName: 'connectionStateChanged', listenerFunc: (event: ConnectionStateEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for metrics pushed periodically when `metricsInterval` is set at initialize */
+  addListener(eventName: 'metrics', listenerFunc: (event: PrinterMetrics) => void): Promise<PluginListenerHandle>;
+
+  /** Listen for printer status changes detected by the status monitor or getStatus */
+  addListener(eventName: 'statusChanged', listenerFunc: (event: StatusChangedEvent) => void): Promise<PluginListenerHandle>;
+
+  /** Remove all listeners for this plugin */
+  removeAllListeners(): Promise<void>;
+}
+
+/** Options for initialization */
+export interface InitializeOptions {
+  /** Maximum number of pending jobs in each printer's queue (optional, defaults to 32) */
+  queueDepth?: number;
+  /** Maximum number of printers in the connection pool (optional, defaults to 4) */
+  maxConnections?: number;
+  /** Time in milliseconds after which an idle pooled printer is disconnected (optional, defaults to 300000) */
+  idleTimeout?: number;
+  /** Byte budget of the rendered page cache (optional, defaults to 32 MB) */
+  renderCacheSize?: number;
+  /** Keep rendered pages in the app cache directory across restarts (optional, defaults to false) */
+  persistRenderCache?: boolean;
+  /** How long discovered printers are remembered, in milliseconds (optional, defaults to 60000) */
+  discoveryCacheTtl?: number;
+  /**
+   * Printers to connect to in the background right away, so the first job doesn't wait for
+   * the connection. The printer ID defaults to the address (optional)
+   */
+  printers?: ConnectOptions[];
+  /** Interval of the `metrics` event in milliseconds, 0 disables it (optional, defaults to 0) */
+  metricsInterval?: number;
+  /**
+   * Record queued jobs in a journal in the app's files directory until they finish. Jobs that failed because
+   * the connection was lost, or were still queued when the app was killed, are queued again once their printer
+   * is connected, and serial runs resume after the last label batch that printed (optional, defaults to false)
+   */
+  journal?: boolean;
+  /** Initial size of the journal file in bytes; it grows when needed (optional, defaults to 1 MB) */
+  journalSize?: number;
+  /**
+   * How often journal writes are flushed to storage, in milliseconds. Writes survive the app being killed
+   * either way; flushing protects against power loss. 0 flushes every write (optional, defaults to 1000)
+   */
+  journalSyncInterval?: number;
+  /** How long the idempotency keys of jobs are remembered, in milliseconds (optional, defaults to 600000) */
+  idempotencyWindow?: number;
+  /** Maximum number of idempotency keys remembered; the oldest are forgotten first (optional, defaults to 1024) */
+  idempotencyCapacity?: number;
+  /**
+   * Labels a printer may be ahead of its print head. Transactions wait while the estimated backlog is full, so the
+   * printer's buffer doesn't overflow on long runs; 0 sends without pacing (optional, defaults to 8)
+   */
+  flowBacklog?: number;
+  /** Retries of a transaction the printer refused because it was busy, with backoff (optional, defaults to 3) */
+  busyRetries?: number;
+  /**
+   * Longest time a single printer operation of a job, such as drawing a PDF, may take in milliseconds. An operation
+   * that runs longer is aborted, the printer's buffer is cleared and the job fails, and when the SDK call still does
+   * not return the connection is dropped and restored for the next job (optional, defaults to 30000)
+   */
+  operationTimeout?: number;
+}
+
+/** Selects a printer from the connection pool */
+export interface PrinterSelector {
+  /** Address or alias the printer was connected with (optional, defaults to the default printer) */
+  printerId?: string;
+}
+
+/** Lane a job waits in. Urgent jobs are sent between two jobs or two serial batches of lower priority work */
+export type JobPriority = 'urgent' | 'normal' | 'bulk';
+
+/** Scheduling options of a print job */
+export interface JobOptions extends PrinterSelector {
+  /** Priority lane of the job (optional, defaults to normal) */
+  priority?: JobPriority;
+  /**
+   * Time in milliseconds since the epoch, e.g. `Date.now() + 30000`, after which the job is no longer sent and
+   * fails instead; a job still printing then is aborted. Jobs are treated as urgent once their deadline is less than
+   * 5 seconds away (optional)
+   */
+  deadline?: number;
+  /** Overrides `operationTimeout` of initialize for this job, a negative value disables it (optional) */
+  timeout?: number;
+  /**
+   * Key that identifies the job across retries, e.g. a UUID generated once per print request. A job submitted
+   * again with the key of a recent job is not printed again: its call resolves with the outcome of the earlier job,
+   * plus `jobId` and `duplicate: true`, at once if that job succeeded or when it completes. The key is released
+   * when the job fails, so a failed job can be retried (optional)
+   */
+  idempotencyKey?: string;
+}
+
+/** Printer in the connection pool */
+export interface PooledPrinter {
+  /** Address or alias the printer was connected with */
+  printerId: string;
+  /** Whether the printer is connected */
+  connected: boolean;
+  /** Number of pending jobs in the printer's queue */
+  pending: number;
 }
 
 /** Options for printing text */
-export interface PrintOptions {
+export interface PrintOptions extends JobOptions {
   /** Text to print */
   text: string;
   /** Font size (optional, defaults to normal) */
@@ -74,30 +355,287 @@ export interface PrintOptions {
   horizontalPosition?: number;
   /** Vertical position (optional) */
   verticalPosition?: number;
+  /** Character width multiplier, 1-9 (optional, defaults to 1) */
+  horizontalMultiplier?: number;
+  /** Character height multiplier, 1-9 (optional, defaults to 1) */
+  verticalMultiplier?: number;
+  /**
+   * Width of the text block in dots. When set, the text is wrapped at word boundaries, each line is aligned
+   * within this width and line breaks in the text are kept (optional)
+   */
+  width?: number;
+  /**
+   * Label height in dots. Wrapped text that does not fit continues on further labels, starting again at
+   * `verticalPosition` (optional, only used with `width`)
+   */
+  height?: number;
+  /** Dots between wrapped lines (optional, defaults to 0, only used with `width`) */
+  lineSpacing?: number;
+  /** Copies of each label of wrapped text (optional, defaults to 1, only used with `width`) */
+  copies?: number;
 }
 
+/**
+ * Barcode symbology. QR, DATAMATRIX and PDF417 are drawn with the printer's own 2D barcode commands, so only the data
+ * is sent rather than a rendered image
+ */
+export type BarcodeType =
+  | 'CODE128'
+  | 'CODE39'
+  | 'CODE93'
+  | 'CODABAR'
+  | 'ITF'
+  | 'UPC_A'
+  | 'UPC_E'
+  | 'EAN13'
+  | 'EAN8'
+  | 'QR'
+  | 'DATAMATRIX'
+  | 'PDF417';
+
 /** Options for printing barcodes */
-export interface BarcodeOptions {
-  /** Barcode data */
-  data: string;
-  /** Barcode type */
-  barcodeType?: 'CODE128' | 'CODE39' | 'CODE93' | 'CODABAR' | 'ITF' | 'UPC_A' | 'UPC_E' | 'EAN13' | 'EAN8';
-  /** Width of barcode (optional) */
+export interface BarcodeOptions extends JobOptions {
+  /** Barcode data, required unless dataList is given */
+  data?: string;
+  /**
+   * Prints one label per entry instead of a single barcode, with the same settings for every label. Labels are sent
+   * in batches of batchSize, each in one transaction (optional)
+   */
+  dataList?: string[];
+  /** Labels per transaction when printing a dataList (optional, defaults to 20) */
+  batchSize?: number;
+  /** Copies of each label (optional, defaults to 1) */
+  copies?: number;
+  /** Barcode type (optional, defaults to CODE128) */
+  barcodeType?: BarcodeType;
+  /** Width of the narrow bar, or the module width of a PDF417 symbol from 2 to 9 (optional) */
   width?: number;
-  /** Height of barcode (optional) */
+  /** Height of barcode, or the row height of a PDF417 symbol up to 99 (optional, defaults to 100, 10 for PDF417) */
   height?: number;
+  /** Module size of a QR code or DataMatrix symbol, 1 to 4 (optional, defaults to 3) */
+  size?: number;
+  /** Error correction level of a QR code (optional, defaults to M) */
+  errorCorrection?: 'L' | 'M' | 'Q' | 'H';
+  /** Error correction level of a PDF417 symbol, 0 to 8 (optional, defaults to 2) */
+  securityLevel?: number;
+  /** Maximum number of rows of a PDF417 symbol, 3 to 90 (optional, defaults to 90) */
+  maxRows?: number;
+  /** Maximum number of data columns of a PDF417 symbol, 1 to 30 (optional, defaults to 30) */
+  maxColumns?: number;
   /** Horizontal position (optional) */
   horizontalPosition?: number;
   /** Vertical position (optional) */
   verticalPosition?: number;
-  /** Show human readable interpretation (optional) */
+  /** Show human readable interpretation, for 1D barcodes and PDF417 (optional) */
   hri?: boolean;
 }
 
+/** Text element of a composite label */
+export interface TextElement {
+  type: 'text';
+  /** Text to print */
+  text: string;
+  /** Font size (optional, defaults to normal) */
+  fontSize?: 'small' | 'normal' | 'medium' | 'large' | 'xlarge';
+  /** Text alignment (optional, defaults to left) */
+  alignment?: 'left' | 'center' | 'right';
+  /** Whether to use bold text (optional, defaults to false) */
+  bold?: boolean;
+  /** Horizontal character multiplier (optional, defaults to 1) */
+  horizontalMultiplier?: number;
+  /** Vertical character multiplier (optional, defaults to 1) */
+  verticalMultiplier?: number;
+  /** Horizontal position (optional) */
+  horizontalPosition?: number;
+  /** Vertical position (optional) */
+  verticalPosition?: number;
+}
+
+/** 1D barcode element of a composite label */
+export interface BarcodeElement
+  extends Omit<BarcodeOptions, 'data' | 'dataList' | 'batchSize' | 'copies' | 'printerId'> {
+  type: 'barcode';
+  /** Barcode data */
+  data: string;
+}
+
+/** Image element of a composite label */
+export interface ImageElement {
+  type: 'image';
+  /** Base64 encoded PNG or JPEG image */
+  base64Image: string;
+  /** Width the image is scaled to (optional, defaults to the image width) */
+  width?: number;
+  /** Brightness level (optional, defaults to 50) */
+  level?: number;
+  /** Enable dithering (optional, defaults to true) */
+  dithering?: boolean;
+  /** Horizontal position (optional) */
+  horizontalPosition?: number;
+  /** Vertical position (optional) */
+  verticalPosition?: number;
+}
+
+/** Box or line element of a composite label */
+export interface BlockElement {
+  type: 'box' | 'line';
+  /** Horizontal start position (optional) */
+  horizontalPosition?: number;
+  /** Vertical start position (optional) */
+  verticalPosition?: number;
+  /** Horizontal end position (optional, defaults to the start position) */
+  horizontalEndPosition?: number;
+  /** Vertical end position (optional, defaults to the start position) */
+  verticalEndPosition?: number;
+  /** Line thickness in dots (optional, defaults to 2) */
+  thickness?: number;
+}
+
+/** Element of a composite label */
+export type LabelElement = TextElement | BarcodeElement | ImageElement | BlockElement;
+
+/** Options for printing a composite label */
+export interface LabelOptions extends JobOptions {
+  /** Elements drawn in order within one transaction */
+  elements: LabelElement[];
+  /** Number of copies of each set (optional, defaults to 1) */
+  copies?: number;
+  /** Number of sets (optional, defaults to 1) */
+  sets?: number;
+}
+
+/** Identifies a registered template */
+export interface TemplateSelector {
+  /** ID the template was registered with */
+  templateId: string;
+}
+
+/** Options for registering a template */
+export interface RegisterTemplateOptions extends TemplateSelector {
+  /** Elements of the label, text and barcode data may contain {{name}} placeholders */
+  elements: LabelElement[];
+}
+
+/** Options for printing a registered template */
+export interface PrintTemplateOptions extends TemplateSelector, JobOptions {
+  /** Values of the template's placeholders */
+  variables?: { [name: string]: string | number };
+  /** Number of copies of each set (optional, defaults to 1) */
+  copies?: number;
+  /** Number of sets (optional, defaults to 1) */
+  sets?: number;
+}
+
+/** Options for printing a run of serial-numbered labels. Either templateId or elements is required. */
+export interface SerialRunOptions extends JobOptions {
+  /** ID of a registered template (optional) */
+  templateId?: string;
+  /** Elements of the label, used when no templateId is given (optional) */
+  elements?: LabelElement[];
+  /** Placeholder that receives the serial number (optional, defaults to "serial") */
+  field?: string;
+  /** First serial number (optional, defaults to 1) */
+  start?: number;
+  /** Increment between labels, 0 prints identical labels (optional, defaults to 1) */
+  step?: number;
+  /** Number of serial numbers to print */
+  count: number;
+  /** Java format pattern for the serial number, e.g. "ASSET-%06d" (optional, defaults to "%d") */
+  pattern?: string;
+  /** Copies printed of each serial number (optional, defaults to 1) */
+  copies?: number;
+  /** Values of the other placeholders (optional) */
+  variables?: { [name: string]: string | number };
+  /** Number of labels sent per transaction (optional, defaults to 20) */
+  batchSize?: number;
+}
+
+/** Progress of a serial run */
+export interface SerialRunProgressEvent {
+  printerId: string;
+  /** Number of serial numbers printed so far */
+  printed: number;
+  /** Number of serial numbers in the run */
+  count: number;
+  /** Last serial number printed */
+  lastValue: string;
+}
+
+/** Type of a queued print job */
+export type JobType = 'text' | 'barcode' | 'label' | 'template' | 'serial' | 'pdf' | 'raw' | 'image';
+
+/** Options for queueing a print job */
+export interface SubmitJobOptions extends PrinterSelector {
+  /** Job type, selects which print method runs the job */
+  type: JobType;
+  /** Options passed to the print method, e.g. PrintOptions for a text job */
+  options: PrintOptions | BarcodeOptions | LabelOptions | PrintTemplateOptions | SerialRunOptions | PDFOptions;
+}
+
+/** Options for cancelling a job */
+export interface CancelJobOptions extends PrinterSelector {
+  /** ID of the job */
+  jobId: string;
+}
+
+/** Print queue status */
+export interface QueueStatus {
+  /** Number of queued jobs, including the one being printed */
+  pending: number;
+  /** Maximum number of pending jobs */
+  capacity: number;
+  /** Number of jobs waiting in each priority lane, not counting the ones being prepared or printed */
+  queued: { [priority in JobPriority]: number };
+}
+
+/** Progress of a queued job */
+export interface JobProgressEvent {
+  jobId: string;
+  printerId: string;
+  type: JobType;
+  priority: JobPriority;
+  /** `replayed` when a journaled job is queued again */
+  state: 'queued' | 'replayed' | 'printing';
+  /** Number of pending jobs when the event was emitted */
+  pending: number;
+}
+
+/** Completion of a queued job */
+export interface JobCompletedEvent {
+  jobId: string;
+  printerId: string;
+  type: JobType;
+  success: boolean;
+  /** Error message when the job failed */
+  error?: string;
+  /** Time from submission to completion in milliseconds */
+  durationMs: number;
+}
+
 /** Options for network printer discovery */
-export interface DiscoveryOptions {
+export interface DiscoveryOptions extends PrinterSelector {
   /** Discovery timeout in milliseconds (optional, defaults to 5000) */
   timeout?: number;
+  /** Scan again even when printers were found recently (optional, defaults to false) */
+  refresh?: boolean;
+  /** IPv4 range to probe such as "192.168.1.0/24", no wider than /22 (optional, defaults to the local subnets) */
+  subnet?: string;
+  /** Port probed on every host (optional, defaults to 9100) */
+  port?: number;
+  /** Also run the SDK broadcast discovery (optional, defaults to true) */
+  broadcast?: boolean;
+}
+
+/** A printer found by network discovery */
+export interface DiscoveredPrinter {
+  /** Printer IP address */
+  address: string;
+  /** Port the printer answered on */
+  port: number;
+  /** How the printer was found */
+  source: 'scan' | 'broadcast';
+  /** Time the printer was last seen, in milliseconds since the epoch */
+  lastSeen: number;
 }
 
 /** Result of network printer discovery */
@@ -106,24 +644,98 @@ export interface DiscoveryResult {
   success: boolean;
   /** Array of discovered printer IP addresses/hostnames */
   devices: string[];
+  /** Details of the discovered printers (optional) */
+  printers?: DiscoveredPrinter[];
+  /** Whether the result came from the discovery cache (optional) */
+  cached?: boolean;
 }
 
 /** Options for connecting to a printer */
-export interface ConnectOptions {
+export interface ConnectOptions extends PrinterSelector {
   /** Printer address (IP address for network printers) */
   address: string;
   /** Connection type (optional, defaults to network) */
   type?: 'network' | 'bluetooth' | 'usb';
   /** Port number for network connections (optional, defaults to 9100) */
   port?: number;
-  /** Connection timeout in milliseconds (optional, defaults to 5000) */
+  /** Connection timeout in milliseconds; a connect still running 2 seconds later is aborted (optional, defaults to 5000) */
   timeout?: number;
+  /** Interval of the keep-alive probe while the connection is idle, 0 disables it (optional, defaults to 15000) */
+  keepAliveInterval?: number;
+  /** How long a dropped connection is retried before jobs fail, in milliseconds (optional, defaults to 10000) */
+  reconnectTimeout?: number;
+}
+
+/** Event emitted when a printer connection is established, lost or being restored */
+export interface ConnectionStateEvent {
+  printerId: string;
+  state: 'connected' | 'reconnecting' | 'disconnected';
+  /** Reconnect attempt number (optional) */
+  attempt?: number;
+}
+
+/** Identifies an uploaded document */
+export interface DocumentOptions {
+  /** ID returned by beginDocument */
+  documentId: string;
+}
+
+/** Options for appending a chunk to a document upload */
+export interface AppendChunkOptions extends DocumentOptions {
+  /** Base64 encoded chunk */
+  data: string;
+}
+
+/** Options for sending raw printer commands. One of base64, documentId, path or uri is required. */
+export interface RawOptions extends JobOptions {
+  /** Base64 encoded command bytes, for small payloads */
+  base64?: string;
+  /** ID of a document committed with commitDocument */
+  documentId?: string;
+  /** Absolute path of a local file of command bytes */
+  path?: string;
+  /** file:// or content:// URI of a file of command bytes */
+  uri?: string;
+  /** Read the printer status after sending and fail if it reports an error (optional, defaults to false) */
+  verifyStatus?: boolean;
+}
+
+/** Options for printing an image. One of base64, documentId, path or uri is required. */
+export interface ImageOptions extends JobOptions {
+  /** Base64 encoded PNG or JPEG */
+  base64?: string;
+  /** ID of a document committed with commitDocument */
+  documentId?: string;
+  /** Absolute path of a local image file */
+  path?: string;
+  /** file:// or content:// URI of an image */
+  uri?: string;
+  /** Print width in dots (optional, defaults to the image width, at most 832) */
+  width?: number;
+  /** Horizontal position (optional, defaults to 0) */
+  horizontalPosition?: number;
+  /** Vertical position (optional, defaults to 0) */
+  verticalPosition?: number;
+  /** How gray levels are converted to black and white (optional, defaults to 'floydSteinberg') */
+  dithering?: 'threshold' | 'ordered' | 'floydSteinberg';
+  /** Luminance 0-255 below which a pixel prints black, also biases dithering (optional, defaults to 128) */
+  threshold?: number;
+  /** Send the bitmap compressed (optional, defaults to true) */
+  compress?: boolean;
+  /** Number of copies (optional, defaults to 1) */
+  copies?: number;
 }
 
-/** Options for printing PDF */
-export interface PDFOptions {
+/** Options for printing PDF. One of base64FileString, documentId, path or uri is required. */
+export interface PDFOptions extends JobOptions {
   /** Base64 encoded PDF file string */
-  base64FileString: string;
+  base64FileString?: string;
+  /** ID of a document committed with commitDocument */
+  documentId?: string;
+  /** Absolute path of a local PDF file */
+  path?: string;
+  /** file:// or content:// URI of a PDF document */
+  uri?: string;
   /** Width for PDF rendering (optional, defaults to 576) */
   width?: number;
   /** Horizontal position (optional, defaults to 0) */
@@ -132,12 +744,143 @@ export interface PDFOptions {
   verticalPosition?: number;
   /** Page number to print (optional, defaults to 1) */
   page?: number;
+  /** Print every page of the document, one label per page (optional, defaults to false) */
+  allPages?: boolean;
+  /** First page of a range to print, one label per page (optional, defaults to 1 in range mode) */
+  startPage?: number;
+  /** Last page of a range to print (optional, defaults to the last page in range mode) */
+  endPage?: number;
   /** Enable dithering (optional, defaults to true) */
   dithering?: boolean;
   /** Enable compression (optional, defaults to true) */
   compress?: boolean;
   /** Quality level (optional, defaults to 0) */
   level?: number;
+  /** Reuse rendered pages from the render cache and cache newly rendered ones (optional, defaults to false) */
+  cache?: boolean;
+}
+
+/** Options for reading render cache statistics */
+export interface CacheStatsOptions {
+  /** Clear the cache after reading (optional, defaults to false) */
+  clear?: boolean;
+}
+
+/** Render cache statistics */
+export interface CacheStats {
+  hits: number;
+  misses: number;
+  evictions: number;
+  /** Number of cached pages */
+  entries: number;
+  /** Bytes held by cached pages */
+  bytes: number;
+  /** Byte budget of the cache */
+  maxBytes: number;
+}
+
+/** Timings and raster size of a printed image */
+export interface ImagePrintedEvent {
+  printerId: string;
+  /** Printed width in dots */
+  width: number;
+  /** Printed height in dots */
+  height: number;
+  dithering: 'threshold' | 'ordered' | 'floydSteinberg';
+  /** Number of bands the image was dithered in parallel */
+  bands: number;
+  /** Time spent decoding and scaling the image */
+  decodeMs: number;
+  /** Time spent converting the image to black and white */
+  ditherMs: number;
+  /** Size of the 1-bit raster handed to the printer before compression */
+  rasterBytes: number;
+  /** Whether the raster was sent compressed */
+  compressed: boolean;
+}
+
+/** Progress of a multi-page PDF job */
+export interface PdfPagePrintedEvent {
+  printerId: string;
+  /** Page number that was printed */
+  page: number;
+  /** Number of pages printed so far */
+  printed: number;
+  /** Number of pages in the requested range */
+  pageCount: number;
+}
+
+/** Options for getMetrics */
+export interface MetricsOptions {
+  /** Reset all counters after reading them (optional, defaults to false) */
+  reset?: boolean;
+}
+
+/** Latency summary of one phase, in milliseconds */
+export interface LatencySummary {
+  count: number;
+  mean: number;
+  p50: number;
+  p95: number;
+  p99: number;
+  max: number;
+}
+
+/** Phases timed by the metrics, only phases that were recorded are present */
+export type MetricsPhase =
+  | 'queueWait'
+  | 'queueWaitUrgent'
+  | 'queueWaitNormal'
+  | 'queueWaitBulk'
+  | 'job'
+  | 'decode'
+  | 'fileWrite'
+  | 'dither'
+  | 'draw'
+  | 'endTransaction'
+  | 'print'
+  | 'transmit'
+  | 'connect'
+  | 'discovery'
+  | 'abort';
+
+/** Latency and throughput metrics */
+export interface PrinterMetrics {
+  /** Time counting started or was last reset, in milliseconds since the epoch */
+  since: number;
+  elapsedMs: number;
+  jobsCompleted: number;
+  jobsFailed: number;
+  jobsPerSecond: number;
+  /** Operations aborted because they ran past their deadline or timeout */
+  timeouts: number;
+  /** Jobs cancelled with cancelJob or cancelAll */
+  cancellations: number;
+  phases: { [phase in MetricsPhase]?: LatencySummary };
+  /**
+   * Failed jobs by SDK return code, 0 when there was none. Codes of the plugin's own: -1000 connection lost,
+   * -1001 deadline passed, -1002 printer busy, -1003 timed out, -1004 cancelled
+   */
+  errors: { [code: string]: number };
+  /** Pacing of each connected printer by printer id */
+  flow: { [printerId: string]: FlowMetrics };
+}
+
+/** Pacing state of one printer */
+export interface FlowMetrics {
+  /** Labels and raw command bytes sent per second, averaged over the last seconds */
+  labelsPerSecond: number;
+  bytesPerSecond: number;
+  /** Print rate the printer is estimated to achieve, 0 until measured */
+  targetLabelsPerSecond: number;
+  /** Labels estimated to be waiting in the printer */
+  backlog: number;
+  maxBacklog: number;
+  /** Transactions that waited for the printer, and the total time they waited */
+  throttles: number;
+  throttledMs: number;
+  /** Transactions sent again after the printer refused them while busy */
+  retries: number;
 }
 
 /** Printer status information */
@@ -152,4 +895,41 @@ export interface PrinterStatus {
   paperOut?: boolean;
   /** Whether cover is open (optional) */
   coverOpen?: boolean;
+  /** Whether the cutter is jammed (optional) */
+  cutterJammed?: boolean;
+  /** Whether the print head is overheated (optional) */
+  overheated?: boolean;
+  /** Whether media auto-sensing failed (optional) */
+  autoSensingFailure?: boolean;
+  /** Whether the ribbon has run out (optional) */
+  ribbonEnd?: boolean;
+  /** Whether the printer is building or printing an image (optional) */
+  busy?: boolean;
+  /** Whether a printed label is waiting to be taken from the peeler (optional) */
+  pausedInPeeler?: boolean;
+  /** Time the status was read, in milliseconds since the epoch */
+  timestamp: number;
+  /** Whether the status came from the status monitor's last poll */
+  cached?: boolean;
+}
+
+/** Options for getStatus */
+export interface StatusOptions extends PrinterSelector {
+  /** Read the status from the printer even when the status monitor has a recent one (optional, defaults to false) */
+  refresh?: boolean;
+}
+
+/** Options for the background status monitor */
+export interface StatusMonitorOptions extends PrinterSelector {
+  /** Polling interval in milliseconds while the status is changing (optional, defaults to 2000) */
+  interval?: number;
+  /** Polling interval in milliseconds while the printer reports an error or is disconnected (optional, defaults to 500) */
+  errorInterval?: number;
+  /** Longest polling interval reached by backing off while idle (optional, defaults to 15000) */
+  maxInterval?: number;
+}
+
+/** Event emitted when the printer status changes */
+export interface StatusChangedEvent extends PrinterStatus {
+  printerId: string;
 }
\ No newline at end of file
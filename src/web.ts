@@ -1,10 +1,10 @@
 import { WebPlugin } from '@capacitor/core';
 
-import type { PrinterPlugin, PrintOptions, BarcodeOptions, PrinterStatus, DiscoveryOptions, DiscoveryResult, ConnectOptions, PDFOptions } from './definitions';
+import type { PrinterPlugin, InitializeOptions, PrintOptions, BarcodeOptions, LabelOptions, SubmitJobOptions, CancelJobOptions, QueueStatus, PrinterSelector, PooledPrinter, PrinterStatus, StatusOptions, StatusMonitorOptions, DiscoveryOptions, DiscoveryResult, ConnectOptions, PDFOptions, RawOptions, ImageOptions, AppendChunkOptions, DocumentOptions, CacheStatsOptions, CacheStats, MetricsOptions, PrinterMetrics, RegisterTemplateOptions, TemplateSelector, PrintTemplateOptions, SerialRunOptions } from './definitions';
 
 export class PrinterWeb extends WebPlugin implements PrinterPlugin {
-  async initialize(): Promise<{ success: boolean }> {
-    console.log('Printer web implementation: initialize not supported on web');
+  async initialize(options?: InitializeOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: initialize not supported on web', options);
     return { success: false };
   }
 
@@ -18,17 +18,73 @@ export class PrinterWeb extends WebPlugin implements PrinterPlugin {
     return { success: false };
   }
 
-  async getStatus(): Promise<PrinterStatus> {
-    console.log('Printer web implementation: getStatus');
+  async printLabel(options: LabelOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: printLabel', options);
+    return { success: false };
+  }
+
+  async registerTemplate(options: RegisterTemplateOptions): Promise<{ success: boolean; elements: number }> {
+    console.log('Printer web implementation: registerTemplate', options);
+    return { success: false, elements: 0 };
+  }
+
+  async unregisterTemplate(options: TemplateSelector): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: unregisterTemplate', options);
+    return { success: false };
+  }
+
+  async printTemplate(options: PrintTemplateOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: printTemplate', options);
+    return { success: false };
+  }
+
+  async printSerialRun(options: SerialRunOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: printSerialRun', options);
+    return { success: false };
+  }
+
+  async submitJob(options: SubmitJobOptions): Promise<{ success: boolean; jobId: string }> {
+    console.log('Printer web implementation: submitJob', options);
+    return { success: false, jobId: '' };
+  }
+
+  async getQueueStatus(options?: PrinterSelector): Promise<QueueStatus> {
+    console.log('Printer web implementation: getQueueStatus', options);
+    return { pending: 0, capacity: 0, queued: { urgent: 0, normal: 0, bulk: 0 } };
+  }
+
+  async cancelJob(options: CancelJobOptions): Promise<{ cancelled: boolean }> {
+    console.log('Printer web implementation: cancelJob', options);
+    return { cancelled: false };
+  }
+
+  async cancelAll(options?: PrinterSelector): Promise<{ cancelled: number }> {
+    console.log('Printer web implementation: cancelAll', options);
+    return { cancelled: 0 };
+  }
+
+  async getStatus(options?: StatusOptions): Promise<PrinterStatus> {
+    console.log('Printer web implementation: getStatus', options);
     return {
       connected: false,
       ready: false,
-      paperStatus: 'ok'
+      paperStatus: 'ok',
+      timestamp: Date.now()
     };
   }
 
-  async disconnect(): Promise<{ success: boolean }> {
-    console.log('Printer web implementation: disconnect');
+  async startStatusMonitor(options?: StatusMonitorOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: startStatusMonitor', options);
+    return { success: false };
+  }
+
+  async stopStatusMonitor(options?: PrinterSelector): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: stopStatusMonitor', options);
+    return { success: false };
+  }
+
+  async disconnect(options?: PrinterSelector): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: disconnect', options);
     return { success: false };
   }
 
@@ -47,8 +103,53 @@ export class PrinterWeb extends WebPlugin implements PrinterPlugin {
     return { success: false };
   }
 
-  async isInitialized(): Promise<{ initialized: boolean }> {
-    console.log('Printer web implementation: isInitialized');
+  async sendRaw(options: RawOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: sendRaw', options);
+    return { success: false };
+  }
+
+  async printImage(options: ImageOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: printImage', options);
+    return { success: false };
+  }
+
+  async beginDocument(): Promise<{ documentId: string }> {
+    console.log('Printer web implementation: beginDocument');
+    return { documentId: '' };
+  }
+
+  async appendChunk(options: AppendChunkOptions): Promise<{ size: number }> {
+    console.log('Printer web implementation: appendChunk', options.documentId);
+    return { size: 0 };
+  }
+
+  async commitDocument(options: DocumentOptions): Promise<{ documentId: string; size: number }> {
+    console.log('Printer web implementation: commitDocument', options);
+    return { documentId: options.documentId, size: 0 };
+  }
+
+  async releaseDocument(options: DocumentOptions): Promise<{ success: boolean }> {
+    console.log('Printer web implementation: releaseDocument', options);
+    return { success: false };
+  }
+
+  async isInitialized(options?: PrinterSelector): Promise<{ initialized: boolean }> {
+    console.log('Printer web implementation: isInitialized', options);
     return { initialized: false };
   }
+
+  async getCacheStats(options?: CacheStatsOptions): Promise<CacheStats> {
+    console.log('Printer web implementation: getCacheStats', options);
+    return { hits: 0, misses: 0, evictions: 0, entries: 0, bytes: 0, maxBytes: 0 };
+  }
+
+  async getMetrics(options?: MetricsOptions): Promise<PrinterMetrics> {
+    console.log('Printer web implementation: getMetrics', options);
+    return { since: Date.now(), elapsedMs: 0, jobsCompleted: 0, jobsFailed: 0, jobsPerSecond: 0, timeouts: 0, cancellations: 0, phases: {}, errors: {}, flow: {} };
+  }
+
+  async listPrinters(): Promise<{ printers: PooledPrinter[] }> {
+    console.log('Printer web implementation: listPrinters');
+    return { printers: [] };
+  }
 }
\ No newline at end of file